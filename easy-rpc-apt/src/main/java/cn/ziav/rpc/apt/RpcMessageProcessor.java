@@ -0,0 +1,141 @@
+package cn.ziav.rpc.apt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * 为{@code cn.ziav.rpc.codec.RpcMessage}标记的类生成ProtoStuff Schema
+ *
+ * <p>生成的Schema与消息类同包，类名为{@code 消息类名_RpcSchema}，同时登记到{@code
+ * META-INF/services/io.protostuff.Schema}，运行时由{@code cn.ziav.rpc.codec.Schemas}自动加载。
+ *
+ * @author Zavi
+ */
+public class RpcMessageProcessor extends AbstractProcessor {
+  /** 消息注解 */
+  static final String ANNOTATION = "cn.ziav.rpc.codec.RpcMessage";
+
+  /** Schema服务登记文件 */
+  private static final String SERVICE_FILE = "META-INF/services/io.protostuff.Schema";
+
+  /** 已生成的Schema类名 */
+  private final Set<String> schemas = new TreeSet<>();
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton(ANNOTATION);
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      writeServiceFile();
+      return false;
+    }
+
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        if (element.getKind() != ElementKind.CLASS) {
+          error(element, "@RpcMessage只能标记在类上");
+          continue;
+        }
+        generate((TypeElement) element);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 生成Schema源文件
+   *
+   * @param type 消息类
+   */
+  private void generate(TypeElement type) {
+    SchemaGenerator generator = new SchemaGenerator(processingEnv, type);
+    String source;
+    try {
+      source = generator.generate();
+    } catch (SchemaGenerator.GenerateException e) {
+      error(e.element, e.getMessage());
+      return;
+    }
+
+    String schemaName = generator.schemaName();
+    try {
+      JavaFileObject file = processingEnv.getFiler().createSourceFile(schemaName, type);
+      try (Writer writer = file.openWriter()) {
+        writer.write(source);
+      }
+      schemas.add(schemaName);
+    } catch (IOException e) {
+      error(type, "生成Schema失败：" + e);
+    }
+  }
+
+  /** 将本次及之前编译生成的Schema登记到服务文件 */
+  private void writeServiceFile() {
+    if (schemas.isEmpty()) {
+      return;
+    }
+
+    Set<String> all = new TreeSet<>(schemas);
+    // 增量编译时保留已登记的Schema
+    try {
+      FileObject existing =
+          processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+      try (BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (!line.isEmpty() && !line.startsWith("#")) {
+            all.add(line);
+          }
+        }
+      }
+    } catch (IOException ignored) {
+      // 首次编译，服务文件尚不存在
+    }
+
+    try {
+      FileObject file =
+          processingEnv
+              .getFiler()
+              .createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+      try (Writer writer = file.openWriter()) {
+        for (String schema : all) {
+          writer.write(schema);
+          writer.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Kind.ERROR, "写入" + SERVICE_FILE + "失败：" + e);
+    }
+  }
+
+  private void error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+  }
+}
@@ -0,0 +1,637 @@
+package cn.ziav.rpc.apt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * 单个消息类的Schema源码生成器
+ *
+ * <p>字段编号规则与ProtoStuff {@code RuntimeSchema}一致：父类字段在前，按声明顺序从1开始编号，跳过static与transient字段，
+ * {@code @Deprecated}字段占用编号但不参与编解码。
+ *
+ * <p>字段值的编码方式也与{@code RuntimeSchema}一致，只有一端使用生成的Schema时双方仍能互通：声明类型为具体类的字段和集合元素直接使用该类型的Schema，
+ * 不写入类名；声明类型为Object、接口、抽象类或类型参数时按ProtoStuff的多态方式写入类型信息。
+ *
+ * @author Zavi
+ */
+final class SchemaGenerator {
+  private static final String SCHEMAS = "cn.ziav.rpc.codec.Schemas";
+  private static final String SUFFIX = "_RpcSchema";
+
+  private final Elements elements;
+  private final Types types;
+  private final TypeElement type;
+  private final String packageName;
+  private final String typeName;
+
+  SchemaGenerator(ProcessingEnvironment env, TypeElement type) {
+    this.elements = env.getElementUtils();
+    this.types = env.getTypeUtils();
+    this.type = type;
+    this.packageName = elements.getPackageOf(type).getQualifiedName().toString();
+    this.typeName = type.getQualifiedName().toString();
+  }
+
+  /** @return 生成的Schema全限定类名 */
+  String schemaName() {
+    return packageName.isEmpty() ? simpleSchemaName() : packageName + "." + simpleSchemaName();
+  }
+
+  /** @return 生成的Schema类名，嵌套类以下划线连接外部类名 */
+  private String simpleSchemaName() {
+    String name = typeName;
+    if (!packageName.isEmpty()) {
+      name = name.substring(packageName.length() + 1);
+    }
+    return name.replace('.', '_') + SUFFIX;
+  }
+
+  /**
+   * 生成Schema源码
+   *
+   * @return 源码
+   * @throws GenerateException 消息类不满足生成条件
+   */
+  String generate() throws GenerateException {
+    checkType();
+    List<Field> fields = collectFields();
+
+    StringBuilder sb = new StringBuilder(4096);
+    sb.append("// 由easy-rpc-apt根据").append(typeName).append("生成，请勿修改\n");
+    if (!packageName.isEmpty()) {
+      sb.append("package ").append(packageName).append(";\n\n");
+    }
+    sb.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+    sb.append("public final class ")
+        .append(simpleSchemaName())
+        .append(" implements io.protostuff.Schema<")
+        .append(typeName)
+        .append("> {\n\n");
+
+    sb.append("  public ").append(simpleSchemaName()).append("() {}\n\n");
+
+    // 字段名称与编号
+    sb.append("  @Override\n  public String getFieldName(int number) {\n");
+    sb.append("    switch (number) {\n");
+    for (Field field : fields) {
+      sb.append("      case ").append(field.number).append(":\n");
+      sb.append("        return \"").append(field.name).append("\";\n");
+    }
+    sb.append("      default:\n        return null;\n    }\n  }\n\n");
+
+    sb.append("  @Override\n  public int getFieldNumber(String name) {\n");
+    sb.append("    switch (name) {\n");
+    for (Field field : fields) {
+      sb.append("      case \"").append(field.name).append("\":\n");
+      sb.append("        return ").append(field.number).append(";\n");
+    }
+    sb.append("      default:\n        return 0;\n    }\n  }\n\n");
+
+    sb.append("  @Override\n  public boolean isInitialized(").append(typeName);
+    sb.append(" message) {\n    return true;\n  }\n\n");
+
+    sb.append("  @Override\n  public ").append(typeName).append(" newMessage() {\n");
+    sb.append("    return new ").append(typeName).append("();\n  }\n\n");
+
+    sb.append("  @Override\n  public String messageName() {\n");
+    sb.append("    return \"").append(type.getSimpleName()).append("\";\n  }\n\n");
+
+    sb.append("  @Override\n  public String messageFullName() {\n");
+    sb.append("    return \"").append(elements.getBinaryName(type)).append("\";\n  }\n\n");
+
+    sb.append("  @Override\n  public Class<? super ").append(typeName);
+    sb.append("> typeClass() {\n    return ").append(typeName).append(".class;\n  }\n\n");
+
+    // 反序列化
+    sb.append("  @Override\n  public void mergeFrom(io.protostuff.Input input, ");
+    sb.append(typeName).append(" message) throws java.io.IOException {\n");
+    sb.append("    while (true) {\n");
+    sb.append("      int number = input.readFieldNumber(this);\n");
+    sb.append("      switch (number) {\n");
+    sb.append("        case 0:\n          return;\n");
+    for (Field field : fields) {
+      if (field.deprecated) {
+        continue;
+      }
+      sb.append("        case ").append(field.number).append(":\n");
+      field.appendRead(sb, "          ");
+      sb.append("          break;\n");
+    }
+    sb.append("        default:\n          input.handleUnknownField(number, this);\n");
+    sb.append("      }\n    }\n  }\n\n");
+
+    // 序列化
+    sb.append("  @Override\n  public void writeTo(io.protostuff.Output output, ");
+    sb.append(typeName).append(" message) throws java.io.IOException {\n");
+    for (Field field : fields) {
+      if (!field.deprecated) {
+        field.appendWrite(sb, "    ");
+      }
+    }
+    sb.append("  }\n}\n");
+    return sb.toString();
+  }
+
+  /** 检查消息类能否被生成的Schema实例化 */
+  private void checkType() throws GenerateException {
+    Set<Modifier> modifiers = type.getModifiers();
+    if (modifiers.contains(Modifier.ABSTRACT)) {
+      throw new GenerateException(type, "@RpcMessage不能标记在抽象类上");
+    }
+    if (modifiers.contains(Modifier.PRIVATE)) {
+      throw new GenerateException(type, "@RpcMessage不能标记在private类上");
+    }
+    if (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+      throw new GenerateException(type, "@RpcMessage标记的内部类必须是static的");
+    }
+    if (type.getNestingKind() == NestingKind.LOCAL
+        || type.getNestingKind() == NestingKind.ANONYMOUS) {
+      throw new GenerateException(type, "@RpcMessage不能标记在局部类或匿名类上");
+    }
+
+    List<ExecutableElement> constructors =
+        ElementFilter.constructorsIn(type.getEnclosedElements());
+    for (ExecutableElement constructor : constructors) {
+      if (constructor.getParameters().isEmpty()
+          && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+        return;
+      }
+    }
+    throw new GenerateException(type, "@RpcMessage标记的类需要非private的无参构造器");
+  }
+
+  /** 收集需要编解码的字段，父类在前 */
+  private List<Field> collectFields() throws GenerateException {
+    List<TypeElement> hierarchy = new ArrayList<>();
+    for (TypeElement t = type; t != null; t = superclassOf(t)) {
+      hierarchy.add(0, t);
+    }
+
+    List<Field> fields = new ArrayList<>();
+    int number = 0;
+    for (TypeElement owner : hierarchy) {
+      for (VariableElement field : ElementFilter.fieldsIn(owner.getEnclosedElements())) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+          continue;
+        }
+        number++;
+        boolean deprecated = field.getAnnotation(Deprecated.class) != null;
+        fields.add(new Field(owner, field, number, deprecated));
+      }
+    }
+    return fields;
+  }
+
+  private TypeElement superclassOf(TypeElement t) {
+    TypeMirror superclass = t.getSuperclass();
+    if (superclass.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+    return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+  }
+
+  /** 在生成的Schema中能否直接访问该成员 */
+  private boolean accessible(Element member, TypeElement owner) {
+    Set<Modifier> modifiers = member.getModifiers();
+    if (modifiers.contains(Modifier.PUBLIC)) {
+      return true;
+    }
+    if (modifiers.contains(Modifier.PRIVATE)) {
+      return false;
+    }
+    PackageElement pkg = elements.getPackageOf(owner);
+    return pkg.getQualifiedName().contentEquals(packageName);
+  }
+
+  private boolean isSubtype(TypeMirror t, String className) {
+    TypeElement element = elements.getTypeElement(className);
+    return element != null && types.isAssignable(t, types.erasure(element.asType()));
+  }
+
+  /** 字段值的编解码方式 */
+  private ValueCodec codecOf(TypeMirror t) {
+    switch (t.getKind()) {
+      case INT:
+        return new ScalarCodec("int", "Int32", "input.readInt32()");
+      case LONG:
+        return new ScalarCodec("long", "Int64", "input.readInt64()");
+      case BOOLEAN:
+        return new ScalarCodec("boolean", "Bool", "input.readBool()");
+      case FLOAT:
+        return new ScalarCodec("float", "Float", "input.readFloat()");
+      case DOUBLE:
+        return new ScalarCodec("double", "Double", "input.readDouble()");
+      case SHORT:
+        return new ScalarCodec("short", "UInt32", "(short) input.readUInt32()");
+      case BYTE:
+        return new ScalarCodec("byte", "UInt32", "(byte) input.readUInt32()");
+      case CHAR:
+        return new ScalarCodec("char", "UInt32", "(char) input.readUInt32()");
+      case ARRAY:
+        if (((ArrayType) t).getComponentType().getKind() == TypeKind.BYTE) {
+          return new ScalarCodec("byte[]", "ByteArray", "input.readByteArray()");
+        }
+        return new DynamicCodec(types.erasure(t).toString());
+      case DECLARED:
+        break;
+      default:
+        return new DynamicCodec(types.erasure(t).toString());
+    }
+
+    TypeElement element = (TypeElement) ((DeclaredType) t).asElement();
+    String name = element.getQualifiedName().toString();
+    TypeKind unboxed = unboxedKind(t);
+    if (unboxed != null) {
+      ScalarCodec primitive = (ScalarCodec) codecOf(types.getPrimitiveType(unboxed));
+      return new ScalarCodec(name, primitive.method, primitive.read);
+    }
+    switch (name) {
+      case "java.lang.String":
+        return new ScalarCodec(name, "String", "input.readString()");
+      case "java.util.Date":
+        return new ScalarCodec(
+            name, "Fixed64", "new java.util.Date(input.readFixed64())", "%s.getTime()");
+      case "java.math.BigDecimal":
+        return new ScalarCodec(
+            name, "String", "new java.math.BigDecimal(input.readString())", "%s.toString()");
+      case "java.math.BigInteger":
+        return new ScalarCodec(
+            name,
+            "ByteArray",
+            "new java.math.BigInteger(input.readByteArray())",
+            "%s.toByteArray()");
+      case "io.protostuff.ByteString":
+        return new ScalarCodec(name, "Bytes", "input.readBytes()");
+      case "java.lang.Object":
+      case "java.lang.Class":
+        return new DynamicCodec(name);
+      default:
+        break;
+    }
+    if (element.getKind() == ElementKind.ENUM) {
+      return new EnumCodec(name);
+    }
+    // 与RuntimeSchema一样，具体类（包括JDK中的类，如LocalDate）按该类型的Schema编码
+    if (element.getKind() == ElementKind.CLASS
+        && !element.getModifiers().contains(Modifier.ABSTRACT)
+        && !isSubtype(t, "java.util.Map")
+        && !isSubtype(t, "java.util.Collection")
+        && !isSubtype(t, "java.lang.Throwable")) {
+      return new MessageCodec(name);
+    }
+    return new DynamicCodec(types.erasure(t).toString());
+  }
+
+  private TypeKind unboxedKind(TypeMirror t) {
+    try {
+      return types.unboxedType(t).getKind();
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /** 集合字段为null时创建的实例类型 */
+  private String collectionImpl(DeclaredType t) {
+    TypeElement element = (TypeElement) t.asElement();
+    boolean concrete =
+        element.getKind() == ElementKind.CLASS
+            && !element.getModifiers().contains(Modifier.ABSTRACT);
+    TypeMirror erasure = types.erasure(t);
+    if (concrete) {
+      return erasure.toString();
+    }
+    String[] candidates = {
+      "java.util.ArrayList", "java.util.HashSet", "java.util.TreeSet", "java.util.ArrayDeque"
+    };
+    for (String candidate : candidates) {
+      TypeElement impl = elements.getTypeElement(candidate);
+      if (types.isAssignable(types.erasure(impl.asType()), erasure)) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  /** 消息类中的一个字段 */
+  private final class Field {
+    final String name;
+    final int number;
+    final boolean deprecated;
+    final TypeMirror type;
+    final VariableElement element;
+    /** 读取字段值的表达式 */
+    private String getter;
+    /** 赋值语句模板，%s为值 */
+    private String setter;
+
+    Field(TypeElement owner, VariableElement field, int number, boolean deprecated)
+        throws GenerateException {
+      this.name = field.getSimpleName().toString();
+      this.number = number;
+      this.deprecated = deprecated;
+      this.type = field.asType();
+      this.element = field;
+      if (deprecated) {
+        return;
+      }
+
+      boolean direct = accessible(field, owner) && accessible(owner, owner);
+      if (direct) {
+        getter = "message." + name;
+      }
+      if (direct && !field.getModifiers().contains(Modifier.FINAL)) {
+        setter = "message." + name + " = %s;";
+      }
+
+      String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+      for (ExecutableElement method : ElementFilter.methodsIn(owner.getEnclosedElements())) {
+        if (!accessible(method, owner) || method.getModifiers().contains(Modifier.STATIC)) {
+          continue;
+        }
+        String methodName = method.getSimpleName().toString();
+        int params = method.getParameters().size();
+        if (getter == null
+            && params == 0
+            && types.isSameType(method.getReturnType(), type)
+            && (methodName.equals("get" + capitalized)
+                || (type.getKind() == TypeKind.BOOLEAN && methodName.equals("is" + capitalized)))) {
+          getter = "message." + methodName + "()";
+        } else if (setter == null
+            && params == 1
+            && methodName.equals("set" + capitalized)
+            && types.isSameType(method.getParameters().get(0).asType(), type)) {
+          setter = "message." + methodName + "(%s);";
+        }
+      }
+
+      if (getter == null || setter == null) {
+        throw new GenerateException(field, "字段" + name + "不可访问，请提供非private的getter/setter");
+      }
+    }
+
+    void appendWrite(StringBuilder sb, String indent) {
+      DeclaredType collection = collectionType();
+      if (collection != null) {
+        ValueCodec element = codecOf(elementType(collection));
+        sb.append(indent).append("{\n");
+        sb.append(indent).append("  java.util.Collection c = ").append(getter).append(";\n");
+        sb.append(indent).append("  if (c != null) {\n");
+        sb.append(indent).append("    for (Object e : c) {\n");
+        sb.append(indent).append("      if (e != null) {\n");
+        sb.append(indent).append("        ");
+        element.appendWrite(sb, number, "((" + element.boxed() + ") e)", true);
+        sb.append(indent).append("      }\n");
+        sb.append(indent).append("    }\n");
+        sb.append(indent).append("  }\n");
+        sb.append(indent).append("}\n");
+        return;
+      }
+
+      ValueCodec codec = codecOf(type);
+      if (type.getKind().isPrimitive()) {
+        sb.append(indent);
+        codec.appendWrite(sb, number, getter, false);
+        return;
+      }
+      sb.append(indent).append("{\n");
+      sb.append(indent).append("  ").append(codec.boxed()).append(" v = ").append(getter);
+      sb.append(";\n");
+      sb.append(indent).append("  if (v != null) {\n");
+      sb.append(indent).append("    ");
+      codec.appendWrite(sb, number, "v", false);
+      sb.append(indent).append("  }\n");
+      sb.append(indent).append("}\n");
+    }
+
+    void appendRead(StringBuilder sb, String indent) throws GenerateException {
+      DeclaredType collection = collectionType();
+      if (collection != null) {
+        String impl = collectionImpl(collection);
+        if (impl == null) {
+          throw new GenerateException(element, "无法确定字段" + name + "的集合实现类型");
+        }
+        ValueCodec element = codecOf(elementType(collection));
+        String erasure = types.erasure(type).toString();
+        sb.append(indent).append("{\n");
+        sb.append(indent).append("  java.util.Collection c = ").append(getter).append(";\n");
+        sb.append(indent).append("  if (c == null) {\n");
+        sb.append(indent).append("    c = new ").append(impl).append("();\n");
+        sb.append(indent).append("    ");
+        sb.append(String.format(setter, "(" + erasure + ") c")).append("\n");
+        sb.append(indent).append("  }\n");
+        sb.append(indent).append("  c.add(").append(element.read()).append(");\n");
+        sb.append(indent).append("}\n");
+        return;
+      }
+      sb.append(indent).append(String.format(setter, codecOf(type).read())).append("\n");
+    }
+
+    private DeclaredType collectionType() {
+      if (type.getKind() != TypeKind.DECLARED || !isSubtype(type, "java.util.Collection")) {
+        return null;
+      }
+      return (DeclaredType) type;
+    }
+
+    /** 集合元素类型，无法解析时按Object处理 */
+    private TypeMirror elementType(DeclaredType collection) {
+      TypeElement collectionElement = elements.getTypeElement("java.util.Collection");
+      for (TypeMirror t = collection; t != null; ) {
+        DeclaredType declared = (DeclaredType) t;
+        if (((TypeElement) declared.asElement()).getQualifiedName().contentEquals(
+            "java.util.Collection")) {
+          List<? extends TypeMirror> args = declared.getTypeArguments();
+          if (args.size() == 1) {
+            TypeMirror arg = args.get(0);
+            if (arg.getKind() == TypeKind.WILDCARD) {
+              TypeMirror bound = ((WildcardType) arg).getExtendsBound();
+              return bound == null ? elements.getTypeElement("java.lang.Object").asType() : bound;
+            }
+            return arg;
+          }
+          break;
+        }
+        TypeMirror next = null;
+        for (TypeMirror supertype : types.directSupertypes(t)) {
+          if (types.isAssignable(
+              types.erasure(supertype), types.erasure(collectionElement.asType()))) {
+            next = supertype;
+            break;
+          }
+        }
+        t = next;
+      }
+      return elements.getTypeElement("java.lang.Object").asType();
+    }
+  }
+
+  /** 单个值的编解码代码片段 */
+  private abstract static class ValueCodec {
+    /** @return 值的（装箱）类型名 */
+    abstract String boxed();
+
+    /** 追加写入语句 */
+    abstract void appendWrite(StringBuilder sb, int number, String value, boolean repeated);
+
+    /** @return 读取值的表达式 */
+    abstract String read();
+  }
+
+  /** ProtoStuff原生支持的标量 */
+  private static final class ScalarCodec extends ValueCodec {
+    final String type;
+    final String method;
+    final String read;
+    /** 写入前的转换模板，%s为值 */
+    final String write;
+
+    ScalarCodec(String type, String method, String read) {
+      this(type, method, read, "%s");
+    }
+
+    ScalarCodec(String type, String method, String read, String write) {
+      this.type = type;
+      this.method = method;
+      this.read = read;
+      this.write = write;
+    }
+
+    @Override
+    String boxed() {
+      switch (type) {
+        case "int":
+          return "java.lang.Integer";
+        case "char":
+          return "java.lang.Character";
+        case "long":
+        case "boolean":
+        case "float":
+        case "double":
+        case "short":
+        case "byte":
+          return "java.lang." + Character.toUpperCase(type.charAt(0)) + type.substring(1);
+        default:
+          return type;
+      }
+    }
+
+    @Override
+    void appendWrite(StringBuilder sb, int number, String value, boolean repeated) {
+      sb.append("output.write").append(method).append('(').append(number).append(", ");
+      sb.append(String.format(write, value)).append(", ").append(repeated).append(");\n");
+    }
+
+    @Override
+    String read() {
+      return read;
+    }
+  }
+
+  /** 枚举按序号编码 */
+  private static final class EnumCodec extends ValueCodec {
+    final String type;
+
+    EnumCodec(String type) {
+      this.type = type;
+    }
+
+    @Override
+    String boxed() {
+      return type;
+    }
+
+    @Override
+    void appendWrite(StringBuilder sb, int number, String value, boolean repeated) {
+      sb.append("output.writeEnum(").append(number).append(", ").append(value);
+      sb.append(".ordinal(), ").append(repeated).append(");\n");
+    }
+
+    @Override
+    String read() {
+      return type + ".values()[input.readEnum()]";
+    }
+  }
+
+  /** 具体类型的嵌套消息 */
+  private static final class MessageCodec extends ValueCodec {
+    final String type;
+
+    MessageCodec(String type) {
+      this.type = type;
+    }
+
+    @Override
+    String boxed() {
+      return type;
+    }
+
+    @Override
+    void appendWrite(StringBuilder sb, int number, String value, boolean repeated) {
+      sb.append("output.writeObject(").append(number).append(", ").append(value);
+      sb.append(", ").append(SCHEMAS).append(".getSchema(").append(type).append(".class), ");
+      sb.append(repeated).append(");\n");
+    }
+
+    @Override
+    String read() {
+      return "input.mergeObject(null, " + SCHEMAS + ".getSchema(" + type + ".class))";
+    }
+  }
+
+  /** 编译期无法确定具体类型的值，写入类型信息 */
+  private static final class DynamicCodec extends ValueCodec {
+    final String type;
+
+    DynamicCodec(String type) {
+      this.type = type;
+    }
+
+    @Override
+    String boxed() {
+      return type;
+    }
+
+    @Override
+    void appendWrite(StringBuilder sb, int number, String value, boolean repeated) {
+      sb.append(SCHEMAS).append(".writeDynamic(output, ").append(number).append(", ");
+      sb.append(value).append(", ").append(repeated).append(");\n");
+    }
+
+    @Override
+    String read() {
+      return "(" + type + ") " + SCHEMAS + ".readDynamic(input)";
+    }
+  }
+
+  /** 消息类不满足生成条件 */
+  static final class GenerateException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    final transient Element element;
+
+    GenerateException(Element element, String message) {
+      super(message);
+      this.element = element;
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package cn.ziav.rpc.client;
+
+import io.netty.channel.Channel;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个服务器地址上的连接池
+ *
+ * <p>池中的连接由Bootstrap依次分配到不同的IO线程上，编解码和读写分散在多个IO线程中。每次调用优先选择可写的连接，
+ * 其中在途请求数最少的一个；从随机位置开始比较，在途请求数相同时调用也能均匀分布到各个连接上。
+ *
+ * @author Zavi
+ */
+final class ChannelPool {
+  private static final Channel[] EMPTY = new Channel[0];
+
+  /** 池中的连接，写时复制 */
+  private volatile Channel[] channels = EMPTY;
+
+  /** 正在建立的后台连接数 */
+  private final AtomicInteger connecting = new AtomicInteger();
+
+  /**
+   * 选择一个连接
+   *
+   * @return 可写且在途请求数最少的连接；没有可写的连接时为在途请求数最少的连接；没有活跃的连接时为null
+   */
+  Channel select() {
+    Channel[] channels = this.channels;
+    int n = channels.length;
+    if (n == 0) {
+      return null;
+    }
+    if (n == 1) {
+      Channel channel = channels[0];
+      return channel.isActive() ? channel : null;
+    }
+    Channel best = null;
+    boolean bestWritable = false;
+    int bestInFlight = Integer.MAX_VALUE;
+    int start = ThreadLocalRandom.current().nextInt(n);
+    for (int i = 0; i < n; i++) {
+      Channel channel = channels[(start + i) % n];
+      if (!channel.isActive()) {
+        continue;
+      }
+      boolean writable = channel.isWritable();
+      if (bestWritable && !writable) {
+        continue;
+      }
+      int inFlight = RpcFuture.inFlight(channel);
+      if (writable != bestWritable || inFlight < bestInFlight) {
+        best = channel;
+        bestWritable = writable;
+        bestInFlight = inFlight;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * 加入新建立的连接，同时清理已断开的连接
+   *
+   * @param channel 新建立的连接
+   * @param capacity 连接池容量
+   * @return 连接池已满时返回false
+   */
+  synchronized boolean add(Channel channel, int capacity) {
+    Channel[] channels = this.channels;
+    int n = 0;
+    Channel[] copy = new Channel[channels.length + 1];
+    for (Channel c : channels) {
+      if (c == channel) {
+        return true;
+      }
+      if (c.isActive()) {
+        copy[n++] = c;
+      }
+    }
+    if (n >= capacity) {
+      return false;
+    }
+    copy[n++] = channel;
+    this.channels = n == copy.length ? copy : Arrays.copyOf(copy, n);
+    return true;
+  }
+
+  /**
+   * 移除连接
+   *
+   * @param channel 已断开的连接
+   */
+  synchronized void remove(Channel channel) {
+    Channel[] channels = this.channels;
+    for (int i = 0; i < channels.length; i++) {
+      if (channels[i] == channel) {
+        Channel[] copy = new Channel[channels.length - 1];
+        System.arraycopy(channels, 0, copy, 0, i);
+        System.arraycopy(channels, i + 1, copy, i, channels.length - i - 1);
+        this.channels = copy;
+        return;
+      }
+    }
+  }
+
+  /**
+   * 预留一个后台连接的名额，连接过程结束后必须调用{@link #release()}
+   *
+   * @param capacity 连接池容量
+   * @return 已有的连接和正在建立的连接达到容量时返回false
+   */
+  boolean reserve(int capacity) {
+    for (; ; ) {
+      int n = connecting.get();
+      if (channels.length + n >= capacity) {
+        return false;
+      }
+      if (connecting.compareAndSet(n, n + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /** 释放{@link #reserve(int)}预留的名额 */
+  void release() {
+    connecting.decrementAndGet();
+  }
+
+  /** @return 活跃的连接都不可写时返回false，没有活跃的连接时为true */
+  boolean isWritable() {
+    boolean active = false;
+    for (Channel channel : channels) {
+      if (channel.isActive()) {
+        if (channel.isWritable()) {
+          return true;
+        }
+        active = true;
+      }
+    }
+    return !active;
+  }
+
+  /** @return 池中的连接，不能修改 */
+  Channel[] channels() {
+    return channels;
+  }
+
+  /** @return 池中的连接数 */
+  int size() {
+    return channels.length;
+  }
+}
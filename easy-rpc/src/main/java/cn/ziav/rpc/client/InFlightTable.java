@@ -0,0 +1,231 @@
+package cn.ziav.rpc.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 以请求编号为键的在途请求表
+ *
+ * <p>按编号的哈希值分成多个段，每段各自加锁，段内是以long为键的开放寻址哈希表（线性探测，删除时后移补位），
+ * 存取都不需要装箱，也不会为每个条目分配节点对象。
+ *
+ * @author Zavi
+ */
+final class InFlightTable<V> {
+  /** 每段的初始容量 */
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Segment[] segments;
+
+  /** 段下标掩码 */
+  private final int segmentMask;
+
+  /** 段下标占用的位数 */
+  private final int segmentShift;
+
+  InFlightTable() {
+    this(Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  /** @param concurrency 预期的并发线程数，决定分段数量 */
+  InFlightTable(int concurrency) {
+    int size = 1;
+    int shift = 0;
+    while (size < concurrency) {
+      size <<= 1;
+      shift++;
+    }
+    segments = new Segment[size];
+    for (int i = 0; i < size; i++) {
+      segments[i] = new Segment(shift);
+    }
+    segmentMask = size - 1;
+    segmentShift = shift;
+  }
+
+  /**
+   * 放入条目
+   *
+   * @param id 请求编号
+   * @param value 不能为null
+   * @return 原有的值，没有时返回null
+   */
+  @SuppressWarnings("unchecked")
+  V put(long id, V value) {
+    int h = hash(id);
+    Segment segment = segments[h & segmentMask];
+    synchronized (segment) {
+      return (V) segment.put(id, h >>> segmentShift, value);
+    }
+  }
+
+  /**
+   * 获取条目
+   *
+   * @param id 请求编号
+   * @return 不存在时返回null
+   */
+  @SuppressWarnings("unchecked")
+  V get(long id) {
+    int h = hash(id);
+    Segment segment = segments[h & segmentMask];
+    synchronized (segment) {
+      return (V) segment.get(id, h >>> segmentShift);
+    }
+  }
+
+  /**
+   * 移除条目
+   *
+   * @param id 请求编号
+   * @return 被移除的值，不存在时返回null
+   */
+  @SuppressWarnings("unchecked")
+  V remove(long id) {
+    int h = hash(id);
+    Segment segment = segments[h & segmentMask];
+    synchronized (segment) {
+      return (V) segment.remove(id, h >>> segmentShift);
+    }
+  }
+
+  /**
+   * 所有条目的快照，需要遍历所有分段，只适合连接断开等低频场景
+   *
+   * @return 当前的值，不会移除
+   */
+  @SuppressWarnings("unchecked")
+  List<V> values() {
+    List<V> values = new ArrayList<>();
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.values((List<Object>) values);
+      }
+    }
+    return values;
+  }
+
+  /** @return 在途请求数 */
+  int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size;
+      }
+    }
+    return size;
+  }
+
+  /** 打散连续的请求编号 */
+  static int hash(long id) {
+    long h = id * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /** 单个分段，所有方法都在持有该段的锁时调用 */
+  private static final class Segment {
+    /** 段下标占用的位数，剩余的哈希位用于段内寻址 */
+    private final int shift;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+
+    /** 为null表示空槽 */
+    private Object[] values = new Object[INITIAL_CAPACITY];
+
+    private int mask = INITIAL_CAPACITY - 1;
+
+    private int size;
+
+    private Segment(int shift) {
+      this.shift = shift;
+    }
+
+    private Object get(long key, int h) {
+      for (int i = h & mask; ; i = (i + 1) & mask) {
+        Object value = values[i];
+        if (value == null || keys[i] == key) {
+          return value;
+        }
+      }
+    }
+
+    private Object put(long key, int h, Object value) {
+      int i = h & mask;
+      for (; values[i] != null; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          Object pre = values[i];
+          values[i] = value;
+          return pre;
+        }
+      }
+      keys[i] = key;
+      values[i] = value;
+      // 装载因子超过0.5时扩容
+      if (++size > (mask + 1) >>> 1) {
+        resize();
+      }
+      return null;
+    }
+
+    private Object remove(long key, int h) {
+      int i = h & mask;
+      for (; ; i = (i + 1) & mask) {
+        Object value = values[i];
+        if (value == null) {
+          return null;
+        }
+        if (keys[i] == key) {
+          break;
+        }
+      }
+      Object removed = values[i];
+      values[i] = null;
+      size--;
+      // 后移补位：把探测链上后续的条目移到空槽，保证查找不会提前遇到空槽
+      for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+        int home = (hash(keys[j]) >>> shift) & mask;
+        // home不在(i, j]的循环区间内时，该条目可以移到i
+        boolean movable = i <= j ? (home <= i || home > j) : (home <= i && home > j);
+        if (movable) {
+          keys[i] = keys[j];
+          values[i] = values[j];
+          values[j] = null;
+          i = j;
+        }
+      }
+      return removed;
+    }
+
+    private void values(List<Object> result) {
+      if (size == 0) {
+        return;
+      }
+      for (Object value : values) {
+        if (value != null) {
+          result.add(value);
+        }
+      }
+    }
+
+    private void resize() {
+      long[] oldKeys = keys;
+      Object[] oldValues = values;
+      int capacity = oldKeys.length << 1;
+      keys = new long[capacity];
+      values = new Object[capacity];
+      mask = capacity - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        Object value = oldValues[i];
+        if (value == null) {
+          continue;
+        }
+        int j = (hash(oldKeys[i]) >>> shift) & mask;
+        while (values[j] != null) {
+          j = (j + 1) & mask;
+        }
+        keys[j] = oldKeys[i];
+        values[j] = value;
+      }
+    }
+  }
+}
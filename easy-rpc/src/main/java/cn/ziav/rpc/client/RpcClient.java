@@ -0,0 +1,1214 @@
+package cn.ziav.rpc.client;
+
+import static cn.ziav.rpc.common.Constants.DEFAULT_CALLBACK_QUEUE_SIZE;
+import static cn.ziav.rpc.common.Constants.DEFAULT_CALLBACK_THREADS;
+import static cn.ziav.rpc.common.Constants.DEFAULT_CONNECTIONS_PER_NODE;
+import static cn.ziav.rpc.common.Constants.DEFAULT_CONNECT_TIMEOUT;
+import static cn.ziav.rpc.common.Constants.DEFAULT_HEARTBEAT;
+import static cn.ziav.rpc.common.Constants.DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK;
+import static cn.ziav.rpc.common.Constants.DEFAULT_WRITE_BUFFER_LOW_WATER_MARK;
+import static cn.ziav.rpc.common.Constants.DEFAULT_WRITE_QUEUE_SIZE;
+import static cn.ziav.rpc.common.Constants.IDLE_CHECK_INTERVAL;
+import static cn.ziav.rpc.common.Constants.PREWARM_JITTER;
+import static cn.ziav.rpc.exception.ExceptionCode.CHANNEL_INACTIVE;
+import static cn.ziav.rpc.exception.ExceptionCode.CHANNEL_UNWRITABLE;
+import static cn.ziav.rpc.exception.ExceptionCode.CLIENT_CONNECTED_FAILED;
+import static cn.ziav.rpc.exception.ExceptionCode.CLIENT_HAS_CLOSED;
+import static cn.ziav.rpc.exception.ExceptionCode.TIME_OUT;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import cn.ziav.rpc.codec.Compression;
+import cn.ziav.rpc.codec.MsgTypeRegistry;
+import cn.ziav.rpc.codec.RpcDecoder;
+import cn.ziav.rpc.codec.RpcEncoder;
+import cn.ziav.rpc.codec.Serializer;
+import cn.ziav.rpc.common.Constants;
+import cn.ziav.rpc.common.MsgRequest;
+import cn.ziav.rpc.common.NodeMetadata;
+import cn.ziav.rpc.exception.RemotingException;
+import cn.ziav.rpc.loadbalance.ConsistentHashLoadBalancer;
+import cn.ziav.rpc.loadbalance.LeastActiveLoadBalancer;
+import cn.ziav.rpc.loadbalance.LoadBalancer;
+import cn.ziav.rpc.loadbalance.LowLatencyLoadBalancer;
+import cn.ziav.rpc.loadbalance.NodeSnapshot;
+import cn.ziav.rpc.loadbalance.RandomLoadBalancer;
+import cn.ziav.rpc.loadbalance.RoundRobinLoadBalancer;
+import cn.ziav.rpc.loadbalance.WeightedRandomLoadBalancer;
+import cn.ziav.rpc.loadbalance.WeightedRoundRobinLoadBalancer;
+import cn.ziav.rpc.timer.ShardedWheelTimer;
+import cn.ziav.rpc.timer.StampedTimer;
+import cn.ziav.rpc.timer.Timeout;
+import cn.ziav.rpc.utils.NamedThreadFactory;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Watcher.Event;
+import org.apache.zookeeper.ZooKeeper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** @author Zavi */
+public class RpcClient {
+  private static final Logger logger = LoggerFactory.getLogger(RpcClient.class);
+
+  /** zk注册中心 */
+  private final String zkAddr;
+  /** 注册到具体的topic */
+  private final String topic;
+
+  /** 连接处理器 */
+  private final RpcClientHandler rpcClientHandler;
+
+  /** 客户端启动器 */
+  private final Bootstrap bootstrap;
+  /** netty client bootstrap */
+  private static final NioEventLoopGroup NIO_EVENT_LOOP_GROUP =
+      new NioEventLoopGroup(
+          Constants.DEFAULT_IO_THREADS, new DefaultThreadFactory("NettyClientWorker", true));
+
+  private ZooKeeper zk;
+
+  private volatile boolean closed;
+  /** 服务器节点列表 */
+  private volatile List<String> nodeList = new ArrayList<>();
+
+  private final Map<String, ServerNode> nodeMap = new ConcurrentHashMap<>();
+
+  /** 各地址正在进行的连接过程 */
+  private final Map<String, CompletableFuture<Channel>> pendingConnects =
+      new ConcurrentHashMap<>();
+
+  /** 出站缓冲区水位 */
+  private volatile WriteBufferWaterMark writeBufferWaterMark =
+      new WriteBufferWaterMark(
+          DEFAULT_WRITE_BUFFER_LOW_WATER_MARK, DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK);
+
+  /** 连接不可写时发送请求的策略 */
+  private volatile WritePolicy writePolicy = WritePolicy.QUEUE;
+
+  /** 每个连接不可写时暂存的请求数上限 */
+  private volatile int writeQueueSize = DEFAULT_WRITE_QUEUE_SIZE;
+
+  /** 每个节点的连接数 */
+  private volatile int connectionsPerNode = DEFAULT_CONNECTIONS_PER_NODE;
+
+  /** 标记因空闲或超出连接池容量被主动关闭的连接，不再后台重连 */
+  private static final AttributeKey<Boolean> REAPED = AttributeKey.valueOf("easy-rpc.reaped");
+
+  /** 空闲连接回收时间（毫秒），不大于0时只回收已下线节点的连接 */
+  private volatile long idleConnectionTimeout;
+
+  /** 空闲连接检查任务 */
+  private ScheduledFuture<?> reapTask;
+
+  /** 已下线的节点，连接上没有在途请求后关闭 */
+  private final Set<String> removedNodes = ConcurrentHashMap.newKeySet();
+
+  /** 各节点等待执行的补足连接任务，节点下线时取消 */
+  private final Map<String, ScheduledFuture<?>> reconnects = new ConcurrentHashMap<>();
+
+  /** 服务发现发布的节点快照，请求路径上只读取快照，不加锁 */
+  private volatile NodeSnapshot snapshot = NodeSnapshot.EMPTY;
+
+  /** 串行化节点列表的更新 */
+  private Lock lock = new ReentrantLock();
+
+  private static final LoadBalancer RANDOM = new RandomLoadBalancer();
+
+  private static final LoadBalancer LOW_LATENCY = new LowLatencyLoadBalancer();
+
+  private static final LoadBalancer LEAST_ACTIVE = new LeastActiveLoadBalancer();
+
+  /** 轮询计数按客户端独立 */
+  private final LoadBalancer roundRobin = new RoundRobinLoadBalancer();
+
+  /** 哈希环跟随客户端的节点快照 */
+  private final LoadBalancer consistentHash = new ConsistentHashLoadBalancer();
+
+  /** 按节点快照版本缓存的加权调度表 */
+  private final LoadBalancer weightedRoundRobin = new WeightedRoundRobinLoadBalancer();
+
+  private final LoadBalancer weightedRandom = new WeightedRandomLoadBalancer();
+
+  /** 默认的负载均衡策略 */
+  private volatile LoadBalancer loadBalancer = roundRobin;
+
+  /** 消息类型注册表 */
+  private final MsgTypeRegistry typeRegistry = new MsgTypeRegistry();
+
+  /** 客户端自建的有界回调线程池，队列满时回调在IO线程中执行，随客户端关闭 */
+  private final ExecutorService defaultCallbackExecutor = newSharedExecutor();
+
+  /** 异步调用默认的回调线程池，为null时在IO线程中执行回调 */
+  private volatile Executor callbackExecutor = defaultCallbackExecutor;
+
+  /** 请求超时计时器 */
+  private final StampedTimer timeoutTimer;
+
+  /**
+   * 初始化Client端，并连接zookeeper
+   *
+   * @param zkAddr zk地址
+   * @param topic 服务发现的topic
+   * @throws Throwable
+   */
+  public RpcClient(String zkAddr, String topic) throws Throwable {
+    this(zkAddr, topic, RpcFuture.TIME_OUT_TIMER);
+  }
+
+  /**
+   * 初始化Client端，并使用独立的超时计时器
+   *
+   * @param zkAddr zk地址
+   * @param topic 服务发现的topic
+   * @param timeoutTick 超时计时器的tick长度，即超时的精度
+   * @param unit tick的单位
+   * @throws Throwable
+   */
+  public RpcClient(String zkAddr, String topic, long timeoutTick, TimeUnit unit)
+      throws Throwable {
+    this(zkAddr, topic, timeoutTick, unit, 1);
+  }
+
+  /**
+   * 初始化Client端，并使用独立的分片超时计时器，适合单个进程请求量很高的场景
+   *
+   * @param zkAddr zk地址
+   * @param topic 服务发现的topic
+   * @param timeoutTick 超时计时器的tick长度，即超时的精度
+   * @param unit tick的单位
+   * @param timerShards 超时计时器的分片数，每个分片一个工作线程
+   * @throws Throwable
+   */
+  public RpcClient(
+      String zkAddr, String topic, long timeoutTick, TimeUnit unit, int timerShards)
+      throws Throwable {
+    this(
+        zkAddr,
+        topic,
+        new ShardedWheelTimer(
+            new NamedThreadFactory("easyRpc-client-timeout", true),
+            timeoutTick,
+            unit,
+            timerShards));
+  }
+
+  private RpcClient(String zkAddr, String topic, StampedTimer timeoutTimer) throws Throwable {
+    this.zkAddr = zkAddr;
+    this.topic = topic;
+    this.timeoutTimer = timeoutTimer;
+    bootstrap = new Bootstrap();
+    bootstrap
+        // 设置线程池组
+        .group(NIO_EVENT_LOOP_GROUP)
+        // 设置连接存活探测
+        .option(ChannelOption.SO_KEEPALIVE, true)
+        // 禁用Nagle算法
+        .option(ChannelOption.TCP_NODELAY, true)
+        // 设置缓冲区分配器
+        .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+        // 设置连接超时
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, DEFAULT_CONNECT_TIMEOUT)
+        // 设置非阻塞的连接套接字通道
+        .channel(NioSocketChannel.class);
+
+    this.rpcClientHandler = new RpcClientHandler();
+    bootstrap.handler(
+        new ChannelInitializer() {
+
+          @Override
+          protected void initChannel(Channel ch) throws Exception {
+            ch.config().setWriteBufferWaterMark(writeBufferWaterMark);
+            ch.pipeline()
+                // 解码器
+                .addLast("decoder", new RpcDecoder(typeRegistry))
+                // 编码器
+                .addLast("encoder", new RpcEncoder(typeRegistry))
+                // 心跳检测
+                .addLast(
+                    "client-idle-handler",
+                    new IdleStateHandler(DEFAULT_HEARTBEAT * 3, 0, 0, MILLISECONDS))
+                // 客户端请求处理器
+                .addLast("handler", rpcClientHandler);
+          }
+        });
+
+    // 初始化Zookeeper
+    initZooKeeper(zkAddr);
+    // 更新服务器节点信息，并预先连接所有节点
+    updateNodeList();
+    reapTask =
+        NIO_EVENT_LOOP_GROUP.scheduleWithFixedDelay(
+            this::reapChannels, IDLE_CHECK_INTERVAL, IDLE_CHECK_INTERVAL, MILLISECONDS);
+  }
+
+  /**
+   * 初始化Zookeeper
+   *
+   * @param zkAddr
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  private void initZooKeeper(String zkAddr) throws IOException, InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+
+    ZooKeeper zk =
+        new ZooKeeper(
+            zkAddr,
+            Constants.ZK_SESSION_TIMEOUT,
+            event -> {
+              if (event.getState() == Event.KeeperState.SyncConnected) {
+                latch.countDown();
+              }
+            });
+    latch.await();
+    this.zk = zk;
+  }
+
+  /** 更新服务器节点信息 */
+  private void updateNodeList() {
+    lock.lock();
+    try {
+      List<String> oldNodeList = this.nodeList;
+      this.nodeList =
+          zk.getChildren(
+              Constants.ZK_REGISTRY_PATH + "/" + topic,
+              event -> {
+                if (event.getType() == Event.EventType.NodeChildrenChanged) {
+                  updateNodeList();
+                }
+              });
+      // 新列表和老列表完全相同，那么什么都不需要做
+      if (this.nodeList.containsAll(oldNodeList) && this.nodeList.size() == oldNodeList.size()) {
+        return;
+      }
+
+      // 老列表中有而新列表中没有的是下线的节点，反之是上线的节点
+      Set<String> removed = new HashSet<>(oldNodeList);
+      removed.removeAll(this.nodeList);
+      Set<String> added = new HashSet<>(this.nodeList);
+      added.removeAll(oldNodeList);
+
+      // 下线的节点取消重连，连接上没有在途请求后关闭
+      for (String addr : removed) {
+        this.nodeMap.remove(addr);
+        removedNodes.add(addr);
+        ScheduledFuture<?> reconnect = reconnects.remove(addr);
+        if (reconnect != null) {
+          reconnect.cancel(false);
+        }
+      }
+
+      // 新节点读取元数据后在后台预先建立连接
+      for (String addr : added) {
+        ServerNode node = new ServerNode(addr);
+        if (this.nodeMap.putIfAbsent(addr, node) == null) {
+          watchMetadata(node);
+          removedNodes.remove(addr);
+          scheduleConnect(addr, ThreadLocalRandom.current().nextInt(PREWARM_JITTER));
+        }
+      }
+      publishSnapshot();
+      if (!removed.isEmpty()) {
+        // 立即回收下线节点的空闲连接，有在途请求的连接由定时任务在请求结束后回收
+        NIO_EVENT_LOOP_GROUP.execute(this::reapChannels);
+      }
+    } catch (KeeperException | InterruptedException e) {
+      logger.error("", e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** 发布新的节点快照，在持有锁时调用 */
+  private void publishSnapshot() {
+    List<ServerNode> nodes = new ArrayList<>(this.nodeList.size());
+    for (String addr : this.nodeList) {
+      ServerNode node = this.nodeMap.get(addr);
+      if (node != null) {
+        nodes.add(node);
+      }
+    }
+    NodeSnapshot snapshot = new NodeSnapshot(this.snapshot.version() + 1, nodes);
+    this.snapshot = snapshot;
+    // 提前重建哈希环等结构
+    consistentHash.nodesChanged(snapshot);
+    if (loadBalancer != consistentHash) {
+      loadBalancer.nodesChanged(snapshot);
+    }
+  }
+
+  /**
+   * 读取节点元数据并监听变化
+   *
+   * @param node 节点
+   * @return 权重是否改变
+   */
+  private boolean watchMetadata(ServerNode node) throws InterruptedException {
+    try {
+      byte[] data =
+          zk.getData(
+              Constants.ZK_REGISTRY_PATH + "/" + topic + "/" + node.addr,
+              event -> {
+                if (event.getType() == Event.EventType.NodeDataChanged) {
+                  updateMetadata(node);
+                }
+              },
+              null);
+      return node.updateMetadata(NodeMetadata.decode(data));
+    } catch (KeeperException.NoNodeException e) {
+      // 节点已下线，由节点列表的监听移除
+      return false;
+    } catch (KeeperException e) {
+      logger.error("read metadata of " + node.addr + " failed", e);
+      return false;
+    }
+  }
+
+  /**
+   * 节点元数据变化，权重改变时发布新的节点快照，节点的连接保持不变
+   *
+   * @param node 节点
+   */
+  private void updateMetadata(ServerNode node) {
+    lock.lock();
+    try {
+      // 已下线的节点不再监听
+      if (closed || this.nodeMap.get(node.addr) != node) {
+        return;
+      }
+      if (watchMetadata(node)) {
+        publishSnapshot();
+      }
+    } catch (InterruptedException e) {
+      logger.error("", e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 绑定消息id的请求体和响应体类型，绑定后消息体按具体类型编解码，不再携带类名
+   *
+   * @param msgId 业务消息id
+   * @param requestType 请求体类型，可为null
+   * @param responseType 响应体类型，可为null
+   */
+  public void registerType(int msgId, Class<?> requestType, Class<?> responseType) {
+    typeRegistry.register(msgId, requestType, responseType);
+  }
+
+  /**
+   * 指定消息id的请求体序列化器，服务端未指定时响应体沿用该序列化器
+   *
+   * @param msgId 业务消息id
+   * @param serializer 序列化器，为null时恢复默认序列化器
+   */
+  public void registerSerializer(int msgId, Serializer serializer) {
+    typeRegistry.bindSerializer(msgId, serializer);
+  }
+
+  /**
+   * 指定所有消息id默认使用的请求体序列化器，如全局切换到ProtoStuff非图模式，需要支持循环引用的消息可单独指定图模式
+   *
+   * @param serializer 序列化器，为null时恢复默认序列化器
+   */
+  public void setDefaultSerializer(Serializer serializer) {
+    typeRegistry.setDefaultSerializer(serializer);
+  }
+
+  /**
+   * 指定消息id的请求体压缩阈值，只在服务端支持压缩的连接上生效
+   *
+   * @param msgId 业务消息id
+   * @param threshold 阈值（字节），为{@link Compression#DISABLED}时该消息id不压缩
+   */
+  public void registerCompressThreshold(int msgId, int threshold) {
+    typeRegistry.bindCompressThreshold(msgId, threshold);
+  }
+
+  /**
+   * 指定所有消息id默认的请求体压缩阈值，只在服务端支持压缩的连接上生效
+   *
+   * @param threshold 阈值（字节），为{@link Compression#DISABLED}时不压缩
+   */
+  public void setDefaultCompressThreshold(int threshold) {
+    typeRegistry.setDefaultCompressThreshold(threshold);
+  }
+
+  public <T, R> R send(String addr, int msgId, T body, int timeout) throws Throwable {
+    // 判断client是否已关闭
+    if (closed) {
+      throw new RemotingException(CLIENT_HAS_CLOSED);
+    }
+    long start = System.currentTimeMillis();
+    // 根据远程服务器地址获取连接通道
+    Channel channel = getOrCreateChannel(addr, timeout);
+    // 建立连接的时间计入调用的超时时间
+    int remaining = remainingTimeout(timeout, start);
+    if (remaining <= 0) {
+      throw new RemotingException(TIME_OUT, "client timeout");
+    }
+    // 构建请求
+    MsgRequest<T> request = new MsgRequest<>();
+    request.mTwoWay = false;
+    request.mData = body;
+    request.mId = msgId;
+    // 代理给RpcFuture处理结果，响应体在当前线程中反序列化
+    RpcFuture<R> rpcFuture =
+        RpcFuture.newSyncFuture(request, remaining, nodeMap.get(addr), channel, timeoutTimer);
+    try {
+      // 连接不可写时阻塞等待，最多等到调用超时，连接断开时由write以CHANNEL_INACTIVE结束调用
+      if (writePolicy == WritePolicy.BLOCK && !channel.isWritable()) {
+        long deadline = System.currentTimeMillis() + remaining;
+        if (!WriteQueue.get(channel).awaitWritable(channel, deadline)) {
+          rpcFuture.fail(unwritable(channel));
+          return rpcFuture.await();
+        }
+      }
+      write(channel, request, rpcFuture);
+      return rpcFuture.await();
+    } catch (Throwable e) {
+      // 异常取消
+      rpcFuture.cancel(true);
+      throw e;
+    }
+  }
+
+  /**
+   * 获取或创建Channel，连接尚未建立时阻塞等待，最多等到调用的超时时间
+   *
+   * @param addr
+   * @param timeout 调用的超时时间（毫秒）
+   * @return
+   * @throws RemotingException
+   */
+  private Channel getOrCreateChannel(String addr, int timeout) throws RemotingException {
+    // 根据Server端的地址获取连接Channel
+    Channel channel = rpcClientHandler.getChannel(addr);
+    if (channel != null) {
+      return channel;
+    }
+
+    // 加入该地址正在进行的连接过程，按本次调用的超时时间阻塞等待结果
+    try {
+      return acquireChannel(addr).get(timeout, MILLISECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RemotingException) {
+        throw (RemotingException) e.getCause();
+      }
+      throw new RemotingException(CLIENT_CONNECTED_FAILED, e.getCause());
+    } catch (TimeoutException e) {
+      // 只结束本次调用，连接过程继续进行，由其他调用或后台补足连接池时使用
+      throw new RemotingException(TIME_OUT, "client timeout, connecting " + addr);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RemotingException(CLIENT_CONNECTED_FAILED, e);
+    }
+  }
+
+  /**
+   * 获取连接，不阻塞调用线程
+   *
+   * <p>同一地址同时只有一个连接过程，连接建立前发起的调用都挂在同一个结果上，连接建立后在IO线程中依次发送，
+   * 连接失败时立即失败，不会为同一地址重复建立连接。连接过程本身只受{@link
+   * cn.ziav.rpc.common.Constants#DEFAULT_CONNECT_TIMEOUT}限制，各调用按自己的超时时间等待（见{@link
+   * #getOrCreateChannel(String, int)}和{@link #awaitChannel(String, int, Executor)}），
+   * 某个调用超时不会结束共用的连接过程。
+   *
+   * @param addr 服务器地址
+   * @return 连接结果，失败时为{@link RemotingException}
+   */
+  private CompletableFuture<Channel> acquireChannel(String addr) {
+    CompletableFuture<Channel> pending = pendingConnects.get(addr);
+    if (pending != null) {
+      return pending;
+    }
+    CompletableFuture<Channel> future = new CompletableFuture<>();
+    pending = pendingConnects.putIfAbsent(addr, future);
+    if (pending != null) {
+      return pending;
+    }
+    // 可能刚好有其他连接过程完成
+    Channel channel = rpcClientHandler.getChannel(addr);
+    if (channel != null) {
+      pendingConnects.remove(addr, future);
+      future.complete(channel);
+      return future;
+    }
+    connect(addr)
+        .addListener(
+            (ChannelFuture f) -> {
+              if (f.isSuccess()) {
+                // 先登记连接再移除连接过程，之后的调用直接使用已登记的连接
+                Channel registered = register(addr, f.channel());
+                pendingConnects.remove(addr, future);
+                if (registered == null) {
+                  future.completeExceptionally(new RemotingException(CLIENT_HAS_CLOSED));
+                  return;
+                }
+                future.complete(registered);
+                // 在后台补足连接池中的其余连接
+                if (connectionsPerNode > 1) {
+                  fillPool(addr);
+                }
+              } else {
+                pendingConnects.remove(addr, future);
+                future.completeExceptionally(
+                    new RemotingException(CLIENT_CONNECTED_FAILED, f.cause()));
+              }
+            });
+    return future;
+  }
+
+  /**
+   * 非阻塞调用等待连接建立。发起调用时即按调用的超时时间计时，连接过程超过该时间时以{@link
+   * cn.ziav.rpc.exception.ExceptionCode#TIME_OUT}结束，不必等到连接超时（{@link
+   * cn.ziav.rpc.common.Constants#DEFAULT_CONNECT_TIMEOUT}）
+   *
+   * @param addr 服务器地址
+   * @param timeout 调用的超时时间（毫秒）
+   * @param executor 通知超时的线程池，为null时在计时器线程中通知
+   * @return 连接结果
+   */
+  private CompletableFuture<Channel> awaitChannel(String addr, int timeout, Executor executor) {
+    CompletableFuture<Channel> connect = acquireChannel(addr);
+    if (connect.isDone()) {
+      return connect;
+    }
+    CompletableFuture<Channel> result = new CompletableFuture<>();
+    Timeout deadline =
+        timeoutTimer.newTimeout(
+            t ->
+                RpcFuture.execute(
+                    executor,
+                    () ->
+                        result.completeExceptionally(
+                            new RemotingException(TIME_OUT, "client timeout, connecting " + addr))),
+            timeout,
+            MILLISECONDS);
+    connect.whenComplete(
+        (channel, e) -> {
+          deadline.cancel();
+          if (e != null) {
+            result.completeExceptionally(e);
+          } else {
+            result.complete(channel);
+          }
+        });
+    return result;
+  }
+
+  /**
+   * 发起连接，不等待结果
+   *
+   * @param addr 服务器地址
+   * @return 连接结果
+   */
+  private ChannelFuture connect(String addr) {
+    String[] split = addr.split(":");
+    return bootstrap.connect(split[0], Integer.parseInt(split[1]));
+  }
+
+  /**
+   * 登记新建立的连接到连接池中
+   *
+   * @param addr 服务器地址
+   * @param channel 新建立的连接
+   * @return 该地址上实际使用的连接，客户端已关闭时关闭连接并返回null
+   */
+  private Channel register(String addr, Channel channel) {
+    ChannelPool pool = rpcClientHandler.getOrCreatePool(addr);
+    if (!pool.add(channel, connectionsPerNode)) {
+      // 按需连接和后台连接同时完成，连接池已满时关闭多余的连接
+      Channel selected = pool.select();
+      if (selected != null) {
+        channel.attr(REAPED).set(Boolean.TRUE);
+        channel.close();
+        return closed ? null : selected;
+      }
+      pool.add(channel, Integer.MAX_VALUE);
+    }
+    // 放入连接池之后再检查，关闭客户端时已经遍历过连接池的，由这里关闭
+    if (closed) {
+      channel.close();
+      return null;
+    }
+    ServerNode node = nodeMap.get(addr);
+    if (node != null) {
+      node.pool = pool;
+      node.connected();
+    }
+    // 连接断开后在后台重连
+    channel.closeFuture().addListener(future -> onChannelClosed(addr, channel));
+    return channel;
+  }
+
+  /**
+   * 连接断开时，节点仍在线且连接不是因空闲被回收的，按退避时间在后台重连
+   *
+   * @param addr 服务器地址
+   * @param channel 已断开的连接
+   */
+  private void onChannelClosed(String addr, Channel channel) {
+    ServerNode node = nodeMap.get(addr);
+    if (closed || node == null || Boolean.TRUE.equals(channel.attr(REAPED).get())) {
+      return;
+    }
+    scheduleConnect(addr, node.nextReconnectDelay());
+  }
+
+  /**
+   * 延迟后在后台补足连接池
+   *
+   * @param addr 服务器地址
+   * @param delay 延迟（毫秒）
+   */
+  private void scheduleConnect(String addr, long delay) {
+    if (closed) {
+      return;
+    }
+    reconnects.compute(
+        addr,
+        (key, pending) -> {
+          // 已有不晚于本次执行的任务时不重复调度
+          if (pending != null && pending.getDelay(MILLISECONDS) <= delay) {
+            return pending;
+          }
+          if (pending != null) {
+            pending.cancel(false);
+          }
+          return NIO_EVENT_LOOP_GROUP.schedule(
+              () -> {
+                // 开始执行后移除，之后的重试重新调度
+                reconnects.remove(addr);
+                fillPool(addr);
+              },
+              delay,
+              MILLISECONDS);
+        });
+  }
+
+  /**
+   * 在后台把节点的连接池补足到{@link #connectionsPerNode}个连接，失败时按退避时间重试，直到成功、节点下线或客户端关闭
+   *
+   * @param addr 服务器地址
+   */
+  private void fillPool(String addr) {
+    ServerNode node = nodeMap.get(addr);
+    if (closed || node == null) {
+      return;
+    }
+    ChannelPool pool = rpcClientHandler.getOrCreatePool(addr);
+    if (pool.size() == 0) {
+      // 第一个连接与按需连接共用同一个连接过程，建立后再补足其余连接
+      acquireChannel(addr)
+          .whenComplete(
+              (channel, e) -> {
+                if (e != null) {
+                  retryConnect(addr, node);
+                }
+              });
+      return;
+    }
+    while (pool.reserve(connectionsPerNode)) {
+      connect(addr)
+          .addListener(
+              (ChannelFuture f) -> {
+                // 先登记连接再释放名额，避免同时有多余的连接过程
+                if (f.isSuccess()) {
+                  register(addr, f.channel());
+                }
+                pool.release();
+                if (!f.isSuccess()) {
+                  retryConnect(addr, node);
+                }
+              });
+    }
+  }
+
+  /**
+   * 连接失败，按退避时间重试
+   *
+   * @param addr 服务器地址
+   * @param node 服务器节点
+   */
+  private void retryConnect(String addr, ServerNode node) {
+    long next = node.nextReconnectDelay();
+    logger.warn("connect to {} failed, retry in {}ms", addr, next);
+    scheduleConnect(addr, next);
+  }
+
+  /**
+   * 回收已下线节点的连接、超过空闲时间的连接，以及超出连接池容量的连接，只回收没有在途请求的连接
+   */
+  private synchronized void reapChannels() {
+    long idleTimeout = idleConnectionTimeout;
+    long now = System.currentTimeMillis();
+    for (Map.Entry<String, ChannelPool> entry : rpcClientHandler.getChannelPools().entrySet()) {
+      String addr = entry.getKey();
+      ChannelPool pool = entry.getValue();
+      ServerNode node = nodeMap.get(addr);
+      boolean removed = node == null && removedNodes.contains(addr);
+      boolean idle = node != null && idleTimeout > 0 && now - node.lastRequestTime > idleTimeout;
+      if (removed && pool.size() == 0) {
+        removedNodes.remove(addr);
+        rpcClientHandler.removePool(addr, pool);
+        continue;
+      }
+      // 调小连接数后多余的连接
+      int excess = removed || idle ? pool.size() : pool.size() - connectionsPerNode;
+      for (Channel channel : pool.channels()) {
+        if (excess <= 0) {
+          break;
+        }
+        if (RpcFuture.inFlight(channel) > 0) {
+          continue;
+        }
+        logger.info("close {} channel {}", removed ? "removed" : idle ? "idle" : "excess", addr);
+        channel.attr(REAPED).set(Boolean.TRUE);
+        channel.close();
+        excess--;
+      }
+    }
+  }
+
+  /**
+   * 指定出站缓冲区的水位，对已建立的连接同样生效。缓冲区超过高水位时连接不可写，请求按{@link WritePolicy}处理，
+   * 降到低水位以下时恢复可写
+   *
+   * @param low 低水位（字节）
+   * @param high 高水位（字节）
+   */
+  public void setWriteBufferWaterMark(int low, int high) {
+    WriteBufferWaterMark waterMark = new WriteBufferWaterMark(low, high);
+    this.writeBufferWaterMark = waterMark;
+    for (ChannelPool pool : rpcClientHandler.getChannelPools().values()) {
+      for (Channel channel : pool.channels()) {
+        channel.config().setWriteBufferWaterMark(waterMark);
+      }
+    }
+  }
+
+  /**
+   * 指定连接不可写时发送请求的策略
+   *
+   * @param policy 策略，默认为{@link WritePolicy#QUEUE}
+   */
+  public void setWritePolicy(WritePolicy policy) {
+    this.writePolicy = Objects.requireNonNull(policy);
+  }
+
+  /**
+   * 指定每个连接不可写时暂存的请求数上限，只在{@link WritePolicy#QUEUE}和{@link WritePolicy#BLOCK}策略下生效
+   *
+   * @param size 上限，默认为{@link Constants#DEFAULT_WRITE_QUEUE_SIZE}
+   */
+  public void setWriteQueueSize(int size) {
+    this.writeQueueSize = size;
+  }
+
+  /**
+   * @param addr 服务器地址
+   * @return 该地址上的连接都因出站缓冲区积压而不可写时返回false
+   */
+  public boolean isWritable(String addr) {
+    return rpcClientHandler.isWritable(addr);
+  }
+
+  /**
+   * 指定每个节点的连接数，调用按在途请求数分散到各个连接上。连接数调大时在后台补足，调小时回收没有在途请求的多余连接
+   *
+   * @param connections 连接数，默认为{@link Constants#DEFAULT_CONNECTIONS_PER_NODE}
+   */
+  public void setConnectionsPerNode(int connections) {
+    if (connections < 1) {
+      throw new IllegalArgumentException("connections must be positive: " + connections);
+    }
+    this.connectionsPerNode = connections;
+    for (String addr : nodeMap.keySet()) {
+      scheduleConnect(addr, 0);
+    }
+  }
+
+  /**
+   * @param addr 服务器地址
+   * @return 该地址上已建立的连接数
+   */
+  public int getConnectionCount(String addr) {
+    ChannelPool pool = rpcClientHandler.getChannelPools().get(addr);
+    return pool == null ? 0 : pool.size();
+  }
+
+  /**
+   * 指定空闲连接的回收时间。被回收的连接不会在后台重连，下次调用时再重新建立
+   *
+   * @param timeout 回收时间（毫秒），不大于0时只回收已下线节点的连接（默认）
+   */
+  public void setIdleConnectionTimeout(long timeout) {
+    this.idleConnectionTimeout = timeout;
+  }
+
+  /**
+   * 非阻塞调用，回调在客户端默认的回调线程池中执行
+   *
+   * @param addr 服务器地址
+   * @param msgId 业务消息id
+   * @param body 请求体
+   * @param timeout 超时时间（毫秒），包括建立连接的时间
+   * @return 调用结果
+   * @see #setCallbackExecutor(Executor)
+   */
+  public <T, R> CompletionStage<R> call(String addr, int msgId, T body, int timeout) {
+    return call(addr, msgId, body, timeout, callbackExecutor);
+  }
+
+  /**
+   * 非阻塞调用，调用线程在任何情况下都不会阻塞，尚未建立连接时异步连接后再发送请求
+   *
+   * @param addr 服务器地址
+   * @param msgId 业务消息id
+   * @param body 请求体
+   * @param timeout 超时时间（毫秒），包括建立连接的时间
+   * @param executor 完成调用结果（包括响应体反序列化和后续的非异步阶段）的线程池，为null时直接在IO线程中完成
+   * @return 调用结果，失败时为{@link RemotingException}或服务端抛出的异常
+   */
+  public <T, R> CompletionStage<R> call(
+      String addr, int msgId, T body, int timeout, Executor executor) {
+    // 判断client是否已关闭
+    if (closed) {
+      return failedFuture(new RemotingException(CLIENT_HAS_CLOSED));
+    }
+    Channel channel = rpcClientHandler.getChannel(addr);
+    if (channel != null) {
+      return doCall(channel, addr, msgId, body, timeout, null, executor);
+    }
+
+    CompletableFuture<R> result = new CompletableFuture<>();
+    long start = System.currentTimeMillis();
+    // 连接建立后在IO线程中发送请求，超时前仍未建立连接时立即以超时结束
+    awaitChannel(addr, timeout, executor)
+        .whenComplete(
+            (newChannel, e) -> {
+              if (e != null) {
+                result.completeExceptionally(e);
+                return;
+              }
+              int remaining = remainingTimeout(timeout, start);
+              if (remaining <= 0) {
+                result.completeExceptionally(new RemotingException(TIME_OUT, "client timeout"));
+                return;
+              }
+              RpcFuture<R> rpcFuture =
+                  doCall(newChannel, addr, msgId, body, remaining, null, executor);
+              rpcFuture.whenComplete(
+                  (value, cause) -> {
+                    if (cause != null) {
+                      result.completeExceptionally(cause);
+                    } else {
+                      result.complete(value);
+                    }
+                  });
+            });
+    return result;
+  }
+
+  /**
+   * 在已建立的连接上发送请求
+   *
+   * @param callback 回调，可为null
+   * @return 调用结果
+   */
+  private <T, R> RpcFuture<R> doCall(
+      Channel channel,
+      String addr,
+      int msgId,
+      T body,
+      int timeout,
+      EasyRpcCallback<R> callback,
+      Executor executor) {
+    // 构建请求对象
+    MsgRequest<T> request = new MsgRequest<>();
+    request.mTwoWay = false;
+    request.mId = msgId;
+    request.mData = body;
+    // 代理给RpcFuture处理结果，发送失败时由RpcClientHandler以异常响应结束调用
+    RpcFuture<R> rpcFuture =
+        RpcFuture.newFuture(
+            request, callback, timeout, nodeMap.get(addr), executor, channel, timeoutTimer);
+    write(channel, request, rpcFuture);
+    return rpcFuture;
+  }
+
+  /**
+   * 发送请求，连接不可写时按{@link #writePolicy}暂存或立即失败，不会阻塞
+   *
+   * @param channel 连接
+   * @param request 请求
+   * @param rpcFuture 调用结果
+   */
+  private void write(Channel channel, MsgRequest<?> request, RpcFuture<?> rpcFuture) {
+    // 已断开的连接同样不可写，不能进入暂存队列，否则调用要等到超时才结束
+    if (!channel.isActive()) {
+      rpcFuture.fail(inactive(channel));
+      return;
+    }
+    if (!channel.isWritable()) {
+      if (writePolicy == WritePolicy.FAIL_FAST) {
+        rpcFuture.fail(unwritable(channel));
+      } else if (!WriteQueue.get(channel).offer(channel, request, writeQueueSize)) {
+        // 队列已满，或连接在检查之后断开、队列已被清空
+        rpcFuture.fail(channel.isActive() ? unwritable(channel) : inactive(channel));
+      }
+      return;
+    }
+    // 写入缓冲区
+    channel.writeAndFlush(request);
+    // 标记请求已发送
+    rpcFuture.sent();
+  }
+
+  private static RemotingException unwritable(Channel channel) {
+    return new RemotingException(
+        CHANNEL_UNWRITABLE, "channel unwritable, remote=" + channel.remoteAddress());
+  }
+
+  private static RemotingException inactive(Channel channel) {
+    return new RemotingException(
+        CHANNEL_INACTIVE, "channel inactive, remote=" + channel.remoteAddress());
+  }
+
+  /**
+   * @param timeout 超时时间（毫秒）
+   * @param start 发起调用的时间
+   * @return 建立连接后剩余的超时时间
+   */
+  private static int remainingTimeout(int timeout, long start) {
+    return (int) (timeout - (System.currentTimeMillis() - start));
+  }
+
+  private static <R> CompletableFuture<R> failedFuture(Throwable e) {
+    CompletableFuture<R> future = new CompletableFuture<>();
+    future.completeExceptionally(e);
+    return future;
+  }
+
+  /**
+   * 异步调用，回调在客户端默认的回调线程池中执行
+   *
+   * @param addr 服务器地址
+   * @param msgId 业务消息id
+   * @param body 请求体
+   * @param timeout 超时时间（毫秒），包括建立连接的时间
+   * @param callback 回调
+   * @see #setCallbackExecutor(Executor)
+   */
+  public <T, R> void sendAsync(
+      String addr, int msgId, T body, int timeout, EasyRpcCallback<R> callback) {
+    sendAsync(addr, msgId, body, timeout, callback, callbackExecutor);
+  }
+
+  /**
+   * 异步调用，回调在指定的线程池中执行。调用线程不会阻塞，尚未建立连接时异步连接后再发送请求
+   *
+   * @param addr 服务器地址
+   * @param msgId 业务消息id
+   * @param body 请求体
+   * @param timeout 超时时间（毫秒），包括建立连接的时间
+   * @param callback 回调
+   * @param executor 执行回调（包括响应体反序列化）的线程池，为null时直接在IO线程中执行，回调必须足够快且不能阻塞
+   */
+  public <T, R> void sendAsync(
+      String addr,
+      int msgId,
+      T body,
+      int timeout,
+      EasyRpcCallback<R> callback,
+      Executor executor) {
+    // 判断client是否已关闭
+    if (closed) {
+      callback.fail(new RemotingException(CLIENT_HAS_CLOSED));
+      return;
+    }
+    Channel channel = rpcClientHandler.getChannel(addr);
+    if (channel != null) {
+      doCall(channel, addr, msgId, body, timeout, callback, executor);
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+    // 连接建立后在IO线程中发送请求，连接失败或超时前仍未建立连接时立即回调
+    awaitChannel(addr, timeout, executor)
+        .whenComplete(
+            (newChannel, e) -> {
+              if (e != null) {
+                callback.fail(e);
+                return;
+              }
+              int remaining = remainingTimeout(timeout, start);
+              if (remaining <= 0) {
+                callback.fail(new RemotingException(TIME_OUT, "client timeout"));
+                return;
+              }
+              doCall(newChannel, addr, msgId, body, remaining, callback, executor);
+            });
+  }
+
+  /** @return 随机选择的节点地址，没有节点时为null */
+  public String randomNode() {
+    return selectNode(RANDOM, null);
+  }
+
+  /** @return 轮询选择的节点地址，没有节点时为null */
+  public String roundNode() {
+    return selectNode(roundRobin, null);
+  }
+
+  /**
+   * @param object 路由键
+   * @return 按路由键在一致性哈希环上选择的节点地址，节点上下线时只有少量路由键改变节点；没有节点时为null
+   */
+  public String hashNode(Object object) {
+    return selectNode(consistentHash, object);
+  }
+
+  /** @return 峰值EWMA延迟估计与在途请求数综合最低的节点地址，没有节点时为null */
+  public String lowLatencyNode() {
+    return selectNode(LOW_LATENCY, null);
+  }
+
+  /** @return 随机抽取两个节点，其中在途请求较少的节点地址，没有节点时为null */
+  public String leastActiveNode() {
+    return selectNode(LEAST_ACTIVE, null);
+  }
+
+  /** @return 按服务端发布的权重平滑加权轮询选择的节点地址，没有节点时为null */
+  public String weightedRoundNode() {
+    return selectNode(weightedRoundRobin, null);
+  }
+
+  /** @return 按服务端发布的权重加权随机选择的节点地址，没有节点时为null */
+  public String weightedRandomNode() {
+    return selectNode(weightedRandom, null);
+  }
+
+  /**
+   * 按默认的负载均衡策略选择节点
+   *
+   * @param key 路由键，可为null
+   * @return 节点地址，没有节点时为null
+   * @see #setLoadBalancer(LoadBalancer)
+   */
+  public String selectNode(Object key) {
+    return selectNode(loadBalancer, key);
+  }
+
+  /**
+   * 按指定的负载均衡策略选择节点
+   *
+   * @param balancer 负载均衡策略
+   * @param key 路由键，可为null
+   * @return 节点地址，没有节点时为null
+   */
+  public String selectNode(LoadBalancer balancer, Object key) {
+    ServerNode node = balancer.select(snapshot, key);
+    return node == null ? null : node.addr;
+  }
+
+  /**
+   * 指定{@link #selectNode(Object)}使用的负载均衡策略
+   *
+   * @param balancer 负载均衡策略，默认为轮询
+   */
+  public void setLoadBalancer(LoadBalancer balancer) {
+    this.loadBalancer = Objects.requireNonNull(balancer);
+    balancer.nodesChanged(snapshot);
+  }
+
+  /** @return 当前的节点快照 */
+  public NodeSnapshot getNodeSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * 指定异步调用默认的回调线程池，同步调用不受影响，始终由IO线程直接唤醒调用线程
+   *
+   * @param executor 回调线程池，为null时直接在IO线程中执行回调，回调必须足够快且不能阻塞
+   */
+  public void setCallbackExecutor(Executor executor) {
+    this.callbackExecutor = executor;
+  }
+
+  /** @return 有界的共享回调线程池，空闲线程会被回收 */
+  private static ExecutorService newSharedExecutor() {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            DEFAULT_CALLBACK_THREADS,
+            DEFAULT_CALLBACK_THREADS,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(DEFAULT_CALLBACK_QUEUE_SIZE),
+            new NamedThreadFactory("EasyRpcSharedHandler", true));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /** @return 请求超时计时器，可用于监控待执行的超时任务数和队列深度 */
+  public StampedTimer getTimeoutTimer() {
+    return timeoutTimer;
+  }
+
+  public void doClose() {
+    closed = true;
+    if (reapTask != null) {
+      reapTask.cancel(false);
+    }
+    for (ScheduledFuture<?> reconnect : reconnects.values()) {
+      reconnect.cancel(false);
+    }
+    reconnects.clear();
+    // 等待连接的调用立即失败，之后建立的连接由register关闭
+    for (CompletableFuture<Channel> connect : pendingConnects.values()) {
+      connect.completeExceptionally(new RemotingException(CLIENT_HAS_CLOSED));
+    }
+    rpcClientHandler.closeChannel();
+    // 关闭连接时结束的请求已提交到回调线程池，等这些回调执行完再退出；外部指定的线程池不在这里关闭
+    defaultCallbackExecutor.shutdown();
+    // 共享的默认计时器不随客户端关闭
+    if (timeoutTimer != RpcFuture.TIME_OUT_TIMER) {
+      timeoutTimer.stop();
+    }
+  }
+}
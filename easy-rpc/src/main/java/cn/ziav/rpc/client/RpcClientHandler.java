@@ -0,0 +1,265 @@
+package cn.ziav.rpc.client;
+
+import static cn.ziav.rpc.common.Constants.HANDSHAKE_MSG_ID;
+
+import cn.ziav.rpc.codec.ProtocolFeatures;
+import cn.ziav.rpc.common.MsgRequest;
+import cn.ziav.rpc.common.MsgResponse;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.timeout.IdleStateEvent;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** @author Zavi */
+@io.netty.channel.ChannelHandler.Sharable
+public class RpcClientHandler extends ChannelDuplexHandler {
+  private static final Logger logger = LoggerFactory.getLogger(RpcClientHandler.class);
+  /** <ip:port, 连接池> */
+  private final Map<String, ChannelPool> CHANNEL_POOLS = new ConcurrentHashMap<>();
+
+  @Override
+  public void channelActive(ChannelHandlerContext ctx) throws Exception {
+    // 连接由RpcClient在连接建立后登记到连接池中
+    // 握手，协商双方都支持的协议特性，旧版本的服务端会返回错误响应
+    MsgRequest<Integer> req = new MsgRequest<>();
+    req.mId = HANDSHAKE_MSG_ID;
+    req.mTwoWay = true;
+    req.mData = ProtocolFeatures.LOCAL;
+    ctx.writeAndFlush(req);
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    removeChannel(ctx.channel());
+    WriteQueue queue = WriteQueue.peek(ctx.channel());
+    if (queue != null) {
+      queue.clear();
+    }
+    // 连接已断开，在途请求立即失败
+    RpcFuture.channelInactive(ctx.channel());
+  }
+
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    Channel channel = ctx.channel();
+    WriteQueue queue = WriteQueue.peek(channel);
+    if (queue != null) {
+      // 恢复可写后先发送暂存的请求，再唤醒等待的调用线程
+      if (channel.isWritable()) {
+        queue.flush(channel);
+      }
+      queue.signal();
+    }
+    super.channelWritabilityChanged(ctx);
+  }
+
+  /**
+   * 将Channel转换成host:port字符串
+   *
+   * @param channel
+   * @return
+   */
+  private String toRemoteAddrString(Channel channel) {
+    InetSocketAddress socketAddress = (InetSocketAddress) channel.remoteAddress();
+    String host = socketAddress.getHostString();
+    int port = socketAddress.getPort();
+    return host + ":" + port;
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    super.write(ctx, msg, promise);
+    final boolean isRequest = msg instanceof MsgRequest;
+    promise.addListener(
+        future -> {
+          if (future.isSuccess()) {
+            return;
+          }
+
+          Throwable t = future.cause();
+          if (t != null && isRequest) {
+            MsgRequest request = (MsgRequest) msg;
+            MsgResponse response = buildErrorResponse(request, t);
+            RpcFuture rpcFuture = RpcFuture.getFuture(response.id);
+            if (rpcFuture != null) {
+              RpcFuture.execute(rpcFuture.executor, () -> RpcFuture.received(response, false));
+            }
+          }
+        });
+  }
+
+  /**
+   * 构建一个请求异常的响应
+   *
+   * @param request 请求体
+   * @param t 大多都是序列化的异常
+   * @return
+   */
+  private static MsgResponse buildErrorResponse(MsgRequest request, Throwable t) {
+    MsgResponse<Throwable> response = new MsgResponse<>(request.id, request.mId, t);
+    response.mStatus = MsgResponse.BAD_REQUEST;
+    return response;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (msg instanceof MsgResponse) {
+      MsgResponse response = (MsgResponse) msg;
+      if (response.mId == HANDSHAKE_MSG_ID) {
+        handshake(ctx, response);
+        return;
+      }
+      RpcFuture future = RpcFuture.getFuture(response.id);
+      if (future == null) {
+        logger.warn("future has been removed, mId={}", response.mId);
+        response.release();
+        return;
+      }
+      // 响应体在回调线程中反序列化，同步调用直接唤醒调用线程
+      RpcFuture.execute(future.executor, () -> RpcFuture.received(response, false));
+    }
+  }
+
+  /**
+   * 处理握手响应，记录服务端确认的协议特性
+   *
+   * @param ctx
+   * @param response 握手响应
+   */
+  private static void handshake(ChannelHandlerContext ctx, MsgResponse response) {
+    if (response.mStatus != MsgResponse.OK) {
+      response.release();
+      return;
+    }
+    try {
+      Object data = response.getData();
+      if (data instanceof int[] && ((int[]) data).length > 0) {
+        // 特性以及服务端绑定了请求体类型的消息id
+        int[] values = (int[]) data;
+        ProtocolFeatures.acceptTypedRequests(
+            ctx.channel(), Arrays.copyOfRange(values, 1, values.length));
+        ProtocolFeatures.negotiate(ctx.channel(), values[0]);
+      } else if (data instanceof Integer) {
+        ProtocolFeatures.negotiate(ctx.channel(), (Integer) data);
+      }
+    } catch (IOException e) {
+      logger.warn("bad handshake response", e);
+    }
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+    Channel channel = ctx.channel();
+    removeChannelIfDisconnected(channel);
+    logger.error("", cause);
+    // 连接已不可用（如数据包格式错误），立即结束在途请求并关闭连接
+    RpcFuture.channelInactive(channel);
+    channel.close();
+  }
+
+  @Override
+  public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+    // send heartbeat when read idle.
+    if (evt instanceof IdleStateEvent) {
+      Channel channel = ctx.channel();
+      try {
+        MsgRequest req = new MsgRequest();
+        req.mId = -1;
+        req.mTwoWay = true;
+        // 心跳处理
+        channel.writeAndFlush(req);
+      } finally {
+        removeChannelIfDisconnected(channel);
+      }
+      return;
+    }
+    super.userEventTriggered(ctx, evt);
+  }
+
+  /**
+   * 如果失联了则移除Channel
+   *
+   * @param channel
+   */
+  private void removeChannelIfDisconnected(Channel channel) {
+    if (channel != null && !channel.isActive()) {
+      removeChannel(channel);
+    }
+  }
+
+  /**
+   * 从所在的连接池中移除Channel
+   *
+   * @param channel
+   */
+  private void removeChannel(Channel channel) {
+    ChannelPool pool = CHANNEL_POOLS.get(toRemoteAddrString(channel));
+    if (pool != null) {
+      pool.remove(channel);
+    }
+  }
+
+  /**
+   * 从连接池中选择Channel
+   *
+   * @param addr
+   * @return 没有活跃的连接时为null
+   * @see ChannelPool#select()
+   */
+  public Channel getChannel(String addr) {
+    ChannelPool pool = CHANNEL_POOLS.get(addr);
+    return pool == null ? null : pool.select();
+  }
+
+  /**
+   * @param addr
+   * @return 该地址上的连接都不可写时返回false，没有连接时为true
+   * @see ChannelPool#isWritable()
+   */
+  public boolean isWritable(String addr) {
+    ChannelPool pool = CHANNEL_POOLS.get(addr);
+    return pool == null || pool.isWritable();
+  }
+
+  /**
+   * 获取或创建连接池
+   *
+   * @param addr
+   * @return
+   */
+  ChannelPool getOrCreatePool(String addr) {
+    return CHANNEL_POOLS.computeIfAbsent(addr, k -> new ChannelPool());
+  }
+
+  /**
+   * 移除连接池
+   *
+   * @param addr
+   * @param pool
+   */
+  void removePool(String addr, ChannelPool pool) {
+    CHANNEL_POOLS.remove(addr, pool);
+  }
+
+  /** @return <ip:port, 连接池> */
+  Map<String, ChannelPool> getChannelPools() {
+    return CHANNEL_POOLS;
+  }
+
+  public void closeChannel() {
+    for (ChannelPool pool : CHANNEL_POOLS.values()) {
+      for (Channel channel : pool.channels()) {
+        channel.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,485 @@
+package cn.ziav.rpc.client;
+
+import static cn.ziav.rpc.exception.ExceptionCode.BAD_RESPONSE;
+import static cn.ziav.rpc.exception.ExceptionCode.CHANNEL_INACTIVE;
+import static cn.ziav.rpc.exception.ExceptionCode.TIME_OUT;
+import static cn.ziav.rpc.exception.ExceptionCode.UNKNOWN_ERROR;
+
+import cn.ziav.rpc.common.MsgRequest;
+import cn.ziav.rpc.common.MsgResponse;
+import cn.ziav.rpc.exception.RemotingException;
+import cn.ziav.rpc.timer.ShardedWheelTimer;
+import cn.ziav.rpc.timer.StampedTimer;
+import cn.ziav.rpc.timer.StampedTimerTask;
+import cn.ziav.rpc.timer.Timeout;
+import cn.ziav.rpc.utils.NamedThreadFactory;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RpcFuture
+ *
+ * @author Zavi
+ */
+public class RpcFuture<R> extends CompletableFuture<R> {
+  private static final Logger logger = LoggerFactory.getLogger(RpcFuture.class);
+
+  /** <reqId, future> */
+  private static final InFlightTable<RpcFuture> FUTURES = new InFlightTable<>();
+
+  /** 每个连接上的在途请求，连接断开时只遍历该连接的请求，不必遍历{@link #FUTURES} */
+  private static final AttributeKey<ChannelFutures> CHANNEL_FUTURES =
+      AttributeKey.valueOf("easy-rpc.futures");
+
+  public final long id;
+  public final MsgRequest request;
+  private final int timeout;
+  private volatile long sent;
+  /** 创建时间（纳秒），用于节点的延迟估计 */
+  private long startNanos;
+  private Timeout timeoutCheckTask;
+  /** 超时检查任务所在的计时器 */
+  private StampedTimer timer;
+  public Executor executor;
+  public EasyRpcCallback<R> callback;
+
+  /** 默认的超时计时器，精确到1毫秒 */
+  public static final StampedTimer TIME_OUT_TIMER =
+      new ShardedWheelTimer(
+          new NamedThreadFactory("easyRpc-future-timeout", true),
+          1,
+          TimeUnit.MILLISECONDS,
+          ShardedWheelTimer.DEFAULT_SHARDS);
+
+  /** 超时检查任务，所有请求共用，定时节点由计时器复用 */
+  private static final TimeoutCheckTask TIMEOUT_CHECK_TASK = new TimeoutCheckTask();
+
+  private ServerNode serverNode;
+
+  /** 发送请求的连接 */
+  private volatile Channel channel;
+
+  /** 是否为同步调用：IO线程只负责唤醒调用线程，响应体由调用线程自行反序列化 */
+  private boolean sync;
+
+  /** 同步调用时等待调用线程处理的响应 */
+  private volatile MsgResponse<R> response;
+
+  private static final AtomicReferenceFieldUpdater<RpcFuture, MsgResponse> RESPONSE_UPDATER =
+      AtomicReferenceFieldUpdater.newUpdater(RpcFuture.class, MsgResponse.class, "response");
+
+  /** 同步调用是否已被取消 */
+  private volatile boolean cancelled;
+
+  public RpcFuture(MsgRequest request, int timeout) {
+    this.id = request.id;
+    this.request = request;
+    this.timeout = timeout;
+    FUTURES.put(id, this);
+  }
+
+  public static <R> RpcFuture<R> newFuture(
+      MsgRequest request,
+      EasyRpcCallback<R> callback,
+      int timeout,
+      ServerNode serverNode,
+      Executor executor,
+      Channel channel,
+      StampedTimer timer) {
+    final RpcFuture<R> future = new RpcFuture<>(request, timeout);
+    future.executor = executor;
+    future.callback = callback;
+    future.started(serverNode);
+    // 启动超时检查任务
+    timeoutCheck(future, timer);
+    future.track(channel);
+    return future;
+  }
+
+  /**
+   * 创建同步调用的Future，结果通过{@link #await()}获取
+   *
+   * @param request 请求
+   * @param timeout 超时时间
+   * @param serverNode 服务器节点
+   * @param channel 发送请求的连接
+   * @param timer 超时计时器
+   * @return
+   */
+  public static <R> RpcFuture<R> newSyncFuture(
+      MsgRequest request,
+      int timeout,
+      ServerNode serverNode,
+      Channel channel,
+      StampedTimer timer) {
+    final RpcFuture<R> future = new RpcFuture<>(request, timeout);
+    future.sync = true;
+    future.started(serverNode);
+    // 启动超时检查任务
+    timeoutCheck(future, timer);
+    future.track(channel);
+    return future;
+  }
+
+  private static void timeoutCheck(RpcFuture future, StampedTimer timer) {
+    // 以请求编号作为定时编号启动任务
+    future.timer = timer;
+    future.timeoutCheckTask =
+        timer.newTimeout(TIMEOUT_CHECK_TASK, future.id, future.timeout, TimeUnit.MILLISECONDS);
+  }
+
+  public static RpcFuture getFuture(long id) {
+    return FUTURES.get(id);
+  }
+
+  /**
+   * 计入节点的在途请求
+   *
+   * @param serverNode 服务器节点，可为null
+   */
+  private void started(ServerNode serverNode) {
+    this.serverNode = serverNode;
+    if (serverNode != null) {
+      startNanos = System.nanoTime();
+      serverNode.requestStarted();
+    }
+  }
+
+  /**
+   * 结束节点上的在途请求，每个调用只会结束一次。服务端正常处理完的请求（包括业务异常）按耗时计入延迟估计；
+   * 超时、连接断开、服务端线程池已满以及请求未能发送按惩罚延迟计入；其他失败只结束在途请求
+   *
+   * @param status 响应状态
+   * @param penalty 失败时的惩罚延迟（纳秒）
+   */
+  private void finished(byte status, long penalty) {
+    if (serverNode == null) {
+      return;
+    }
+    long now = System.nanoTime();
+    switch (status) {
+      case MsgResponse.OK:
+      case MsgResponse.SERVER_ERROR:
+        serverNode.requestFinished(now - startNanos, now);
+        break;
+      case MsgResponse.CLIENT_TIMEOUT:
+      case MsgResponse.SERVER_TIMEOUT:
+      case MsgResponse.CHANNEL_INACTIVE:
+      case MsgResponse.SERVER_THREADPOOL_EXHAUSTED_ERROR:
+      case MsgResponse.CLIENT_ERROR:
+        serverNode.requestFailed(penalty, now);
+        break;
+      default:
+        serverNode.requestFailed(0, now);
+    }
+  }
+
+  /**
+   * 登记到连接的在途请求中。在放入{@link #FUTURES}并启动超时检查之后调用：登记前请求已经结束的，撤销登记；
+   * 登记时连接已断开的，{@link #channelInactive}可能已经执行过，由这里结束调用
+   *
+   * @param channel 发送请求的连接，可为null
+   */
+  private void track(Channel channel) {
+    if (channel == null) {
+      return;
+    }
+    this.channel = channel;
+    ChannelFutures futures = channel.attr(CHANNEL_FUTURES).get();
+    if (futures == null) {
+      futures = new ChannelFutures();
+      ChannelFutures pre = channel.attr(CHANNEL_FUTURES).setIfAbsent(futures);
+      if (pre != null) {
+        futures = pre;
+      }
+    }
+    futures.table.put(id, this);
+    futures.count.incrementAndGet();
+    if (FUTURES.get(id) != this) {
+      untrack();
+    } else if (!channel.isActive()) {
+      execute(executor, () -> received(inactiveResponse(this, channel), false));
+    }
+  }
+
+  /** 从{@link #FUTURES}中移除后调用，从连接的在途请求中移除 */
+  private void untrack() {
+    Channel channel = this.channel;
+    if (channel == null) {
+      return;
+    }
+    ChannelFutures futures = channel.attr(CHANNEL_FUTURES).get();
+    if (futures != null && futures.table.remove(id) != null) {
+      futures.count.decrementAndGet();
+    }
+  }
+
+  /**
+   * @param channel 连接
+   * @return 连接上的在途请求数，不加锁，每次调用选择连接时都会读取
+   */
+  static int inFlight(Channel channel) {
+    ChannelFutures futures = channel.attr(CHANNEL_FUTURES).get();
+    return futures == null ? 0 : futures.count.get();
+  }
+
+  /**
+   * 连接断开时，以{@link MsgResponse#CHANNEL_INACTIVE}立即结束该连接上的所有在途请求，不必等到超时
+   *
+   * @param channel 已断开的连接
+   */
+  public static void channelInactive(Channel channel) {
+    ChannelFutures futures = channel.attr(CHANNEL_FUTURES).get();
+    if (futures == null || futures.count.get() == 0) {
+      return;
+    }
+    // 只取快照，与正常响应、超时一样由received从FUTURES和连接中移除，同一个请求只会结束一次
+    for (RpcFuture future : futures.table.values()) {
+      MsgResponse<Throwable> response = inactiveResponse(future, channel);
+      execute(future.executor, () -> received(response, false));
+    }
+  }
+
+  private static MsgResponse<Throwable> inactiveResponse(RpcFuture future, Channel channel) {
+    MsgResponse<Throwable> response =
+        new MsgResponse<>(
+            future.id,
+            future.getMid(),
+            new RemotingException(
+                CHANNEL_INACTIVE, "channel inactive, remote=" + channel.remoteAddress()));
+    response.mStatus = MsgResponse.CHANNEL_INACTIVE;
+    return response;
+  }
+
+  /**
+   * 在回调线程池中执行任务
+   *
+   * @param executor 回调线程池，为null时在当前线程执行
+   * @param task 任务
+   */
+  static void execute(Executor executor, Runnable task) {
+    if (executor == null) {
+      task.run();
+      return;
+    }
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      // 线程池已满或已关闭，在当前线程执行，保证请求能够结束
+      task.run();
+    }
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    boolean removed = FUTURES.remove(id) != null;
+    if (removed) {
+      untrack();
+      // 调用方主动取消，不惩罚节点
+      finished(MsgResponse.CLIENT_ERROR, 0);
+      timer.cancel(timeoutCheckTask, id);
+      // 按CompletableFuture的语义以CancellationException结束，isCancelled()为true，后续阶段同样看到取消
+      if (callback != null) {
+        callback.fail(new CancellationException());
+      }
+      super.cancel(mayInterruptIfRunning);
+    }
+    if (sync) {
+      // 调用线程已放弃等待，释放已到达但未被消费的响应
+      cancelled = true;
+      releaseResponse();
+    }
+    return removed;
+  }
+
+  public static void received(MsgResponse response, boolean timeout) {
+    RpcFuture future = FUTURES.remove(response.id);
+    if (future != null) {
+      future.untrack();
+      future.finished(response.mStatus, TimeUnit.MILLISECONDS.toNanos(future.timeout));
+      // 这里已经拿到结果了，如果不是超时的话，就cancel掉之前的超时任务
+      if (!timeout) {
+        future.timer.cancel(future.timeoutCheckTask, future.id);
+      }
+
+      future.doReceived(response);
+    } else {
+      // 超时或已取消的请求，响应体不再需要解析
+      response.release();
+      logger.warn(
+          "The timeout response finally returned at {}",
+          new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+    }
+  }
+
+  private void doReceived(MsgResponse<R> res) {
+    if (res == null) {
+      throw new IllegalStateException("response cannot be null");
+    }
+
+    if (sync) {
+      // 同步调用只唤醒调用线程，由调用线程反序列化响应体
+      response = res;
+      if (cancelled) {
+        releaseResponse();
+      }
+      super.complete(null);
+      return;
+    }
+
+    try {
+      complete(resolve(res));
+    } catch (Throwable e) {
+      completeExceptionally(e);
+    }
+  }
+
+  /**
+   * 同步等待调用结果，响应体在调用线程中反序列化
+   *
+   * @return 调用结果
+   * @throws Throwable 调用异常
+   */
+  public R await() throws Throwable {
+    get();
+    MsgResponse<R> res = RESPONSE_UPDATER.getAndSet(this, null);
+    if (res == null) {
+      throw new CancellationException();
+    }
+    return resolve(res);
+  }
+
+  /** 释放尚未被消费的响应 */
+  private void releaseResponse() {
+    MsgResponse<R> res = RESPONSE_UPDATER.getAndSet(this, null);
+    if (res != null) {
+      res.release();
+    }
+  }
+
+  /**
+   * 解析响应，状态正常时返回反序列化后的响应体，否则抛出对应的异常
+   *
+   * @param res 响应
+   * @return 响应体
+   * @throws Throwable
+   */
+  private R resolve(MsgResponse<R> res) throws Throwable {
+    if (res.mStatus == MsgResponse.OK) {
+      try {
+        return res.getData();
+      } catch (IOException e) {
+        throw new RemotingException(BAD_RESPONSE, e);
+      }
+    }
+    if (res.mStatus == MsgResponse.CLIENT_TIMEOUT) {
+      throw new RemotingException(TIME_OUT, "client timeout");
+    }
+    if (res.mStatus == MsgResponse.SERVER_TIMEOUT) {
+      throw new RemotingException(TIME_OUT, "server timeout");
+    }
+
+    Object data = res.getData();
+    if (data instanceof Throwable) {
+      throw (Throwable) data;
+    }
+
+    throw new RemotingException(UNKNOWN_ERROR, "statusCode=" + res.mStatus + " data=" + data);
+  }
+
+  @Override
+  public boolean complete(R value) {
+    if (callback != null) {
+      callback.success(value);
+    }
+    return super.complete(value);
+  }
+
+  @Override
+  public boolean completeExceptionally(Throwable ex) {
+    if (callback != null) {
+      callback.fail(ex);
+    }
+    return super.completeExceptionally(ex);
+  }
+
+  /**
+   * 请求未能发送，以异常结束调用
+   *
+   * @param cause 异常
+   */
+  void fail(Throwable cause) {
+    MsgResponse<Throwable> response = new MsgResponse<>(id, getMid(), cause);
+    response.mStatus = MsgResponse.CLIENT_ERROR;
+    execute(executor, () -> received(response, false));
+  }
+
+  /** 标记请求已发送 */
+  public void sent() {
+    sent = System.currentTimeMillis();
+    if (serverNode != null) {
+      serverNode.lastRequestTime = sent;
+    }
+  }
+
+  /**
+   * 是否已发送
+   *
+   * @return
+   */
+  private boolean isSent() {
+    return sent > 0;
+  }
+
+  /** 连接上的在途请求，另外单独计数，选择连接时不必遍历各个分段 */
+  private static final class ChannelFutures {
+    private final InFlightTable<RpcFuture> table = new InFlightTable<>();
+    private final AtomicInteger count = new AtomicInteger();
+  }
+
+  /** 超时任务 */
+  private static class TimeoutCheckTask implements StampedTimerTask {
+
+    @Override
+    public void run(long requestID) {
+      RpcFuture future = RpcFuture.getFuture(requestID);
+      // 判断future是否已完成
+      if (future == null || future.isDone()) {
+        return;
+      }
+
+      execute(future.executor, () -> notifyTimeout(future));
+    }
+
+    /**
+     * 通知超时
+     *
+     * @param future
+     */
+    private void notifyTimeout(RpcFuture future) {
+      // 1. 创建异常响应对象
+      MsgResponse timeoutResponse = new MsgResponse(future.id, future.getMid());
+      // 2. 设置超时状态码
+      timeoutResponse.mStatus =
+          future.isSent() ? MsgResponse.SERVER_TIMEOUT : MsgResponse.CLIENT_TIMEOUT;
+      // 3. 处理响应
+      RpcFuture.received(timeoutResponse, true);
+    }
+  }
+
+  private int getMid() {
+    return request.mId;
+  }
+}
@@ -0,0 +1,154 @@
+package cn.ziav.rpc.client;
+
+import static cn.ziav.rpc.exception.ExceptionCode.TIME_OUT;
+
+import cn.ziav.rpc.exception.RemotingException;
+import cn.ziav.rpc.timer.Timeout;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 组合{@link RpcClient#call}返回的调用结果，用于并发调用多个服务（fan-out）
+ *
+ * <p>每个调用各自有超时时间，组合结果可以再指定一个整体期限。期限到达时组合结果以{@link RemotingException}（{@link
+ * cn.ziav.rpc.exception.ExceptionCode#TIME_OUT}）结束，尚未完成的调用仍按各自的超时时间结束。
+ * 期限到达时结果在超时计时器线程中完成，后续阶段如有耗时逻辑应使用xxxAsync方法切换线程。
+ *
+ * @author Zavi
+ */
+public final class RpcFutures {
+  private RpcFutures() {}
+
+  /**
+   * 等待所有调用成功
+   *
+   * @param stages 调用结果
+   * @return 按顺序排列的所有结果，任意一个调用失败时立即以该异常结束
+   */
+  public static <R> CompletableFuture<List<R>> allOf(
+      List<? extends CompletionStage<? extends R>> stages) {
+    int size = stages.size();
+    CompletableFuture<List<R>> result = new CompletableFuture<>();
+    if (size == 0) {
+      result.complete(new ArrayList<>());
+      return result;
+    }
+    Object[] values = new Object[size];
+    AtomicInteger remaining = new AtomicInteger(size);
+    for (int i = 0; i < size; i++) {
+      int index = i;
+      stages
+          .get(i)
+          .whenComplete(
+              (value, e) -> {
+                if (e != null) {
+                  result.completeExceptionally(unwrap(e));
+                  return;
+                }
+                values[index] = value;
+                if (remaining.decrementAndGet() == 0) {
+                  @SuppressWarnings("unchecked")
+                  List<R> list = (List<R>) Arrays.asList(values);
+                  result.complete(list);
+                }
+              });
+    }
+    return result;
+  }
+
+  /**
+   * 在期限内等待所有调用成功
+   *
+   * @param stages 调用结果
+   * @param timeout 整体期限
+   * @param unit 期限的单位
+   * @return 按顺序排列的所有结果
+   */
+  public static <R> CompletableFuture<List<R>> allOf(
+      List<? extends CompletionStage<? extends R>> stages, long timeout, TimeUnit unit) {
+    return withDeadline(allOf(stages), timeout, unit);
+  }
+
+  /**
+   * 等待任意一个调用成功
+   *
+   * @param stages 调用结果，不能为空
+   * @return 最先成功的结果，所有调用都失败时以最后一个异常结束
+   */
+  public static <R> CompletableFuture<R> anyOf(
+      List<? extends CompletionStage<? extends R>> stages) {
+    if (stages.isEmpty()) {
+      throw new IllegalArgumentException("stages is empty");
+    }
+    CompletableFuture<R> result = new CompletableFuture<>();
+    AtomicInteger remaining = new AtomicInteger(stages.size());
+    for (CompletionStage<? extends R> stage : stages) {
+      stage.whenComplete(
+          (value, e) -> {
+            if (e == null) {
+              result.complete(value);
+            } else if (remaining.decrementAndGet() == 0) {
+              result.completeExceptionally(unwrap(e));
+            }
+          });
+    }
+    return result;
+  }
+
+  /**
+   * 在期限内等待任意一个调用成功
+   *
+   * @param stages 调用结果，不能为空
+   * @param timeout 整体期限
+   * @param unit 期限的单位
+   * @return 最先成功的结果
+   */
+  public static <R> CompletableFuture<R> anyOf(
+      List<? extends CompletionStage<? extends R>> stages, long timeout, TimeUnit unit) {
+    return withDeadline(anyOf(stages), timeout, unit);
+  }
+
+  /**
+   * 为调用结果指定期限（JDK 8没有{@code CompletableFuture.orTimeout}）
+   *
+   * @param stage 调用结果
+   * @param timeout 期限
+   * @param unit 期限的单位
+   * @return 期限到达前与原结果一致，否则以{@link RemotingException}结束
+   */
+  public static <R> CompletableFuture<R> withDeadline(
+      CompletionStage<? extends R> stage, long timeout, TimeUnit unit) {
+    CompletableFuture<R> result = new CompletableFuture<>();
+    Timeout deadline =
+        RpcFuture.TIME_OUT_TIMER.newTimeout(
+            t ->
+                result.completeExceptionally(
+                    new RemotingException(TIME_OUT, "deadline exceeded")),
+            timeout,
+            unit);
+    stage.whenComplete(
+        (value, e) -> {
+          deadline.cancel();
+          if (e != null) {
+            result.completeExceptionally(unwrap(e));
+          } else {
+            result.complete(value);
+          }
+        });
+    return result;
+  }
+
+  /** 取出依赖阶段包装的原始异常 */
+  private static Throwable unwrap(Throwable e) {
+    if (e instanceof CompletionException && e.getCause() != null) {
+      return e.getCause();
+    }
+    return e;
+  }
+}
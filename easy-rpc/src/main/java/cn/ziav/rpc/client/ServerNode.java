@@ -0,0 +1,196 @@
+package cn.ziav.rpc.client;
+
+import static cn.ziav.rpc.common.Constants.LATENCY_DECAY_TIME;
+import static cn.ziav.rpc.common.Constants.RECONNECT_MAX_BACKOFF;
+import static cn.ziav.rpc.common.Constants.RECONNECT_MIN_BACKOFF;
+
+import cn.ziav.rpc.common.NodeMetadata;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/** @author Zavi */
+public class ServerNode {
+  /** 延迟估计的衰减时间常数（纳秒） */
+  private static final double DECAY_NANOS = TimeUnit.MILLISECONDS.toNanos(LATENCY_DECAY_TIME);
+
+  /** 尚无延迟估计但已有在途请求时的评分，在第一个响应返回前避免把所有请求都发往该节点 */
+  private static final double UNKNOWN_LATENCY_PENALTY = 1e18;
+
+  public final String addr;
+  /** 总响应时间（毫秒） */
+  private LongAdder totalRespTime = new LongAdder();
+
+  /** 总请求次数 */
+  private LongAdder totalReqTimes = new LongAdder();
+
+  /** 最近一次发送请求的时间 */
+  volatile long lastRequestTime = System.currentTimeMillis();
+
+  /** 在途请求数 */
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  /** 峰值EWMA延迟估计（纳秒），保存double的位模式，CAS更新 */
+  private final AtomicLong latency = new AtomicLong(Double.doubleToRawLongBits(0));
+
+  /** 最近一次更新延迟估计的时间（纳秒），只增不减 */
+  private final AtomicLong latencyStamp = new AtomicLong(System.nanoTime());
+
+  /** 连续重连失败次数 */
+  private final AtomicInteger reconnectAttempts = new AtomicInteger();
+
+  /** 节点的连接池，建立第一个连接后设置 */
+  volatile ChannelPool pool;
+
+  /** 服务端发布的节点元数据，随注册中心的节点数据更新 */
+  private volatile NodeMetadata metadata = NodeMetadata.DEFAULT;
+
+  public ServerNode(String addr) {
+    this.addr = addr;
+  }
+
+  /**
+   * 累计总响应时间
+   *
+   * @param time
+   */
+  public void addCost(long time) {
+    totalRespTime.add(time);
+    totalReqTimes.increment();
+  }
+
+  /** 发起请求 */
+  void requestStarted() {
+    inFlight.incrementAndGet();
+  }
+
+  /**
+   * 请求成功，更新峰值EWMA延迟估计：比估计值慢的响应立即抬高估计值，比估计值快的响应按距离上次更新的时间加权，
+   * 间隔越长权重越大。并发结束的请求各自占用一段不重叠的时间间隔，不加锁
+   *
+   * @param rtt 请求耗时（纳秒）
+   * @param now 当前时间（纳秒）
+   */
+  void requestFinished(long rtt, long now) {
+    inFlight.decrementAndGet();
+    addCost(TimeUnit.NANOSECONDS.toMillis(rtt));
+    long stamp = latencyStamp.getAndAccumulate(now, Math::max);
+    double w = Math.exp(-Math.max(now - stamp, 0) / DECAY_NANOS);
+    for (; ; ) {
+      long bits = latency.get();
+      double cost = Double.longBitsToDouble(bits);
+      double next = rtt > cost ? rtt : cost * w + rtt * (1 - w);
+      if (latency.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * 请求失败，失败的耗时不计入延迟估计，否则快速失败的节点会因延迟低而分到更多请求。估计值至少抬高到惩罚延迟，
+   * 之后随时间衰减
+   *
+   * @param penalty 惩罚延迟（纳秒），为0时只结束在途请求
+   * @param now 当前时间（纳秒）
+   */
+  void requestFailed(long penalty, long now) {
+    inFlight.decrementAndGet();
+    for (; ; ) {
+      long bits = latency.get();
+      if (penalty <= Double.longBitsToDouble(bits)) {
+        return;
+      }
+      if (latency.compareAndSet(bits, Double.doubleToRawLongBits(penalty))) {
+        latencyStamp.accumulateAndGet(now, Math::max);
+        return;
+      }
+    }
+  }
+
+  /** @return 在途请求数 */
+  public int inFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * 节点评分，越低越好：随空闲时间衰减的延迟估计乘以（在途请求数+1）。长时间没有响应的节点估计值逐渐衰减，
+   * 变慢后被避开的节点之后还会被重新尝试
+   *
+   * @param now 当前时间（纳秒）
+   * @return 评分
+   */
+  public double score(long now) {
+    int pending = inFlight.get();
+    double cost =
+        Double.longBitsToDouble(latency.get())
+            * Math.exp(-Math.max(now - latencyStamp.get(), 0) / DECAY_NANOS);
+    if (cost == 0) {
+      return pending == 0 ? 0 : UNKNOWN_LATENCY_PENALTY + pending;
+    }
+    return cost * (pending + 1);
+  }
+
+  /**
+   * 计算下一次重连的退避时间：按失败次数指数增长，并在后一半区间内随机，避免多个客户端同时重连
+   *
+   * @return 退避时间（毫秒）
+   */
+  long nextReconnectDelay() {
+    int attempts = Math.min(reconnectAttempts.getAndIncrement(), 20);
+    long backoff = Math.min((long) RECONNECT_MIN_BACKOFF << attempts, RECONNECT_MAX_BACKOFF);
+    return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+  }
+
+  /** @return 节点的连接都因出站缓冲区积压而不可写时返回false，尚未建立连接时为true */
+  public boolean isWritable() {
+    ChannelPool pool = this.pool;
+    return pool == null || pool.isWritable();
+  }
+
+  /** @return 服务端发布的节点元数据 */
+  public NodeMetadata metadata() {
+    return metadata;
+  }
+
+  /** @return 路由权重 */
+  public int weight() {
+    return metadata.weight();
+  }
+
+  /**
+   * 更新节点元数据
+   *
+   * @param metadata 新的元数据
+   * @return 权重是否改变
+   */
+  boolean updateMetadata(NodeMetadata metadata) {
+    int weight = this.metadata.weight();
+    this.metadata = metadata;
+    return weight != metadata.weight();
+  }
+
+  /** 连接成功，重置退避时间 */
+  void connected() {
+    reconnectAttempts.set(0);
+  }
+
+  /**
+   * 平均耗时
+   *
+   * @return
+   */
+  public double calAvgRespTime() {
+    long sumRespTime = totalRespTime.sum();
+    if (sumRespTime == 0) {
+      return 0;
+    }
+    long sumReqTimes = totalReqTimes.sum();
+    if (sumReqTimes == 0) {
+      return 0;
+    }
+
+    return sumRespTime * 1.0f / sumReqTimes;
+  }
+}
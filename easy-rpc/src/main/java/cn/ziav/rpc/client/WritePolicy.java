@@ -0,0 +1,17 @@
+package cn.ziav.rpc.client;
+
+/**
+ * 连接不可写（出站缓冲区超过高水位）时发送请求的策略
+ *
+ * @author Zavi
+ */
+public enum WritePolicy {
+  /** 立即以{@link cn.ziav.rpc.exception.ExceptionCode#CHANNEL_UNWRITABLE}失败 */
+  FAIL_FAST,
+
+  /** 暂存到连接的有界队列中，连接恢复可写后在IO线程中发送；队列已满时立即失败 */
+  QUEUE,
+
+  /** 同步调用阻塞等待连接恢复可写，最多等到调用超时；异步调用不阻塞，与{@link #QUEUE}相同 */
+  BLOCK
+}
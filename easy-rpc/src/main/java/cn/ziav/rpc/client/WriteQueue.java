@@ -0,0 +1,129 @@
+package cn.ziav.rpc.client;
+
+import cn.ziav.rpc.common.MsgRequest;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import java.util.ArrayDeque;
+
+/**
+ * 连接不可写时暂存的请求，连接恢复可写后在IO线程中依次发送
+ *
+ * <p>同时作为同步调用等待连接恢复可写的监视器。只有出现过不可写的连接才会创建。
+ *
+ * @author Zavi
+ */
+final class WriteQueue {
+  private static final AttributeKey<WriteQueue> WRITE_QUEUE =
+      AttributeKey.valueOf("easy-rpc.writeQueue");
+
+  private final ArrayDeque<MsgRequest<?>> requests = new ArrayDeque<>();
+
+  /** 连接已断开，队列已被清空，不再接受请求 */
+  private boolean cleared;
+
+  /**
+   * @param channel 连接
+   * @return 连接的暂存队列，不存在时创建
+   */
+  static WriteQueue get(Channel channel) {
+    WriteQueue queue = channel.attr(WRITE_QUEUE).get();
+    if (queue == null) {
+      queue = new WriteQueue();
+      WriteQueue pre = channel.attr(WRITE_QUEUE).setIfAbsent(queue);
+      if (pre != null) {
+        queue = pre;
+      }
+    }
+    return queue;
+  }
+
+  /**
+   * @param channel 连接
+   * @return 连接的暂存队列，不存在时为null
+   */
+  static WriteQueue peek(Channel channel) {
+    return channel.attr(WRITE_QUEUE).get();
+  }
+
+  /**
+   * 暂存请求，放入后连接已恢复可写时立即安排发送，避免错过可写事件
+   *
+   * @param channel 连接
+   * @param request 请求
+   * @param limit 队列容量
+   * @return 队列已满或已被清空时返回false
+   */
+  boolean offer(Channel channel, MsgRequest<?> request, int limit) {
+    synchronized (this) {
+      if (cleared || requests.size() >= limit) {
+        return false;
+      }
+      requests.offer(request);
+    }
+    if (channel.isWritable()) {
+      channel.eventLoop().execute(() -> flush(channel));
+    }
+    return true;
+  }
+
+  /**
+   * 在IO线程中发送暂存的请求，直到队列为空或连接再次不可写。已超时或已取消的请求直接丢弃
+   *
+   * @param channel 连接
+   */
+  void flush(Channel channel) {
+    boolean written = false;
+    while (channel.isWritable()) {
+      MsgRequest<?> request;
+      synchronized (this) {
+        request = requests.poll();
+      }
+      if (request == null) {
+        break;
+      }
+      RpcFuture<?> future = RpcFuture.getFuture(request.id);
+      if (future == null) {
+        continue;
+      }
+      channel.write(request);
+      future.sent();
+      written = true;
+    }
+    if (written) {
+      channel.flush();
+    }
+  }
+
+  /**
+   * 阻塞等待连接恢复可写
+   *
+   * @param channel 连接
+   * @param deadline 截止时间（毫秒）
+   * @return 连接可写或已断开时返回true，到达截止时间时返回false
+   * @throws InterruptedException
+   */
+  synchronized boolean awaitWritable(Channel channel, long deadline) throws InterruptedException {
+    for (; ; ) {
+      if (channel.isWritable() || !channel.isActive()) {
+        return true;
+      }
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return false;
+      }
+      wait(remaining);
+    }
+  }
+
+  /** 连接的可写状态已改变，唤醒等待的调用线程 */
+  synchronized void signal() {
+    notifyAll();
+  }
+
+  /** 连接已断开，丢弃暂存的请求，对应的调用由{@link RpcFuture#channelInactive}结束 */
+  synchronized void clear() {
+    cleared = true;
+    requests.clear();
+    notifyAll();
+  }
+}
@@ -0,0 +1,32 @@
+package cn.ziav.rpc.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * 原始字节数组序列化器，消息体原样写入，适合业务自行编码的消息
+ *
+ * @author Zavi
+ */
+final class BytesSerializer implements Serializer {
+
+  @Override
+  public int id() {
+    return BYTES;
+  }
+
+  @Override
+  public boolean support(Object data) {
+    return data instanceof byte[];
+  }
+
+  @Override
+  public void writeTo(ByteBuf out, Object data, Class<?> type) {
+    out.writeBytes((byte[]) data);
+  }
+
+  @Override
+  public Object readFrom(ByteBuf in, int index, int len, Class<?> type) {
+    return ByteBufUtil.getBytes(in, index, len);
+  }
+}
@@ -0,0 +1,147 @@
+package cn.ziav.rpc.codec;
+
+import cn.ziav.rpc.common.Constants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 消息体压缩，使用JDK自带的Deflate算法
+ *
+ * <p>压缩后的消息体格式为：4个字节的原始长度 + Deflate数据，并在协议头中设置{@link Constants#FLAG_COMPRESSED}。
+ * 旧版本的对端无法解析压缩的消息体，因此只在通过{@link ProtocolFeatures}协商确认对端支持后才在该连接上启用压缩。
+ *
+ * @author Zavi
+ */
+public final class Compression {
+  /** 不压缩 */
+  public static final int DISABLED = -1;
+
+  /** 缓存在线程中的输出缓冲区上限，更大的消息体临时分配 */
+  private static final int MAX_CACHED_BUFFER = 64 * 1024;
+
+  /** IO线程中的压缩器，优先压缩速度 */
+  private static final FastThreadLocal<Deflater> DEFLATER =
+      new FastThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+          return new Deflater(Deflater.BEST_SPEED);
+        }
+
+        @Override
+        protected void onRemoval(Deflater value) {
+          value.end();
+        }
+      };
+
+  /** IO线程中的压缩输出缓冲区 */
+  private static final FastThreadLocal<byte[]> BUFFER =
+      new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+          return new byte[1024];
+        }
+      };
+
+  /** 解压在业务线程中进行 */
+  private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+  private Compression() {}
+
+  /**
+   * 原地压缩缓冲区末尾的消息体，压缩后没有变小时保持原样
+   *
+   * @param out 出站缓冲区
+   * @param index 消息体起始位置，消息体到写索引为止
+   * @param mId 业务消息id
+   * @return 是否已压缩
+   */
+  static boolean compress(ByteBuf out, int index, int mId) {
+    long start = System.nanoTime();
+    int len = out.writerIndex() - index;
+    byte[] input = ByteBufUtil.getBytes(out, index, len, false);
+    // 压缩结果至少要比原始消息体小，输出缓冲区不必大于原始长度
+    byte[] output = outputBuffer(len);
+    Deflater deflater = DEFLATER.get();
+    deflater.reset();
+    deflater.setInput(input, 0, len);
+    deflater.finish();
+    int n = 0;
+    while (!deflater.finished() && n < len) {
+      n += deflater.deflate(output, n, len - n);
+    }
+    boolean compressed = deflater.finished() && n + 4 < len;
+    if (compressed) {
+      out.writerIndex(index);
+      out.writeInt(len);
+      out.writeBytes(output, 0, n);
+    }
+    CompressionStats.get(mId).compressed(len, compressed ? n + 4 : len, System.nanoTime() - start);
+    return compressed;
+  }
+
+  /**
+   * 解压消息体，不移动缓冲区的读写索引
+   *
+   * @param in 入站缓冲区
+   * @param index 消息体起始位置
+   * @param len 消息体长度
+   * @param mId 业务消息id
+   * @return 原始消息体
+   * @throws IOException 数据损坏
+   */
+  static byte[] decompress(ByteBuf in, int index, int len, int mId) throws IOException {
+    long start = System.nanoTime();
+    if (len < 4) {
+      throw new IOException("compressed body too short, mId=" + mId);
+    }
+    int rawLen = in.getInt(index);
+    if (rawLen < 0 || rawLen > Constants.DEFAULT_PAYLOAD) {
+      throw new IOException("illegal uncompressed length " + rawLen + ", mId=" + mId);
+    }
+    byte[] input = ByteBufUtil.getBytes(in, index + 4, len - 4, false);
+    byte[] output = new byte[rawLen];
+    Inflater inflater = INFLATER.get();
+    inflater.reset();
+    inflater.setInput(input, 0, len - 4);
+    try {
+      int n = 0;
+      while (n < rawLen && !inflater.finished()) {
+        int count = inflater.inflate(output, n, rawLen - n);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        n += count;
+      }
+      if (n != rawLen) {
+        throw new IOException("corrupted compressed body, mId=" + mId);
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("corrupted compressed body, mId=" + mId, e);
+    }
+    CompressionStats.get(mId).decompressed(System.nanoTime() - start);
+    return output;
+  }
+
+  /**
+   * 获取压缩输出缓冲区
+   *
+   * @param len 需要的长度
+   * @return 线程缓存的缓冲区，超过上限时临时分配
+   */
+  private static byte[] outputBuffer(int len) {
+    if (len > MAX_CACHED_BUFFER) {
+      return new byte[len];
+    }
+    byte[] buffer = BUFFER.get();
+    if (buffer.length < len) {
+      buffer = new byte[Math.min(Integer.highestOneBit(len - 1) << 1, MAX_CACHED_BUFFER)];
+      BUFFER.set(buffer);
+    }
+    return buffer;
+  }
+}
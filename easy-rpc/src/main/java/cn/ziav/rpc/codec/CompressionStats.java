@@ -0,0 +1,117 @@
+package cn.ziav.rpc.codec;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按消息id统计的压缩数据，用于评估哪些消息值得开启压缩
+ *
+ * <p>统计范围为当前进程，压缩在发送方记录，解压在接收方记录。
+ *
+ * @author Zavi
+ */
+public final class CompressionStats {
+  /** <msgId, 统计> */
+  private static final Map<Integer, CompressionStats> STATS = new ConcurrentHashMap<>();
+
+  /** 尝试压缩的次数 */
+  private final LongAdder count = new LongAdder();
+
+  /** 压缩后没有变小、按原样发送的次数 */
+  private final LongAdder skipped = new LongAdder();
+
+  /** 压缩前的总字节数 */
+  private final LongAdder rawBytes = new LongAdder();
+
+  /** 实际发送的总字节数 */
+  private final LongAdder compressedBytes = new LongAdder();
+
+  /** 压缩总耗时 */
+  private final LongAdder compressNanos = new LongAdder();
+
+  /** 解压次数 */
+  private final LongAdder decompressCount = new LongAdder();
+
+  /** 解压总耗时 */
+  private final LongAdder decompressNanos = new LongAdder();
+
+  private CompressionStats() {}
+
+  /**
+   * 获取消息id的统计
+   *
+   * @param msgId 业务消息id
+   * @return
+   */
+  public static CompressionStats get(int msgId) {
+    CompressionStats stats = STATS.get(msgId);
+    return stats != null ? stats : STATS.computeIfAbsent(msgId, k -> new CompressionStats());
+  }
+
+  /** @return 所有消息id的统计，<msgId, 统计> */
+  public static Map<Integer, CompressionStats> getAll() {
+    return Collections.unmodifiableMap(STATS);
+  }
+
+  void compressed(int raw, int sent, long nanos) {
+    count.increment();
+    if (raw == sent) {
+      skipped.increment();
+    }
+    rawBytes.add(raw);
+    compressedBytes.add(sent);
+    compressNanos.add(nanos);
+  }
+
+  void decompressed(long nanos) {
+    decompressCount.increment();
+    decompressNanos.add(nanos);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getSkipped() {
+    return skipped.sum();
+  }
+
+  public long getRawBytes() {
+    return rawBytes.sum();
+  }
+
+  public long getCompressedBytes() {
+    return compressedBytes.sum();
+  }
+
+  /** @return 压缩率，实际发送字节数/压缩前字节数，越小越好；没有数据时返回1 */
+  public double getRatio() {
+    long raw = rawBytes.sum();
+    return raw == 0 ? 1 : (double) compressedBytes.sum() / raw;
+  }
+
+  public long getCompressNanos() {
+    return compressNanos.sum();
+  }
+
+  public long getDecompressCount() {
+    return decompressCount.sum();
+  }
+
+  public long getDecompressNanos() {
+    return decompressNanos.sum();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "count=%d, skipped=%d, ratio=%.3f, compress=%dus, decompress=%dus",
+        getCount(),
+        getSkipped(),
+        getRatio(),
+        getCompressNanos() / 1000,
+        getDecompressNanos() / 1000);
+  }
+}
@@ -0,0 +1,52 @@
+package cn.ziav.rpc.codec;
+
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+
+/**
+ * 尚未反序列化的消息体
+ *
+ * <p>解码器只持有消息体所在缓冲区的一个retained切片，真正的反序列化推迟到业务线程首次访问时进行，
+ * 避免大消息体阻塞Netty的IO线程。切片必须通过{@link #decode()}或{@link #release()}释放且只能释放一次。
+ *
+ * @author Zavi
+ */
+public final class LazyBody {
+  /** 消息体切片 */
+  private final ByteBuf buf;
+
+  /** 业务消息id */
+  private final int mId;
+
+  /** 协议头中的数据包类型字节，包含消息体编码方式 */
+  private final byte flag;
+
+  /** 绑定类型 */
+  private final Class<?> type;
+
+  LazyBody(ByteBuf buf, int mId, byte flag, Class<?> type) {
+    this.buf = buf;
+    this.mId = mId;
+    this.flag = flag;
+    this.type = type;
+  }
+
+  /**
+   * 反序列化消息体并释放切片
+   *
+   * @return 消息体
+   * @throws IOException
+   */
+  public Object decode() throws IOException {
+    try {
+      return RpcDecoder.readBody(buf, buf.readerIndex(), buf.readableBytes(), mId, flag, type);
+    } finally {
+      buf.release();
+    }
+  }
+
+  /** 不解析，直接释放切片 */
+  public void release() {
+    buf.release();
+  }
+}
@@ -0,0 +1,200 @@
+package cn.ziav.rpc.codec;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 消息类型注册表：将业务消息id绑定到具体的请求体和响应体类型，以及编码时使用的序列化器
+ *
+ * <p>绑定了具体类型的消息体直接使用该类型的Schema编解码，不再用{@link Wrapper}包装，
+ * 因此不会在每条消息中写入完整类名，解码时也不需要反射加载类。只有消息体的实际类型与绑定类型完全一致时才会走该路径，
+ * 其余情况（未绑定、子类、异常等）仍按多态方式编码。
+ *
+ * <p>序列化器和压缩阈值只影响本端编码，解码始终以协议头中的序列化器编号和压缩标识为准。
+ *
+ * @author Zavi
+ */
+public class MsgTypeRegistry {
+  /** <msgId, 消息类型> */
+  private final Map<Integer, MsgType> types = new ConcurrentHashMap<>();
+
+  /** <msgId, 序列化器> */
+  private final Map<Integer, Serializer> serializers = new ConcurrentHashMap<>();
+
+  /** 未按消息id指定时使用的序列化器 */
+  private volatile Serializer defaultSerializer;
+
+  /** <msgId, 压缩阈值> */
+  private final Map<Integer, Integer> compressThresholds = new ConcurrentHashMap<>();
+
+  /** 未按消息id指定时的压缩阈值，默认不压缩 */
+  private volatile int defaultCompressThreshold = Compression.DISABLED;
+
+  /**
+   * 绑定消息id的请求体和响应体类型，无法绑定的类型（接口、抽象类、JDK类型等）会被忽略
+   *
+   * @param msgId 业务消息id
+   * @param requestType 请求体类型，可为null
+   * @param responseType 响应体类型，可为null
+   */
+  public void register(int msgId, Class<?> requestType, Class<?> responseType) {
+    MsgType type = new MsgType(bindable(requestType), bindable(responseType));
+    if (type.request == null && type.response == null) {
+      return;
+    }
+    MsgType pre = types.putIfAbsent(msgId, type);
+    checkArgument(pre == null || pre.equals(type), "消息类型重复绑定，msgId=%s", msgId);
+  }
+
+  /**
+   * 指定消息id编码时使用的序列化器
+   *
+   * @param msgId 业务消息id
+   * @param serializer 序列化器，为null时取消指定
+   */
+  public void bindSerializer(int msgId, Serializer serializer) {
+    if (serializer == null) {
+      serializers.remove(msgId);
+    } else {
+      serializers.put(msgId, serializer);
+    }
+  }
+
+  /**
+   * 指定所有消息id默认使用的序列化器，按消息id指定的序列化器优先
+   *
+   * @param serializer 序列化器，为null时取消指定
+   */
+  public void setDefaultSerializer(Serializer serializer) {
+    this.defaultSerializer = serializer;
+  }
+
+  /**
+   * 获取消息id指定的序列化器
+   *
+   * @param msgId 业务消息id
+   * @return 未指定时返回默认序列化器，都未指定时返回null
+   */
+  public Serializer serializer(int msgId) {
+    Serializer serializer = serializers.get(msgId);
+    return serializer != null ? serializer : defaultSerializer;
+  }
+
+  /**
+   * 指定消息id的压缩阈值，消息体不小于该长度时压缩
+   *
+   * @param msgId 业务消息id
+   * @param threshold 阈值（字节），为{@link Compression#DISABLED}时该消息id不压缩
+   */
+  public void bindCompressThreshold(int msgId, int threshold) {
+    checkArgument(threshold >= Compression.DISABLED, "非法的压缩阈值：%s", threshold);
+    compressThresholds.put(msgId, threshold);
+  }
+
+  /**
+   * 指定所有消息id默认的压缩阈值，按消息id指定的阈值优先
+   *
+   * @param threshold 阈值（字节），为{@link Compression#DISABLED}时不压缩
+   */
+  public void setDefaultCompressThreshold(int threshold) {
+    checkArgument(threshold >= Compression.DISABLED, "非法的压缩阈值：%s", threshold);
+    this.defaultCompressThreshold = threshold;
+  }
+
+  /**
+   * 获取消息id的压缩阈值
+   *
+   * @param msgId 业务消息id
+   * @return 未指定时返回默认阈值，不压缩时返回{@link Compression#DISABLED}
+   */
+  public int compressThreshold(int msgId) {
+    Integer threshold = compressThresholds.get(msgId);
+    return threshold != null ? threshold : defaultCompressThreshold;
+  }
+
+  /**
+   * 获取请求体的绑定类型
+   *
+   * @param msgId 业务消息id
+   * @return 未绑定时返回null
+   */
+  public Class<?> requestType(int msgId) {
+    MsgType type = types.get(msgId);
+    return type == null ? null : type.request;
+  }
+
+  /**
+   * 获取所有绑定了请求体类型的消息id，握手时告知对端
+   *
+   * @return 升序的消息id
+   */
+  public int[] typedRequests() {
+    return types.entrySet().stream()
+        .filter(e -> e.getValue().request != null)
+        .mapToInt(Map.Entry::getKey)
+        .sorted()
+        .toArray();
+  }
+
+  /**
+   * 获取响应体的绑定类型
+   *
+   * @param msgId 业务消息id
+   * @return 未绑定时返回null
+   */
+  public Class<?> responseType(int msgId) {
+    MsgType type = types.get(msgId);
+    return type == null ? null : type.response;
+  }
+
+  /**
+   * 过滤无法绑定的类型
+   *
+   * @param type 类型
+   * @return 无法绑定时返回null
+   */
+  private static Class<?> bindable(Class<?> type) {
+    if (type == null
+        || type.isInterface()
+        || type.isArray()
+        || type.isPrimitive()
+        || type.isEnum()
+        || Modifier.isAbstract(type.getModifiers())
+        || type.getName().startsWith("java.")) {
+      return null;
+    }
+    return type;
+  }
+
+  /** 请求体和响应体的绑定类型 */
+  private static final class MsgType {
+    private final Class<?> request;
+    private final Class<?> response;
+
+    private MsgType(Class<?> request, Class<?> response) {
+      this.request = request;
+      this.response = response;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof MsgType)) {
+        return false;
+      }
+      MsgType that = (MsgType) o;
+      return Objects.equals(request, that.request) && Objects.equals(response, that.response);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(request, response);
+    }
+  }
+}
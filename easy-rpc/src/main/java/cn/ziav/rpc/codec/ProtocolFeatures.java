@@ -0,0 +1,96 @@
+package cn.ziav.rpc.codec;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import java.util.Arrays;
+
+/**
+ * 连接级协议特性协商
+ *
+ * <p>连接建立后客户端发起握手（{@link cn.ziav.rpc.common.Constants#HANDSHAKE_MSG_ID}），请求体为本端支持的特性位，
+ * 服务端回复双方都支持的特性位，双方各自记录在{@link Channel}的属性中。旧版本的服务端会返回错误响应，
+ * 旧版本的客户端不会握手，因此与旧版本通信时所有特性都不会启用。解码不依赖协商结果，始终兼容所有特性。
+ *
+ * <p>启用{@link #TYPED_REQUEST}时，服务端在握手响应中一并告知已绑定请求体类型的消息id，客户端只对这些消息id按绑定类型编码请求体，
+ * 对端未绑定的消息id仍按多态方式编码，避免对端无法解码。
+ *
+ * @author Zavi
+ */
+public final class ProtocolFeatures {
+  /** 消息体压缩 */
+  public static final int COMPRESSION = 1;
+
+  /** v2紧凑协议头 */
+  public static final int HEADER_V2 = 1 << 1;
+
+  /** 请求体按对端绑定的类型编码 */
+  public static final int TYPED_REQUEST = 1 << 2;
+
+  /** 标量消息体直接编码，不经过序列化器 */
+  public static final int SCALAR_BODY = 1 << 3;
+
+  /** 本端支持的所有特性 */
+  public static final int LOCAL = COMPRESSION | HEADER_V2 | TYPED_REQUEST | SCALAR_BODY;
+
+  /** 与对端协商后的特性 */
+  private static final AttributeKey<Integer> NEGOTIATED =
+      AttributeKey.valueOf("easy-rpc.features");
+
+  /** 对端已绑定请求体类型的消息id，升序 */
+  private static final AttributeKey<int[]> TYPED_REQUESTS =
+      AttributeKey.valueOf("easy-rpc.typed-requests");
+
+  private ProtocolFeatures() {}
+
+  /**
+   * 记录与对端协商后的特性
+   *
+   * @param channel 连接
+   * @param features 特性位，会与本端支持的特性取交集
+   * @return 双方都支持的特性
+   */
+  public static int negotiate(Channel channel, int features) {
+    features &= LOCAL;
+    channel.attr(NEGOTIATED).set(features);
+    return features;
+  }
+
+  /**
+   * 判断连接上是否已启用某个特性
+   *
+   * @param channel 连接
+   * @param feature 特性
+   * @return 未完成协商或对端为旧版本时返回false
+   */
+  public static boolean isEnabled(Channel channel, int feature) {
+    Integer features = channel.attr(NEGOTIATED).get();
+    return features != null && (features & feature) != 0;
+  }
+
+  /**
+   * 记录对端已绑定请求体类型的消息id，需要在{@link #negotiate(Channel, int)}之前调用
+   *
+   * @param channel 连接
+   * @param msgIds 消息id
+   */
+  public static void acceptTypedRequests(Channel channel, int[] msgIds) {
+    int[] sorted = msgIds.clone();
+    Arrays.sort(sorted);
+    channel.attr(TYPED_REQUESTS).set(sorted);
+  }
+
+  /**
+   * 判断请求体能否按绑定类型编码
+   *
+   * @param channel 连接
+   * @param msgId 业务消息id
+   * @return 已启用{@link #TYPED_REQUEST}且对端绑定了该消息id的请求体类型时返回true
+   */
+  public static boolean acceptsTypedRequest(Channel channel, int msgId) {
+    if (!isEnabled(channel, TYPED_REQUEST)) {
+      return false;
+    }
+    int[] msgIds = channel.attr(TYPED_REQUESTS).get();
+    return msgIds != null && Arrays.binarySearch(msgIds, msgId) >= 0;
+  }
+}
@@ -0,0 +1,151 @@
+package cn.ziav.rpc.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.protostuff.GraphIOUtil;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import java.io.IOException;
+
+/**
+ * 基于ProtoStuff的消息体序列化工具，直接在{@link ByteBuf}上读写，不产生中间字节数组
+ *
+ * <p>消息体未绑定具体类型时用{@link Wrapper}包装，按多态方式写入类名；绑定了具体类型时直接使用该类型的Schema。
+ * 图模式（{@link GraphIOUtil}）会记录已写入的对象以支持循环引用，非图模式（{@link ProtostuffIOUtil}）省去这部分开销，
+ * 但遇到循环引用会栈溢出，只适用于无环的消息。
+ *
+ * @author Zavi
+ */
+final class ProtostuffCodec {
+  /** 序列化暂存区大小 */
+  private static final int BUFFER_SIZE = 4096;
+
+  /** 每个线程复用一个序列化暂存区，避免每条消息都分配LinkedBuffer */
+  private static final FastThreadLocal<LinkedBuffer> BUFFER =
+      new FastThreadLocal<LinkedBuffer>() {
+        @Override
+        protected LinkedBuffer initialValue() {
+          return LinkedBuffer.allocate(BUFFER_SIZE);
+        }
+      };
+
+  /** 可复用的反序列化暂存数组上限，超过该大小的消息体单独分配 */
+  private static final int MAX_SCRATCH_SIZE = 64 * 1024;
+
+  /** 每个线程复用一个反序列化暂存数组，用于解析堆外内存中的消息体 */
+  private static final FastThreadLocal<byte[]> SCRATCH =
+      new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+          return new byte[BUFFER_SIZE];
+        }
+      };
+
+  private ProtostuffCodec() {}
+
+  /**
+   * 将消息体以多态方式序列化到缓冲区
+   *
+   * @param out 出站缓冲区
+   * @param data 消息体
+   * @param graph 是否使用图模式
+   * @throws IOException
+   */
+  static void writeTo(ByteBuf out, Object data, boolean graph) throws IOException {
+    writeTo(out, new Wrapper<>(data), Schemas.getSchema(Wrapper.class), graph);
+  }
+
+  /**
+   * 按指定Schema将消息序列化到缓冲区
+   *
+   * @param out 出站缓冲区
+   * @param message 消息
+   * @param schema 消息的Schema
+   * @param graph 是否使用图模式
+   * @throws IOException
+   */
+  static <T> void writeTo(ByteBuf out, T message, Schema<T> schema, boolean graph)
+      throws IOException {
+    LinkedBuffer buffer = BUFFER.get();
+    try {
+      // 通过ProtoStuff将消息直接序列化到出站缓冲区
+      if (graph) {
+        GraphIOUtil.writeTo(new ByteBufOutputStream(out), message, schema, buffer);
+      } else {
+        ProtostuffIOUtil.writeTo(new ByteBufOutputStream(out), message, schema, buffer);
+      }
+    } finally {
+      // 清除序列化buffer
+      buffer.clear();
+    }
+  }
+
+  /**
+   * 从缓冲区反序列化以多态方式写入的消息体，不移动缓冲区的读写索引
+   *
+   * @param in 入站缓冲区
+   * @param index 消息体起始位置
+   * @param len 消息体长度
+   * @param graph 是否使用图模式
+   * @return 消息体
+   * @throws IOException
+   */
+  static Object readFrom(ByteBuf in, int index, int len, boolean graph) throws IOException {
+    Wrapper wrapper = readFrom(in, index, len, Schemas.getSchema(Wrapper.class), graph);
+    return wrapper.getData();
+  }
+
+  /**
+   * 按指定Schema从缓冲区反序列化消息，不移动缓冲区的读写索引
+   *
+   * @param in 入站缓冲区
+   * @param index 消息起始位置
+   * @param len 消息长度
+   * @param schema 消息的Schema
+   * @param graph 是否使用图模式
+   * @return 消息
+   * @throws IOException
+   */
+  static <T> T readFrom(ByteBuf in, int index, int len, Schema<T> schema, boolean graph)
+      throws IOException {
+    T message = schema.newMessage();
+    byte[] bytes;
+    int offset;
+    if (in.hasArray()) {
+      // 堆内存直接在底层数组上解析
+      bytes = in.array();
+      offset = in.arrayOffset() + index;
+    } else {
+      // 堆外内存批量拷贝到线程复用的暂存数组后解析，比按流逐段读取更快
+      bytes = scratch(len);
+      offset = 0;
+      in.getBytes(index, bytes, 0, len);
+    }
+    if (graph) {
+      GraphIOUtil.mergeFrom(bytes, offset, len, message, schema);
+    } else {
+      ProtostuffIOUtil.mergeFrom(bytes, offset, len, message, schema);
+    }
+    return message;
+  }
+
+  /**
+   * 获取至少能容纳len个字节的暂存数组
+   *
+   * @param len 所需长度
+   * @return 暂存数组
+   */
+  private static byte[] scratch(int len) {
+    if (len > MAX_SCRATCH_SIZE) {
+      return new byte[len];
+    }
+    byte[] bytes = SCRATCH.get();
+    if (bytes.length < len) {
+      bytes = new byte[Math.max(len, bytes.length << 1)];
+      SCRATCH.set(bytes);
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,51 @@
+package cn.ziav.rpc.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.protostuff.Schema;
+import java.io.IOException;
+
+/**
+ * ProtoStuff序列化器
+ *
+ * <p>图模式为默认序列化器，支持循环引用；非图模式不记录已写入的对象，速度更快，但只适用于无环的消息。
+ * 异常对象之间常通过cause和suppressed互相引用，非图模式不支持，由调用方退回图模式。
+ * 未绑定具体类型的消息体用{@link Wrapper}包装，按多态方式写入类名。
+ *
+ * @author Zavi
+ */
+final class ProtostuffSerializer implements Serializer {
+  /** 是否使用图模式 */
+  private final boolean graph;
+
+  ProtostuffSerializer(boolean graph) {
+    this.graph = graph;
+  }
+
+  @Override
+  public int id() {
+    return graph ? PROTOSTUFF_GRAPH : PROTOSTUFF;
+  }
+
+  @Override
+  public boolean support(Object data) {
+    return graph || !(data instanceof Throwable);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void writeTo(ByteBuf out, Object data, Class<?> type) throws IOException {
+    if (type == null) {
+      ProtostuffCodec.writeTo(out, data, graph);
+    } else {
+      ProtostuffCodec.writeTo(out, data, (Schema<Object>) Schemas.getSchema(type), graph);
+    }
+  }
+
+  @Override
+  public Object readFrom(ByteBuf in, int index, int len, Class<?> type) throws IOException {
+    if (type == null) {
+      return ProtostuffCodec.readFrom(in, index, len, graph);
+    }
+    return ProtostuffCodec.readFrom(in, index, len, Schemas.getSchema(type), graph);
+  }
+}
@@ -0,0 +1,276 @@
+package cn.ziav.rpc.codec;
+
+import static cn.ziav.rpc.common.Constants.FLAG_COMPRESSED;
+import static cn.ziav.rpc.common.Constants.FLAG_REQUEST;
+import static cn.ziav.rpc.common.Constants.FLAG_TWOWAY;
+import static cn.ziav.rpc.common.Constants.FLAG_TYPED;
+import static cn.ziav.rpc.common.Constants.HEADER_LENGTH;
+import static cn.ziav.rpc.common.Constants.HEADER_V2_MAX_LENGTH;
+import static cn.ziav.rpc.common.Constants.MAGIC_HIGH;
+import static cn.ziav.rpc.common.Constants.MAGIC_LOW;
+import static cn.ziav.rpc.common.Constants.MAGIC_V2;
+import static cn.ziav.rpc.common.Constants.MASK_SERIALIZER;
+import static cn.ziav.rpc.common.Constants.OPT_TYPED_RESPONSE;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import cn.ziav.rpc.common.Constants;
+import cn.ziav.rpc.common.MsgRequest;
+import cn.ziav.rpc.common.MsgResponse;
+import com.google.common.base.Preconditions;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import java.io.IOException;
+
+/**
+ * 协议解码器
+ *
+ * <p>同时兼容v1定长协议头和v2紧凑协议头，按数据包的首字节和第4个字节区分版本，见{@link Constants#MAGIC_V2}。
+ *
+ * @author Zavi
+ */
+public class RpcDecoder extends LengthFieldBasedFrameDecoder {
+  /** 是否延迟反序列化消息体 */
+  private final boolean lazy;
+
+  /** 消息类型注册表 */
+  private final MsgTypeRegistry typeRegistry;
+
+  public RpcDecoder() {
+    this(true);
+  }
+
+  public RpcDecoder(MsgTypeRegistry typeRegistry) {
+    this(true, typeRegistry);
+  }
+
+  public RpcDecoder(boolean lazy) {
+    this(lazy, new MsgTypeRegistry());
+  }
+
+  /**
+   * @param lazy 为true时只保留消息体切片，由业务线程在首次访问时反序列化；为false时在IO线程中直接反序列化
+   * @param typeRegistry 消息类型注册表
+   */
+  public RpcDecoder(boolean lazy, MsgTypeRegistry typeRegistry) {
+    // 这里使用小端字节序，效率更高
+    super(LITTLE_ENDIAN, Constants.DEFAULT_PAYLOAD, 0, 4, 0, 4, true);
+    this.lazy = lazy;
+    this.typeRegistry = typeRegistry;
+  }
+
+  @Override
+  public Object decode(ChannelHandlerContext ctx, ByteBuf input) throws Exception {
+    int start = input.readerIndex();
+    if (input.readableBytes() >= 4
+        && input.getByte(start) == MAGIC_V2
+        && input.getByte(start + 3) != 0) {
+      return decodeV2(input);
+    }
+    try {
+      input = (ByteBuf) super.decode(ctx, input);
+      if (input == null) {
+        return null;
+      }
+
+      int readable = input.readableBytes();
+      int index = input.readerIndex();
+
+      // 检查魔数是否相等，不相等说明请求非法，直接断联
+      if (readable > 0 && input.getByte(index) != MAGIC_HIGH
+          || readable > 1 && input.getByte(index + 1) != MAGIC_LOW) {
+        ctx.disconnect();
+        return null;
+      }
+
+      // 检测可读数据量是否少于消息头长度，若小于则立即返回
+      if (readable < HEADER_LENGTH) {
+        return null;
+      }
+
+      // 从消息头中获取消息体长度
+      int len = input.getInt(index + 16);
+      int tt = len + HEADER_LENGTH;
+      // 检查数据大小是否超限
+      Preconditions.checkArgument(
+          tt <= Constants.DEFAULT_PAYLOAD, "数据大小超过上限%sM", Constants.DEFAULT_PAYLOAD / 1024 / 1024);
+
+      // 直接从缓冲区获取协议头的数据包类型、请求编号、业务编号
+      byte flag = input.getByte(index + 2);
+      byte status = input.getByte(index + 3);
+      long id = input.getLong(index + 4);
+      int mId = input.getInt(index + 12);
+      return decodeMsg(input, flag, status, id, mId, index + HEADER_LENGTH, len);
+    } finally {
+      if (input != null) {
+        input.release();
+      }
+    }
+  }
+
+  /**
+   * 解码v2紧凑协议头的数据包，格式见{@link RpcEncoder}
+   *
+   * @param input 累积缓冲区
+   * @return 数据包不完整时返回null
+   * @throws IOException
+   */
+  private Object decodeV2(ByteBuf input) throws IOException {
+    int index = input.readerIndex();
+    int end = input.writerIndex();
+    // 读取剩余长度，最多4个字节
+    int pos = index + 3;
+    int len = 0;
+    for (int shift = 0; ; shift += 7) {
+      if (pos >= end) {
+        return null;
+      }
+      if (shift > 21) {
+        throw new IOException("malformed frame length");
+      }
+      byte b = input.getByte(pos++);
+      len |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        break;
+      }
+    }
+    // 检查数据大小是否超限
+    Preconditions.checkArgument(
+        len + HEADER_V2_MAX_LENGTH <= Constants.DEFAULT_PAYLOAD,
+        "数据大小超过上限%sM",
+        Constants.DEFAULT_PAYLOAD / 1024 / 1024);
+    if (end - pos < len) {
+      return null;
+    }
+
+    ByteBuf frame = input.retainedSlice(pos, len);
+    input.readerIndex(pos + len);
+    try {
+      byte flag = input.getByte(index + 1);
+      byte status = input.getByte(index + 2);
+      long id = readVarint(frame, 64);
+      int mId = ScalarCodec.decodeZigZag((int) readVarint(frame, 32));
+      int bodyIndex = frame.readerIndex();
+      return decodeMsg(frame, flag, status, id, mId, bodyIndex, frame.writerIndex() - bodyIndex);
+    } finally {
+      frame.release();
+    }
+  }
+
+  /**
+   * 从缓冲区读取varint，并移动读索引
+   *
+   * @param in 缓冲区
+   * @param bits 最大位数
+   * @return
+   * @throws IOException
+   */
+  private static long readVarint(ByteBuf in, int bits) throws IOException {
+    long result = 0;
+    for (int shift = 0; shift < bits && in.isReadable(); shift += 7) {
+      byte b = in.readByte();
+      result |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return result;
+      }
+    }
+    throw new IOException("malformed varint");
+  }
+
+  /**
+   * 根据已解析的协议头字段构造请求或响应
+   *
+   * @param input 数据包缓冲区
+   * @param flag 数据包类型
+   * @param status 响应状态码，请求消息为请求选项
+   * @param id 请求编号
+   * @param mId 业务消息编号
+   * @param bodyIndex 消息体起始位置
+   * @param len 消息体长度
+   * @return
+   * @throws IOException
+   */
+  private Object decodeMsg(
+      ByteBuf input, byte flag, byte status, long id, int mId, int bodyIndex, int len)
+      throws IOException {
+    // 消息体是否按绑定的具体类型编码
+    boolean typed = (flag & FLAG_TYPED) != 0;
+    // 标量消息体（如空字符串）及扩展序列化器的消息体长度可以为0
+    boolean hasBody = len > 0 || (flag & MASK_SERIALIZER) != 0;
+    // 通过逻辑与运算判断是否为请求消息
+    if ((flag & FLAG_REQUEST) != 0) {
+      // 创建MsgRequest对象
+      MsgRequest req = new MsgRequest(id, mId);
+      // 通过逻辑与运算得到通信方式，并设置到 Request 对象中
+      req.mTwoWay = (flag & FLAG_TWOWAY) != 0;
+      // 请求方是否接受按绑定类型编码的响应体
+      req.mTypedResponse = (status & OPT_TYPED_RESPONSE) != 0;
+      // 请求方为响应体指定的序列化器
+      req.mSerializer = (byte) ((status >> 4) & 0x0F);
+      // 通过ProtoStuff直接从缓冲区反序列化请求体
+      if (hasBody) {
+        Class<?> type = typed ? typeRegistry.requestType(mId) : null;
+        if (lazy) {
+          req.mBody = new LazyBody(input.retainedSlice(bodyIndex, len), mId, flag, type);
+        } else {
+          req.mData = readBody(input, bodyIndex, len, mId, flag, type);
+        }
+      }
+      return req;
+    } else {
+      // 创建MsgResponse对象
+      MsgResponse resp = new MsgResponse(id, mId);
+      // 设置对象状态
+      resp.mStatus = status;
+      // 只要存在消息体就进行反序列化
+      if (hasBody) {
+        // 反序列化响应对象的具体内容
+        Class<?> type = typed ? typeRegistry.responseType(mId) : null;
+        if (lazy) {
+          resp.mBody = new LazyBody(input.retainedSlice(bodyIndex, len), mId, flag, type);
+        } else {
+          resp.mData = readBody(input, bodyIndex, len, mId, flag, type);
+        }
+      }
+      return resp;
+    }
+  }
+
+  /**
+   * 反序列化消息体，不移动缓冲区的读写索引
+   *
+   * @param in 入站缓冲区
+   * @param index 消息体起始位置
+   * @param len 消息体长度
+   * @param mId 业务消息id
+   * @param flag 协议头中的数据包类型字节，包含消息体编码方式
+   * @param type 绑定类型
+   * @return 消息体
+   * @throws IOException
+   */
+  static Object readBody(ByteBuf in, int index, int len, int mId, byte flag, Class<?> type)
+      throws IOException {
+    if ((flag & FLAG_COMPRESSED) != 0) {
+      // 先解压再按原始消息体解析
+      byte[] raw = Compression.decompress(in, index, len, mId);
+      flag &= ~FLAG_COMPRESSED;
+      return readBody(Unpooled.wrappedBuffer(raw), 0, raw.length, mId, flag, type);
+    }
+    byte id = (byte) (flag & MASK_SERIALIZER);
+    if (id != Serializer.PROTOSTUFF_GRAPH && id <= ScalarCodec.MAX_TAG) {
+      return ScalarCodec.readFrom(in, index, len, id);
+    }
+    Serializer serializer = Serializers.get(id);
+    if (serializer == null) {
+      throw new IOException("unknown serializer id=" + id + ", mId=" + mId);
+    }
+    if ((flag & FLAG_TYPED) == 0) {
+      return serializer.readFrom(in, index, len, null);
+    }
+    if (type == null) {
+      throw new IOException("no message type registered, mId=" + mId);
+    }
+    return serializer.readFrom(in, index, len, type);
+  }
+}
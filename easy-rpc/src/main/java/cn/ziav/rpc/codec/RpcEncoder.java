@@ -0,0 +1,338 @@
+package cn.ziav.rpc.codec;
+
+import static cn.ziav.rpc.common.Constants.FLAG_COMPRESSED;
+import static cn.ziav.rpc.common.Constants.FLAG_REQUEST;
+import static cn.ziav.rpc.common.Constants.FLAG_TWOWAY;
+import static cn.ziav.rpc.common.Constants.FLAG_TYPED;
+import static cn.ziav.rpc.common.Constants.HEADER_LENGTH;
+import static cn.ziav.rpc.common.Constants.HEADER_V2_MAX_LENGTH;
+import static cn.ziav.rpc.common.Constants.MAGIC;
+import static cn.ziav.rpc.common.Constants.MAGIC_V2;
+import static cn.ziav.rpc.common.Constants.MASK_RESPONSE_SERIALIZER;
+import static cn.ziav.rpc.common.Constants.OPT_TYPED_RESPONSE;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import cn.ziav.rpc.common.Constants;
+import cn.ziav.rpc.common.MsgRequest;
+import cn.ziav.rpc.common.MsgResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import java.io.IOException;
+
+/**
+ * 协议编码
+ *
+ * <p>协议头各字段直接写入出站的{@link ByteBuf}，消息体通过ProtoStuff流式序列化到同一个ByteBuf中，
+ * 待消息体写完后再回填长度字段，整个过程不产生中间字节数组。对端支持时标量消息体由{@link ScalarCodec}直接写入，
+ * 也可以按消息id指定其他{@link Serializer}。对端支持时使用v2紧凑协议头。对端支持压缩时，超过压缩阈值的消息体由{@link Compression}原地压缩。
+ *
+ * @author Zavi
+ */
+@Sharable
+public class RpcEncoder extends MessageToByteEncoder {
+  /** 消息类型注册表 */
+  private final MsgTypeRegistry typeRegistry;
+
+  public RpcEncoder() {
+    this(new MsgTypeRegistry());
+  }
+
+  public RpcEncoder(MsgTypeRegistry typeRegistry) {
+    this.typeRegistry = typeRegistry;
+  }
+
+  @Override
+  protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+    if (msg instanceof MsgRequest) {
+      MsgRequest request = (MsgRequest) msg;
+      // 只有对端在握手时告知绑定了请求体类型的消息id才按绑定类型编码
+      Class<?> type = null;
+      if (ProtocolFeatures.acceptsTypedRequest(ctx.channel(), request.mId)) {
+        type = typedType(typeRegistry.requestType(request.mId), request.mData);
+      }
+      // 设置数据包类型（Request/Response）
+      byte flag = FLAG_REQUEST;
+      // 设置通信方式(单向/双向)
+      if (request.mTwoWay) {
+        flag |= FLAG_TWOWAY;
+      }
+      // 请求方绑定了响应体类型时，告知对端可以按该类型编码响应体
+      byte option = 0;
+      if (typeRegistry.responseType(request.mId) != null) {
+        option |= OPT_TYPED_RESPONSE;
+      }
+      // 告知对端响应体沿用本端指定的序列化器，请求体为标量时也能保持一致
+      Serializer serializer = typeRegistry.serializer(request.mId);
+      if (serializer != null) {
+        option |= (serializer.id() << 4) & MASK_RESPONSE_SERIALIZER;
+      }
+      encode(
+          out,
+          flag,
+          option,
+          request.id,
+          request.mId,
+          request.mData,
+          type,
+          serializer,
+          compressThreshold(ctx, request.mId),
+          isScalarBody(ctx),
+          isHeaderV2(ctx));
+    }
+
+    if (msg instanceof MsgResponse) {
+      MsgResponse response = (MsgResponse) msg;
+      Class<?> type = null;
+      if (response.mTyped) {
+        type = typedType(typeRegistry.responseType(response.mId), response.mData);
+      }
+      // 本端未指定序列化器时，沿用请求使用的序列化器
+      Serializer serializer = typeRegistry.serializer(response.mId);
+      if (serializer == null) {
+        serializer = Serializers.get(response.mSerializer);
+      }
+      encode(
+          out,
+          (byte) 0,
+          response.mStatus,
+          response.id,
+          response.mId,
+          response.mData,
+          type,
+          serializer,
+          compressThreshold(ctx, response.mId),
+          isScalarBody(ctx),
+          isHeaderV2(ctx));
+    }
+  }
+
+  /**
+   * 获取当前连接上消息id的压缩阈值
+   *
+   * @param ctx
+   * @param mId 业务消息id
+   * @return 对端不支持压缩时返回{@link Compression#DISABLED}
+   */
+  private int compressThreshold(ChannelHandlerContext ctx, int mId) {
+    int threshold = typeRegistry.compressThreshold(mId);
+    if (threshold == Compression.DISABLED
+        || !ProtocolFeatures.isEnabled(ctx.channel(), ProtocolFeatures.COMPRESSION)) {
+      return Compression.DISABLED;
+    }
+    return threshold;
+  }
+
+  /**
+   * 对端支持时标量消息体直接编码，未完成握手时（如握手请求本身）仍由序列化器编码
+   *
+   * @param ctx
+   * @return
+   */
+  private static boolean isScalarBody(ChannelHandlerContext ctx) {
+    return ProtocolFeatures.isEnabled(ctx.channel(), ProtocolFeatures.SCALAR_BODY);
+  }
+
+  /**
+   * 对端支持时使用v2紧凑协议头
+   *
+   * @param ctx
+   * @return
+   */
+  private static boolean isHeaderV2(ChannelHandlerContext ctx) {
+    return ProtocolFeatures.isEnabled(ctx.channel(), ProtocolFeatures.HEADER_V2);
+  }
+
+  /**
+   * 消息体的实际类型与绑定类型完全一致时返回绑定类型
+   *
+   * @param type 绑定类型
+   * @param data 消息体
+   * @return 不一致时返回null，按多态方式编码
+   */
+  private static Class<?> typedType(Class<?> type, Object data) {
+    if (type == null || data == null || data.getClass() != type) {
+      return null;
+    }
+    return type;
+  }
+
+  /**
+   * 将协议头和消息体写入缓冲区
+   *
+   * @param out 出站缓冲区
+   * @param flag 数据包类型及通信方式
+   * @param status 响应状态码，请求消息为请求选项
+   * @param id 请求编号
+   * @param mId 业务消息编号
+   * @param data 消息体
+   * @param type 绑定类型，为null时按多态方式编码
+   * @param serializer 序列化器，为null时使用默认序列化器
+   * @param threshold 压缩阈值，为{@link Compression#DISABLED}时不压缩
+   * @param scalars 标量消息体是否直接编码
+   * @param v2 是否使用v2紧凑协议头
+   * @throws IOException
+   */
+  private static void encode(
+      ByteBuf out,
+      byte flag,
+      byte status,
+      long id,
+      int mId,
+      Object data,
+      Class<?> type,
+      Serializer serializer,
+      int threshold,
+      boolean scalars,
+      boolean v2)
+      throws IOException {
+    // 选择消息体编码方式，编号写入flag的低4位
+    byte scalar = ScalarCodec.NONE;
+    if (serializer != null && !serializer.support(data)) {
+      serializer = null;
+    }
+    if (serializer == null) {
+      serializer = Serializers.getDefault();
+    }
+    if (scalars
+        && (serializer.id() == Serializer.PROTOSTUFF_GRAPH
+            || serializer.id() == Serializer.PROTOSTUFF)) {
+      // ProtoStuff序列化方式下，标量消息体不经过ProtoStuff
+      scalar = ScalarCodec.tagOf(data);
+    }
+    if (scalar != ScalarCodec.NONE) {
+      flag |= scalar;
+    } else {
+      flag |= serializer.id();
+      if (type != null) {
+        flag |= FLAG_TYPED;
+      }
+    }
+
+    if (v2) {
+      encodeV2(out, flag, status, id, mId, data, type, serializer, scalar, threshold);
+      return;
+    }
+
+    int start = out.writerIndex();
+    // 预留4个字节的数据包长度，消息体写完后回填
+    out.writeIntLE(0);
+    // 设置魔数
+    out.writeShort(MAGIC);
+    // 设置数据包类型（Request/Response），压缩标识在消息体写完后回填
+    int flagIndex = out.writerIndex();
+    out.writeByte(flag);
+    // 设置响应状态码，长度1个字节，从第3个字节开始设置；请求消息为请求选项
+    out.writeByte(status);
+    // 设置请求编号，8个字节，从第4个字节开始设置
+    out.writeLong(id);
+    // 设置业务消息编号，4个字节，从第12个字节开始设置
+    out.writeInt(mId);
+    // 设置请求体长度，4个字节，从第16个字节开始设置，消息体写完后回填
+    int lenIndex = out.writerIndex();
+    out.writeInt(0);
+
+    int bodyStart = out.writerIndex();
+    writeBody(out, flagIndex, flag, mId, data, type, serializer, scalar, threshold);
+
+    int len = out.writerIndex() - bodyStart;
+    // 检查最终发起请求的数据包大小是否超过上限
+    int tt = len + HEADER_LENGTH;
+    checkArgument(
+        tt <= Constants.DEFAULT_PAYLOAD,
+        "数据大小超过上限%sM",
+        Constants.DEFAULT_PAYLOAD / 1024 / 1024);
+    // 回填消息体长度和数据包长度
+    out.setInt(lenIndex, len);
+    out.setIntLE(start, tt);
+  }
+
+  /**
+   * 按v2紧凑协议头写入数据包：魔数(1) + 数据包类型(1) + 状态码或请求选项(1) + 剩余长度(varint) + 请求编号(varint) +
+   * 业务消息编号(zigzag varint) + 消息体
+   *
+   * <p>剩余长度固定占用4个字节，按补齐的varint回填（前3个字节都带延续位），解码时与普通varint相同。
+   * 4个字节最多表示2^28-1，足以覆盖{@link Constants#DEFAULT_PAYLOAD}，消息体写完后不需要移动。
+   */
+  private static void encodeV2(
+      ByteBuf out,
+      byte flag,
+      byte status,
+      long id,
+      int mId,
+      Object data,
+      Class<?> type,
+      Serializer serializer,
+      byte scalar,
+      int threshold)
+      throws IOException {
+    // 设置魔数
+    out.writeByte(MAGIC_V2);
+    // 设置数据包类型，压缩标识在消息体写完后回填
+    int flagIndex = out.writerIndex();
+    out.writeByte(flag);
+    // 设置响应状态码或请求选项
+    out.writeByte(status);
+    // 预留4个字节的剩余长度，消息体写完后回填
+    int lenIndex = out.writerIndex();
+    out.writeInt(0);
+
+    int contentStart = out.writerIndex();
+    ScalarCodec.writeVarint(out, id);
+    ScalarCodec.writeVarint(out, ScalarCodec.encodeZigZag(mId) & 0xFFFFFFFFL);
+    writeBody(out, flagIndex, flag, mId, data, type, serializer, scalar, threshold);
+
+    int len = out.writerIndex() - contentStart;
+    // 检查最终发起请求的数据包大小是否超过上限
+    checkArgument(
+        len + HEADER_V2_MAX_LENGTH <= Constants.DEFAULT_PAYLOAD,
+        "数据大小超过上限%sM",
+        Constants.DEFAULT_PAYLOAD / 1024 / 1024);
+    // 回填补齐到4个字节的varint
+    out.setByte(lenIndex, 0x80 | (len & 0x7F));
+    out.setByte(lenIndex + 1, 0x80 | (len >>> 7 & 0x7F));
+    out.setByte(lenIndex + 2, 0x80 | (len >>> 14 & 0x7F));
+    out.setByte(lenIndex + 3, len >>> 21 & 0x7F);
+  }
+
+  /**
+   * 将消息体直接序列化到出站缓冲区，超过阈值时原地压缩并回填压缩标识
+   *
+   * @param out 出站缓冲区
+   * @param flagIndex 协议头中数据包类型的位置
+   * @param flag 数据包类型
+   * @param mId 业务消息编号
+   * @param data 消息体
+   * @param type 绑定类型
+   * @param serializer 序列化器
+   * @param scalar 标量消息体的类型标签
+   * @param threshold 压缩阈值
+   * @throws IOException
+   */
+  private static void writeBody(
+      ByteBuf out,
+      int flagIndex,
+      byte flag,
+      int mId,
+      Object data,
+      Class<?> type,
+      Serializer serializer,
+      byte scalar,
+      int threshold)
+      throws IOException {
+    int bodyStart = out.writerIndex();
+    if (scalar != ScalarCodec.NONE) {
+      ScalarCodec.writeTo(out, data, scalar);
+    } else {
+      serializer.writeTo(out, data, type);
+    }
+
+    // 消息体超过阈值时原地压缩
+    if (threshold != Compression.DISABLED
+        && out.writerIndex() - bodyStart >= threshold
+        && Compression.compress(out, bodyStart, mId)) {
+      out.setByte(flagIndex, flag | FLAG_COMPRESSED);
+    }
+  }
+}
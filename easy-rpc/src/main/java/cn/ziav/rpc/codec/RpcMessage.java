@@ -0,0 +1,21 @@
+package cn.ziav.rpc.codec;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记RPC消息对象
+ *
+ * <p>配合easy-rpc-apt注解处理器使用时，编译期会为被标记的类生成对应的{@link io.protostuff.Schema}实现，
+ * 编解码时自动替代基于反射的RuntimeSchema。字段编号规则与RuntimeSchema相同：按字段声明顺序从1开始，父类字段在前，
+ * 跳过static和transient字段。
+ *
+ * @author Zavi
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface RpcMessage {}
@@ -0,0 +1,178 @@
+package cn.ziav.rpc.codec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import java.io.IOException;
+
+/**
+ * 标量消息体编解码
+ *
+ * <p>消息体为{@link Integer}、{@link Long}、{@link Boolean}、{@link String}等标量时，类型标签写入协议头flag字节的低4位，
+ * 消息体直接按varint或UTF-8写入，不经过{@link Wrapper}和ProtoStuff，也不写类名。
+ *
+ * @author Zavi
+ */
+final class ScalarCodec {
+  /** 非标量，按ProtoStuff编码 */
+  static final byte NONE = 0;
+  /** Integer，zigzag varint */
+  static final byte INT = 1;
+  /** Long，zigzag varint */
+  static final byte LONG = 2;
+  /** Boolean，1个字节 */
+  static final byte BOOLEAN = 3;
+  /** String，UTF-8 */
+  static final byte STRING = 4;
+  /** Double，8个字节 */
+  static final byte DOUBLE = 5;
+  /** Float，4个字节 */
+  static final byte FLOAT = 6;
+
+  /** 标量类型标签的最大值，1~7保留给标量，更大的编号属于扩展序列化器 */
+  static final byte MAX_TAG = 7;
+
+  private ScalarCodec() {}
+
+  /**
+   * 获取消息体的标量类型标签
+   *
+   * @param data 消息体
+   * @return 非标量返回{@link #NONE}
+   */
+  static byte tagOf(Object data) {
+    if (data == null) {
+      return NONE;
+    }
+    // 按类对象比较，比instanceof链更便于JIT内联
+    Class<?> clazz = data.getClass();
+    if (clazz == String.class) {
+      return STRING;
+    }
+    if (clazz == Integer.class) {
+      return INT;
+    }
+    if (clazz == Long.class) {
+      return LONG;
+    }
+    if (clazz == Boolean.class) {
+      return BOOLEAN;
+    }
+    if (clazz == Double.class) {
+      return DOUBLE;
+    }
+    if (clazz == Float.class) {
+      return FLOAT;
+    }
+    return NONE;
+  }
+
+  /**
+   * 将标量写入缓冲区
+   *
+   * @param out 出站缓冲区
+   * @param data 消息体
+   * @param tag 标量类型标签
+   */
+  static void writeTo(ByteBuf out, Object data, byte tag) {
+    switch (tag) {
+      case INT:
+        // 按无符号数写入，避免负数符号扩展成10个字节
+        writeVarint(out, encodeZigZag((Integer) data) & 0xFFFFFFFFL);
+        break;
+      case LONG:
+        writeVarint(out, encodeZigZag((Long) data));
+        break;
+      case BOOLEAN:
+        out.writeBoolean((Boolean) data);
+        break;
+      case STRING:
+        ByteBufUtil.writeUtf8(out, (String) data);
+        break;
+      case DOUBLE:
+        out.writeDouble((Double) data);
+        break;
+      case FLOAT:
+        out.writeFloat((Float) data);
+        break;
+      default:
+        throw new IllegalArgumentException("unknown scalar tag: " + tag);
+    }
+  }
+
+  /**
+   * 从缓冲区读取标量，不移动缓冲区的读写索引
+   *
+   * @param in 入站缓冲区
+   * @param index 消息体起始位置
+   * @param len 消息体长度
+   * @param tag 标量类型标签
+   * @return 消息体
+   * @throws IOException
+   */
+  static Object readFrom(ByteBuf in, int index, int len, byte tag) throws IOException {
+    switch (tag) {
+      case INT:
+        return decodeZigZag((int) readVarint(in, index, len));
+      case LONG:
+        return decodeZigZag(readVarint(in, index, len));
+      case BOOLEAN:
+        checkLength(len, 1);
+        return in.getBoolean(index);
+      case STRING:
+        return len == 0 ? "" : in.toString(index, len, UTF_8);
+      case DOUBLE:
+        checkLength(len, 8);
+        return in.getDouble(index);
+      case FLOAT:
+        checkLength(len, 4);
+        return in.getFloat(index);
+      default:
+        throw new IOException("unknown scalar tag: " + tag);
+    }
+  }
+
+  private static void checkLength(int len, int expected) throws IOException {
+    if (len != expected) {
+      throw new IOException("malformed scalar body, expected " + expected + " bytes but " + len);
+    }
+  }
+
+  static void writeVarint(ByteBuf out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte(((int) value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarint(ByteBuf in, int index, int len) throws IOException {
+    long result = 0;
+    for (int i = 0, shift = 0; i < len && shift < 64; i++, shift += 7) {
+      byte b = in.getByte(index + i);
+      result |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        checkLength(len, i + 1);
+        return result;
+      }
+    }
+    throw new IOException("malformed varint");
+  }
+
+  static int encodeZigZag(int n) {
+    return (n << 1) ^ (n >> 31);
+  }
+
+  private static long encodeZigZag(long n) {
+    return (n << 1) ^ (n >> 63);
+  }
+
+  static int decodeZigZag(int n) {
+    return (n >>> 1) ^ -(n & 1);
+  }
+
+  private static long decodeZigZag(long n) {
+    return (n >>> 1) ^ -(n & 1);
+  }
+}
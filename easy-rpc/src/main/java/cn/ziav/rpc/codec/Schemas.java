@@ -0,0 +1,97 @@
+package cn.ziav.rpc.codec;
+
+import io.protostuff.Input;
+import io.protostuff.Output;
+import io.protostuff.Schema;
+import io.protostuff.runtime.ObjectSchema;
+import io.protostuff.runtime.RuntimeEnv;
+import io.protostuff.runtime.RuntimeSchema;
+import java.io.IOException;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schema查找入口
+ *
+ * <p>首次使用时通过{@link ServiceLoader}加载编译期生成的Schema（见{@link RpcMessage}）并注册到ProtoStuff，
+ * 之后无论是按绑定类型编解码，还是通过{@link Wrapper}多态编解码，都会使用生成的Schema，不再走反射。
+ *
+ * @author Zavi
+ */
+public final class Schemas {
+  private static final Logger logger = LoggerFactory.getLogger(Schemas.class);
+
+  /** RuntimeSchema编码Object类型字段时使用的多态Schema，读取的值写入owner数组的第一个元素 */
+  private static final ObjectSchema DYNAMIC =
+      new ObjectSchema(RuntimeEnv.ID_STRATEGY) {
+        @Override
+        protected void setValue(Object value, Object owner) {
+          ((Object[]) owner)[0] = value;
+        }
+      };
+
+  static {
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    if (classLoader == null) {
+      classLoader = Schemas.class.getClassLoader();
+    }
+    try {
+      for (Schema<?> schema : ServiceLoader.load(Schema.class, classLoader)) {
+        register(schema);
+      }
+    } catch (ServiceConfigurationError e) {
+      logger.error("load generated schemas failed", e);
+    }
+  }
+
+  private Schemas() {}
+
+  @SuppressWarnings("unchecked")
+  private static <T> void register(Schema<T> schema) {
+    Class<T> type = (Class<T>) schema.typeClass();
+    if (RuntimeSchema.register(type, schema)) {
+      logger.debug("generated schema registered, type={}", type.getName());
+    } else {
+      logger.warn("schema of {} already exists, generated schema ignored", type.getName());
+    }
+  }
+
+  /**
+   * 获取类型的Schema，优先使用编译期生成的Schema
+   *
+   * @param type 类型
+   * @return Schema
+   */
+  public static <T> Schema<T> getSchema(Class<T> type) {
+    return RuntimeSchema.getSchema(type);
+  }
+
+  /**
+   * 以多态方式写入一个字段，供生成的Schema处理声明类型不确定的字段，编码与RuntimeSchema中Object类型的字段相同
+   *
+   * @param output 输出
+   * @param number 字段编号
+   * @param value 字段值
+   * @param repeated 是否为重复字段
+   * @throws IOException
+   */
+  public static void writeDynamic(Output output, int number, Object value, boolean repeated)
+      throws IOException {
+    output.writeObject(number, value, DYNAMIC, repeated);
+  }
+
+  /**
+   * 读取以多态方式写入的字段
+   *
+   * @param input 输入
+   * @return 字段值
+   * @throws IOException
+   */
+  public static Object readDynamic(Input input) throws IOException {
+    Object[] holder = new Object[1];
+    input.mergeObject(holder, DYNAMIC);
+    return holder[0];
+  }
+}
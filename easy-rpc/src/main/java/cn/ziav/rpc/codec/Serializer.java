@@ -0,0 +1,64 @@
+package cn.ziav.rpc.codec;
+
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+
+/**
+ * 消息体序列化器
+ *
+ * <p>序列化器编号随每个数据包写入协议头flag字节的低4位，解码时按编号选择序列化器，因此通信双方只需都能加载该序列化器，
+ * 不需要事先约定每个消息id的序列化方式。编号0为默认的ProtoStuff图序列化，1~7保留给标量消息体，扩展序列化器使用8~15，
+ * 自定义实现可通过{@link Serializers#register(Serializer)}或{@code
+ * META-INF/services/cn.ziav.rpc.codec.Serializer}注册。
+ *
+ * @author Zavi
+ */
+public interface Serializer {
+  /** ProtoStuff图序列化，支持循环引用 */
+  int PROTOSTUFF_GRAPH = 0;
+
+  /** 原始字节数组，消息体必须为byte[] */
+  int BYTES = 8;
+
+  /** ProtoStuff非图序列化，不支持循环引用 */
+  int PROTOSTUFF = 9;
+
+  /**
+   * 序列化器编号
+   *
+   * @return 取值范围[8, 15]，内置的ProtoStuff图序列化为0
+   */
+  int id();
+
+  /**
+   * 是否支持序列化该消息体，不支持时（如异常响应）退回默认的ProtoStuff图序列化
+   *
+   * @param data 消息体，可能为null
+   * @return
+   */
+  default boolean support(Object data) {
+    return true;
+  }
+
+  /**
+   * 将消息体序列化到缓冲区
+   *
+   * @param out 出站缓冲区
+   * @param data 消息体
+   * @param type 消息id绑定的具体类型，data的实际类型与之一致；为null时需要自行写入类型信息
+   * @throws IOException
+   */
+  void writeTo(ByteBuf out, Object data, Class<?> type) throws IOException;
+
+  /**
+   * 从缓冲区反序列化消息体，不移动缓冲区的读写索引
+   *
+   * @param in 入站缓冲区
+   * @param index 消息体起始位置
+   * @param len 消息体长度
+   * @param type 消息id绑定的具体类型，为null时按序列化时写入的类型信息解析
+   * @return 消息体
+   * @throws IOException
+   */
+  Object readFrom(ByteBuf in, int index, int len, Class<?> type) throws IOException;
+}
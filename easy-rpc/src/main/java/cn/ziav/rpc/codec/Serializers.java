@@ -0,0 +1,71 @@
+package cn.ziav.rpc.codec;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ServiceLoader;
+
+/**
+ * 序列化器注册表，按编号索引
+ *
+ * @author Zavi
+ */
+public final class Serializers {
+  /** 扩展序列化器的最小编号，更小的编号保留给默认序列化器和标量消息体 */
+  private static final int MIN_EXTENSION_ID = 8;
+
+  /** 编号最多占用4位 */
+  private static final int MAX_ID = 15;
+
+  /** 下标即编号 */
+  private static final Serializer[] SERIALIZERS = new Serializer[MAX_ID + 1];
+
+  /** 默认序列化器 */
+  private static final Serializer DEFAULT = new ProtostuffSerializer(true);
+
+  static {
+    SERIALIZERS[DEFAULT.id()] = DEFAULT;
+    register(new BytesSerializer());
+    register(new ProtostuffSerializer(false));
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    if (classLoader == null) {
+      classLoader = Serializers.class.getClassLoader();
+    }
+    for (Serializer serializer : ServiceLoader.load(Serializer.class, classLoader)) {
+      register(serializer);
+    }
+  }
+
+  private Serializers() {}
+
+  /**
+   * 注册扩展序列化器
+   *
+   * @param serializer 序列化器
+   */
+  public static synchronized void register(Serializer serializer) {
+    int id = serializer.id();
+    checkArgument(id >= MIN_EXTENSION_ID && id <= MAX_ID, "序列化器编号超出范围[8, 15]：%s", id);
+    Serializer pre = SERIALIZERS[id];
+    checkArgument(
+        pre == null || pre.getClass() == serializer.getClass(),
+        "序列化器编号%s已被%s占用",
+        id,
+        pre == null ? null : pre.getClass().getName());
+    SERIALIZERS[id] = serializer;
+  }
+
+  /**
+   * 按编号获取序列化器
+   *
+   * @param id 编号
+   * @return 未注册时返回null
+   */
+  public static Serializer get(int id) {
+    return id >= 0 && id <= MAX_ID ? SERIALIZERS[id] : null;
+  }
+
+  /** @return 默认的ProtoStuff图序列化器 */
+  public static Serializer getDefault() {
+    return DEFAULT;
+  }
+}
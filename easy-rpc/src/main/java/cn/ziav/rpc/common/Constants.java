@@ -0,0 +1,81 @@
+package cn.ziav.rpc.common;
+
+import cn.ziav.rpc.utils.Bytes;
+
+/** @author Zavi */
+public interface Constants {
+  /** 默认IO线程池数 */
+  int DEFAULT_IO_THREADS = Math.min(Runtime.getRuntime().availableProcessors() + 1, 32);
+
+  /** 默认回调线程池线程数 */
+  int DEFAULT_CALLBACK_THREADS = Math.min(Runtime.getRuntime().availableProcessors() * 2, 64);
+  /** 默认回调线程池队列长度，队列满时回调在IO线程中执行 */
+  int DEFAULT_CALLBACK_QUEUE_SIZE = 64 * 1024;
+
+  /** 默认心跳时间 */
+  int DEFAULT_HEARTBEAT = 60 * 1000;
+  /** 8M */
+  int DEFAULT_PAYLOAD = 8 * 1024 * 1024;
+
+  /** v1协议头长度 */
+  int HEADER_LENGTH = 20;
+  /** 魔数 */
+  short MAGIC = (short) 0xdabb;
+
+  byte MAGIC_HIGH = Bytes.short2bytes(MAGIC)[0];
+  byte MAGIC_LOW = Bytes.short2bytes(MAGIC)[1];
+
+  /**
+   * v2紧凑协议头魔数，位于数据包首字节。v1数据包以4个字节的小端长度开头，由于长度不超过{@link #DEFAULT_PAYLOAD}，
+   * 第4个字节恒为0；而v2数据包的第4个字节是剩余长度（varint）的首字节，至少包含请求编号和业务消息编号，恒不为0，以此区分两个版本
+   */
+  byte MAGIC_V2 = (byte) 0xdb;
+  /** v2协议头最大长度：魔数、数据包类型、状态码各1个字节，剩余长度最多4个字节，请求编号最多10个字节，业务消息编号最多5个字节 */
+  int HEADER_V2_MAX_LENGTH = 1 + 1 + 1 + 4 + 10 + 5;
+  /** 请求标识 */
+  byte FLAG_REQUEST = (byte) 0x80;
+  /** 往返请求标识 */
+  byte FLAG_TWOWAY = (byte) 0x40;
+  /** 消息体按绑定的具体类型编码，不含类名 */
+  byte FLAG_TYPED = (byte) 0x20;
+  /** 消息体经过压缩，只有协商确认对端支持时才会设置 */
+  byte FLAG_COMPRESSED = (byte) 0x10;
+  /** 低4位为消息体序列化方式：0为默认的ProtoStuff，1~7为标量消息体的类型标签，8~15为扩展序列化器 */
+  byte MASK_SERIALIZER = (byte) 0x0F;
+
+  /** 请求选项（复用请求协议头的状态码字节）：请求方接受按绑定类型编码的响应体 */
+  byte OPT_TYPED_RESPONSE = (byte) 0x01;
+  /** 请求选项高4位：请求方为响应体指定的序列化器编号 */
+  byte MASK_RESPONSE_SERIALIZER = (byte) 0xF0;
+
+  /** 握手消息id，用于连接建立后协商对端支持的协议特性（心跳为-1） */
+  int HANDSHAKE_MSG_ID = -2;
+
+  /** 默认客户端连接超时 */
+  int DEFAULT_CONNECT_TIMEOUT = 3000;
+  /** 默认出站缓冲区低水位（字节），缓冲区降到低水位以下时连接恢复可写 */
+  int DEFAULT_WRITE_BUFFER_LOW_WATER_MARK = 256 * 1024;
+  /** 默认出站缓冲区高水位（字节），缓冲区超过高水位时连接不可写 */
+  int DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK = 1024 * 1024;
+  /** 默认每个连接不可写时暂存的请求数上限 */
+  int DEFAULT_WRITE_QUEUE_SIZE = 1024;
+  /** 默认每个节点的连接数 */
+  int DEFAULT_CONNECTIONS_PER_NODE = 1;
+  /** 新发现节点预连接的最大随机延迟（毫秒），避免所有客户端同时连接同一个节点 */
+  int PREWARM_JITTER = 200;
+  /** 后台重连的初始退避时间（毫秒） */
+  int RECONNECT_MIN_BACKOFF = 100;
+  /** 后台重连的最大退避时间（毫秒） */
+  int RECONNECT_MAX_BACKOFF = 30 * 1000;
+  /** 节点延迟估计的衰减时间常数（毫秒），越小越快跟随节点延迟的变化 */
+  int LATENCY_DECAY_TIME = 10 * 1000;
+  /** 没有发布权重的节点（旧版本服务端）的路由权重，服务端默认以处理器核数作为权重 */
+  int DEFAULT_WEIGHT = 1;
+  /** 空闲连接检查周期（毫秒） */
+  int IDLE_CHECK_INTERVAL = 1000;
+
+  /** ZK默认连接超时 */
+  int ZK_SESSION_TIMEOUT = 5000;
+
+  String ZK_REGISTRY_PATH = "/easy-rpc";
+}
@@ -0,0 +1,60 @@
+package cn.ziav.rpc.common;
+
+import cn.ziav.rpc.codec.LazyBody;
+import cn.ziav.rpc.utils.IdGenerator;
+import java.io.IOException;
+
+/** @author Zavi */
+public class MsgRequest<T> {
+  public long id;
+  /** 消息id */
+  public int mId;
+
+  /** 是否为双向请求 */
+  public boolean mTwoWay = true;
+
+  /** 请求方是否接受按绑定类型编码的响应体 */
+  public boolean mTypedResponse;
+
+  /** 请求方为响应体指定的序列化器编号 */
+  public byte mSerializer;
+
+  public T mData;
+
+  /** 尚未反序列化的请求体，在首次访问时才解析 */
+  public LazyBody mBody;
+
+  public MsgRequest(long id, int mId) {
+    this.id = id;
+    this.mId = mId;
+  }
+
+  public MsgRequest() {
+    this.id = IdGenerator.next();
+  }
+
+  /**
+   * 获取请求体，若请求体尚未反序列化则在当前线程完成反序列化
+   *
+   * @return 请求体
+   * @throws IOException 反序列化失败
+   */
+  @SuppressWarnings("unchecked")
+  public T getData() throws IOException {
+    LazyBody body = mBody;
+    if (body != null) {
+      mBody = null;
+      mData = (T) body.decode();
+    }
+    return mData;
+  }
+
+  /** 丢弃并释放尚未反序列化的请求体 */
+  public void release() {
+    LazyBody body = mBody;
+    if (body != null) {
+      mBody = null;
+      body.release();
+    }
+  }
+}
@@ -1,5 +1,8 @@
 package cn.ziav.rpc.common;
 
+import cn.ziav.rpc.codec.LazyBody;
+import java.io.IOException;
+
 /** @author Zavi */
 public class MsgResponse<R> {
   /** ok. */
@@ -40,8 +43,17 @@ public class MsgResponse<R> {
 
   public R mData;
 
+  /** 尚未反序列化的响应体，在首次访问时才解析 */
+  public LazyBody mBody;
+
   public byte mStatus = OK;
 
+  /** 是否允许按绑定类型编码响应体，取决于请求方是否接受 */
+  public boolean mTyped;
+
+  /** 本端未指定序列化器时编码响应体使用的序列化器编号，由请求方指定 */
+  public byte mSerializer;
+
   public MsgResponse(long id, int mId) {
     this.id = id;
     this.mId = mId;
@@ -52,4 +64,29 @@ public class MsgResponse<R> {
     this.mId = mId;
     this.mData = mData;
   }
+
+  /**
+   * 获取响应体，若响应体尚未反序列化则在当前线程完成反序列化
+   *
+   * @return 响应体
+   * @throws IOException 反序列化失败
+   */
+  @SuppressWarnings("unchecked")
+  public R getData() throws IOException {
+    LazyBody body = mBody;
+    if (body != null) {
+      mBody = null;
+      mData = (R) body.decode();
+    }
+    return mData;
+  }
+
+  /** 丢弃并释放尚未反序列化的响应体 */
+  public void release() {
+    LazyBody body = mBody;
+    if (body != null) {
+      mBody = null;
+      body.release();
+    }
+  }
 }
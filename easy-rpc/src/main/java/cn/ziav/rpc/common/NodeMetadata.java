@@ -0,0 +1,118 @@
+package cn.ziav.rpc.common;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 服务端注册到ZooKeeper的节点元数据，作为临时节点/easy-rpc/{topic}/{ip:port}的数据发布
+ *
+ * <p>编码为逗号分隔的键值对文本，如{@code weight=8,cores=8}，可直接用zkCli查看和修改。解码时忽略不认识的键和无法解析的值，
+ * 没有数据的节点（旧版本服务端）使用{@link Constants#DEFAULT_WEIGHT}。
+ *
+ * @author Zavi
+ */
+public final class NodeMetadata {
+  /** 没有发布元数据的节点 */
+  public static final NodeMetadata DEFAULT = new NodeMetadata(Constants.DEFAULT_WEIGHT, 0);
+
+  private static final String WEIGHT = "weight";
+
+  private static final String CORES = "cores";
+
+  /** 路由权重，为0时不参与加权选择 */
+  private final int weight;
+
+  /** 服务端的处理器核数，未知时为0 */
+  private final int cores;
+
+  /**
+   * @param weight 路由权重，不小于0
+   * @param cores 处理器核数，未知时为0
+   */
+  public NodeMetadata(int weight, int cores) {
+    if (weight < 0) {
+      throw new IllegalArgumentException("weight must not be negative: " + weight);
+    }
+    this.weight = weight;
+    this.cores = Math.max(cores, 0);
+  }
+
+  /** @return 路由权重 */
+  public int weight() {
+    return weight;
+  }
+
+  /** @return 处理器核数，未知时为0 */
+  public int cores() {
+    return cores;
+  }
+
+  /** @return 编码后的节点数据 */
+  public byte[] encode() {
+    return toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * 解码节点数据
+   *
+   * @param data 节点数据，可为null
+   * @return 元数据，没有权重时使用核数，都没有时为{@link #DEFAULT}
+   */
+  public static NodeMetadata decode(byte[] data) {
+    if (data == null || data.length == 0) {
+      return DEFAULT;
+    }
+    int weight = -1;
+    int cores = 0;
+    for (String pair : new String(data, StandardCharsets.UTF_8).split(",")) {
+      int i = pair.indexOf('=');
+      if (i < 0) {
+        continue;
+      }
+      String key = pair.substring(0, i).trim();
+      int value = parse(pair.substring(i + 1).trim());
+      if (value < 0) {
+        continue;
+      }
+      if (WEIGHT.equals(key)) {
+        weight = value;
+      } else if (CORES.equals(key)) {
+        cores = value;
+      }
+    }
+    if (weight < 0) {
+      weight = cores > 0 ? cores : Constants.DEFAULT_WEIGHT;
+    }
+    return new NodeMetadata(weight, cores);
+  }
+
+  /** @return 无法解析时为-1 */
+  private static int parse(String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof NodeMetadata)) {
+      return false;
+    }
+    NodeMetadata that = (NodeMetadata) o;
+    return weight == that.weight && cores == that.cores;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * weight + cores;
+  }
+
+  @Override
+  public String toString() {
+    return WEIGHT + "=" + weight + "," + CORES + "=" + cores;
+  }
+}
@@ -14,6 +14,12 @@ public interface ExceptionCode {
   int CLIENT_HAS_CLOSED = -5;
   /** 没有对应的handler */
   int NO_SUCH_HANDLER = -6;
+  /** 服务端业务线程池已满 */
+  int THREADPOOL_EXHAUSTED = -7;
+  /** 连接已断开 */
+  int CHANNEL_INACTIVE = -8;
+  /** 连接不可写，请求未能发送 */
+  int CHANNEL_UNWRITABLE = -9;
   /** 未知错误 */
   int UNKNOWN_ERROR = -255;
 }
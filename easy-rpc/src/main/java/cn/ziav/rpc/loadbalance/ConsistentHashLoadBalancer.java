@@ -0,0 +1,224 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一致性哈希（ketama）：每个节点在哈希环上放置若干虚拟节点，路由键顺时针落到第一个虚拟节点所属的节点上
+ *
+ * <p>节点上下线时只有落在该节点虚拟节点上的键会移动，其余键的路由保持不变。哈希环按节点快照的版本重建：
+ * 保留仍在线节点的虚拟节点，只为新节点计算MD5，与已排序的环线性归并。查找为二分查找，不分配对象。
+ *
+ * <p>哈希环跟随单个客户端的节点快照版本，每个客户端使用独立的实例。
+ *
+ * @author Zavi
+ */
+public class ConsistentHashLoadBalancer implements LoadBalancer {
+  /** 默认每个节点的虚拟节点数 */
+  public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+  /** 每个节点的虚拟节点数，每次MD5得到4个 */
+  private final int virtualNodes;
+
+  private volatile Ring ring = Ring.EMPTY;
+
+  public ConsistentHashLoadBalancer() {
+    this(DEFAULT_VIRTUAL_NODES);
+  }
+
+  /** @param virtualNodes 每个节点的虚拟节点数，向上取整到4的倍数 */
+  public ConsistentHashLoadBalancer(int virtualNodes) {
+    if (virtualNodes <= 0) {
+      throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+    }
+    this.virtualNodes = (virtualNodes + 3) & ~3;
+  }
+
+  @Override
+  public ServerNode select(NodeSnapshot snapshot, Object key) {
+    Ring ring = this.ring;
+    if (ring.version != snapshot.version()) {
+      ring = rebuild(snapshot);
+    }
+    return ring.locate(hash(key));
+  }
+
+  @Override
+  public void nodesChanged(NodeSnapshot snapshot) {
+    rebuild(snapshot);
+  }
+
+  /**
+   * 按新的节点快照增量重建哈希环
+   *
+   * @param snapshot 节点快照
+   * @return 新的哈希环
+   */
+  private synchronized Ring rebuild(NodeSnapshot snapshot) {
+    Ring old = this.ring;
+    // 已经按同一个或更新的快照重建过，读到旧快照的调用直接使用新的哈希环
+    if (snapshot.version() <= old.version) {
+      return old;
+    }
+    ServerNode[] nodes = snapshot.nodes().toArray(new ServerNode[0]);
+    Map<String, Integer> indexes = new HashMap<>();
+    for (int i = 0; i < nodes.length; i++) {
+      indexes.put(nodes[i].addr, i);
+    }
+    // 旧环上的节点下标到新下标的映射，已下线的为-1
+    int[] remap = new int[old.nodes.length];
+    int kept = 0;
+    for (int i = 0; i < remap.length; i++) {
+      Integer index = indexes.get(old.nodes[i].addr);
+      remap[i] = index == null ? -1 : index;
+      if (index != null) {
+        kept++;
+      }
+    }
+
+    // 新节点的虚拟节点：高32位为哈希，低32位为节点下标，排序后按哈希有序
+    long[] addedPoints = new long[(nodes.length - kept) * virtualNodes];
+    MessageDigest md5 = md5();
+    int k = 0;
+    for (int i = 0; i < nodes.length; i++) {
+      if (old.indexes.containsKey(nodes[i].addr)) {
+        continue;
+      }
+      for (int point : points(md5, nodes[i].addr)) {
+        addedPoints[k++] = ((long) point << 32) | i;
+      }
+    }
+    Arrays.sort(addedPoints);
+
+    // 与仍在线节点的虚拟节点归并，新旧虚拟节点哈希相同时按节点下标排列，与全量构建的顺序一致
+    int size = nodes.length * virtualNodes;
+    int[] points = new int[size];
+    int[] owners = new int[size];
+    int n = 0;
+    int a = 0;
+    for (int i = 0; i < old.points.length; i++) {
+      int owner = remap[old.owners[i]];
+      if (owner < 0) {
+        continue;
+      }
+      long point = ((long) old.points[i] << 32) | owner;
+      while (a < addedPoints.length && addedPoints[a] < point) {
+        points[n] = (int) (addedPoints[a] >> 32);
+        owners[n++] = (int) addedPoints[a++];
+      }
+      points[n] = old.points[i];
+      owners[n++] = owner;
+    }
+    for (; a < addedPoints.length; a++) {
+      points[n] = (int) (addedPoints[a] >> 32);
+      owners[n++] = (int) addedPoints[a];
+    }
+    Ring ring = new Ring(snapshot.version(), points, owners, nodes, indexes);
+    this.ring = ring;
+    return ring;
+  }
+
+  /**
+   * 计算节点的虚拟节点哈希
+   *
+   * @param md5 MD5
+   * @param addr 节点地址
+   * @return 虚拟节点哈希，翻转了符号位，按有符号整数比较即为无符号顺序
+   */
+  private int[] points(MessageDigest md5, String addr) {
+    int[] points = new int[virtualNodes];
+    for (int i = 0; i < virtualNodes / 4; i++) {
+      byte[] digest = md5.digest((addr + "-" + i).getBytes(StandardCharsets.UTF_8));
+      for (int j = 0; j < 4; j++) {
+        int h =
+            (digest[3 + j * 4] & 0xFF) << 24
+                | (digest[2 + j * 4] & 0xFF) << 16
+                | (digest[1 + j * 4] & 0xFF) << 8
+                | (digest[j * 4] & 0xFF);
+        points[i * 4 + j] = h ^ Integer.MIN_VALUE;
+      }
+    }
+    return points;
+  }
+
+  /**
+   * 打散路由键的哈希值（MurmurHash3的fmix32），不分配对象
+   *
+   * @param key 路由键，可为null
+   * @return 翻转了符号位的哈希值
+   */
+  static int hash(Object key) {
+    int h = key == null ? 0 : key.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h ^ Integer.MIN_VALUE;
+  }
+
+  private static MessageDigest md5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** 不可变的哈希环 */
+  private static final class Ring {
+    private static final Ring EMPTY =
+        new Ring(-1, new int[0], new int[0], new ServerNode[0], new HashMap<>());
+
+    /** 对应的节点快照版本 */
+    private final long version;
+
+    /** 按升序排列的虚拟节点哈希 */
+    private final int[] points;
+
+    /** 虚拟节点所属节点的下标 */
+    private final int[] owners;
+
+    /** 环上的节点 */
+    private final ServerNode[] nodes;
+
+    /** <addr, 节点下标> */
+    private final Map<String, Integer> indexes;
+
+    private Ring(
+        long version, int[] points, int[] owners, ServerNode[] nodes, Map<String, Integer> indexes) {
+      this.version = version;
+      this.points = points;
+      this.owners = owners;
+      this.nodes = nodes;
+      this.indexes = indexes;
+    }
+
+    /**
+     * @param h 路由键哈希
+     * @return 顺时针第一个虚拟节点所属的节点，环为空时为null
+     */
+    private ServerNode locate(int h) {
+      int n = points.length;
+      if (n == 0) {
+        return null;
+      }
+      int lo = 0;
+      int hi = n;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (points[mid] < h) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return nodes[owners[lo == n ? 0 : lo]];
+    }
+  }
+}
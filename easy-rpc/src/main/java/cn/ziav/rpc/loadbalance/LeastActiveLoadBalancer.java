@@ -0,0 +1,36 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 最少在途请求（二选一）：随机抽取两个不同的节点，选择{@link ServerNode#inFlight()}较少的一个。
+ *
+ * <p>只比较两个节点，开销与随机相当，又能避开积压的节点；不像全量比较那样让所有调用线程同时涌向同一个最空闲的节点。
+ * 两个节点中只有一个可写时选择可写的节点。不分配对象
+ *
+ * @author Zavi
+ */
+public class LeastActiveLoadBalancer implements LoadBalancer {
+  @Override
+  public ServerNode select(NodeSnapshot snapshot, Object key) {
+    int size = snapshot.size();
+    if (size <= 1) {
+      return size == 0 ? null : snapshot.get(0);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int i = random.nextInt(size);
+    // 在其余size-1个节点中抽取第二个，保证两个节点不同
+    int j = random.nextInt(size - 1);
+    if (j >= i) {
+      j++;
+    }
+    ServerNode a = snapshot.get(i);
+    ServerNode b = snapshot.get(j);
+    boolean writable = a.isWritable();
+    if (writable != b.isWritable()) {
+      return writable ? a : b;
+    }
+    return b.inFlight() < a.inFlight() ? b : a;
+  }
+}
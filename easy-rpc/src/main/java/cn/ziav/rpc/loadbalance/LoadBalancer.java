@@ -0,0 +1,29 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+
+/**
+ * 负载均衡策略
+ *
+ * <p>每次调用前根据服务发现发布的节点快照选择一个节点。选择在调用线程中进行，实现不能加锁，也不应分配对象；
+ * 需要根据节点列表预先计算的结构（如哈希环）可以按{@link NodeSnapshot#version()}缓存，节点列表变化时再重建。
+ *
+ * @author Zavi
+ */
+public interface LoadBalancer {
+  /**
+   * 选择节点
+   *
+   * @param snapshot 当前的节点快照
+   * @param key 路由键，不需要路由键的策略忽略该参数，可为null
+   * @return 选中的节点，快照中没有节点时为null
+   */
+  ServerNode select(NodeSnapshot snapshot, Object key);
+
+  /**
+   * 服务发现发布了新的节点快照，在更新节点列表的线程中调用，可在这里提前重建缓存的结构，避免由第一次调用承担重建的开销
+   *
+   * @param snapshot 新的节点快照
+   */
+  default void nodesChanged(NodeSnapshot snapshot) {}
+}
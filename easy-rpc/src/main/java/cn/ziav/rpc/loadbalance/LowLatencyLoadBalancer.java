@@ -0,0 +1,33 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+
+/**
+ * 最佳响应：选择{@link ServerNode#score(long)}最低的节点，即峰值EWMA延迟估计乘以（在途请求数+1）最低的节点。
+ * 跳过连接不可写的节点，所有节点都不可写时再从全部节点中选择。不分配对象
+ *
+ * @author Zavi
+ */
+public class LowLatencyLoadBalancer implements LoadBalancer {
+  @Override
+  public ServerNode select(NodeSnapshot snapshot, Object key) {
+    ServerNode best = null;
+    boolean bestWritable = false;
+    double bestScore = Double.MAX_VALUE;
+    long now = System.nanoTime();
+    for (int i = 0, size = snapshot.size(); i < size; i++) {
+      ServerNode node = snapshot.get(i);
+      boolean writable = node.isWritable();
+      if (bestWritable && !writable) {
+        continue;
+      }
+      double score = node.score(now);
+      if (writable != bestWritable || score < bestScore) {
+        best = node;
+        bestWritable = writable;
+        bestScore = score;
+      }
+    }
+    return best;
+  }
+}
@@ -0,0 +1,60 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 不可变的节点快照，由服务发现在节点列表变化时整体替换发布，负载均衡读取时不需要加锁
+ *
+ * <p>节点按地址排序，同一节点列表在所有客户端上的顺序相同。
+ *
+ * @author Zavi
+ */
+public final class NodeSnapshot {
+  /** 没有节点的初始快照 */
+  public static final NodeSnapshot EMPTY = new NodeSnapshot(0, Collections.emptyList());
+
+  private final long version;
+
+  private final ServerNode[] nodes;
+
+  private final List<ServerNode> nodeList;
+
+  /**
+   * @param version 版本号，节点列表或节点权重每变化一次加1
+   * @param nodes 节点
+   */
+  public NodeSnapshot(long version, Collection<ServerNode> nodes) {
+    this.version = version;
+    this.nodes = nodes.toArray(new ServerNode[0]);
+    Arrays.sort(this.nodes, Comparator.comparing(node -> node.addr));
+    this.nodeList = Collections.unmodifiableList(Arrays.asList(this.nodes));
+  }
+
+  /** @return 版本号 */
+  public long version() {
+    return version;
+  }
+
+  /** @return 节点数 */
+  public int size() {
+    return nodes.length;
+  }
+
+  /**
+   * @param index 下标
+   * @return 节点
+   */
+  public ServerNode get(int index) {
+    return nodes[index];
+  }
+
+  /** @return 按地址排序的节点，不可修改 */
+  public List<ServerNode> nodes() {
+    return nodeList;
+  }
+}
@@ -0,0 +1,20 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 随机
+ *
+ * @author Zavi
+ */
+public class RandomLoadBalancer implements LoadBalancer {
+  @Override
+  public ServerNode select(NodeSnapshot snapshot, Object key) {
+    int size = snapshot.size();
+    if (size == 0) {
+      return null;
+    }
+    return snapshot.get(ThreadLocalRandom.current().nextInt(size));
+  }
+}
@@ -0,0 +1,23 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 轮询，使用原子计数器，节点列表变化时从当前计数继续
+ *
+ * @author Zavi
+ */
+public class RoundRobinLoadBalancer implements LoadBalancer {
+  private final AtomicInteger counter = new AtomicInteger();
+
+  @Override
+  public ServerNode select(NodeSnapshot snapshot, Object key) {
+    int size = snapshot.size();
+    if (size == 0) {
+      return null;
+    }
+    // 计数溢出后去掉符号位继续轮询
+    return snapshot.get((counter.getAndIncrement() & Integer.MAX_VALUE) % size);
+  }
+}
@@ -0,0 +1,82 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 加权随机：按{@link ServerNode#weight()}成比例地随机选择节点，权重为0的节点不会被选中
+ *
+ * <p>按节点快照的版本预先计算权重的前缀和，选择时二分查找，不分配对象。服务端修改权重后客户端发布新版本的快照，
+ * 下一次选择时重新计算。
+ *
+ * @author Zavi
+ */
+public class WeightedRandomLoadBalancer implements LoadBalancer {
+  private volatile Table table = Table.EMPTY;
+
+  @Override
+  public ServerNode select(NodeSnapshot snapshot, Object key) {
+    Table table = this.table;
+    if (table.version != snapshot.version()) {
+      table = rebuild(snapshot);
+    }
+    long[] bounds = table.bounds;
+    int size = bounds.length;
+    if (size == 0) {
+      return null;
+    }
+    long r = ThreadLocalRandom.current().nextLong(bounds[size - 1]);
+    // 第一个前缀和大于r的节点
+    int i = Arrays.binarySearch(bounds, r);
+    return table.nodes[i >= 0 ? i + 1 : -i - 1];
+  }
+
+  @Override
+  public void nodesChanged(NodeSnapshot snapshot) {
+    rebuild(snapshot);
+  }
+
+  private synchronized Table rebuild(NodeSnapshot snapshot) {
+    Table old = this.table;
+    if (snapshot.version() <= old.version) {
+      return old;
+    }
+    int[] weights = Weights.of(snapshot);
+    ServerNode[] nodes = new ServerNode[weights.length];
+    long[] bounds = new long[weights.length];
+    int n = 0;
+    long total = 0;
+    for (int i = 0; i < weights.length; i++) {
+      if (weights[i] > 0) {
+        total += weights[i];
+        nodes[n] = snapshot.get(i);
+        bounds[n++] = total;
+      }
+    }
+    Table table =
+        new Table(snapshot.version(), Arrays.copyOf(nodes, n), Arrays.copyOf(bounds, n));
+    this.table = table;
+    return table;
+  }
+
+  /** 不可变的权重表 */
+  private static final class Table {
+    private static final Table EMPTY = new Table(-1, new ServerNode[0], new long[0]);
+
+    /** 对应的节点快照版本 */
+    private final long version;
+
+    /** 权重大于0的节点 */
+    private final ServerNode[] nodes;
+
+    /** 权重的前缀和，严格递增 */
+    private final long[] bounds;
+
+    private Table(long version, ServerNode[] nodes, long[] bounds) {
+      this.version = version;
+      this.nodes = nodes;
+      this.bounds = bounds;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 平滑加权轮询：按{@link ServerNode#weight()}成比例地轮流选择节点，权重为0的节点不会被选中
+ *
+ * <p>节点列表和权重只在快照版本变化时改变，因此按版本预先生成一整个周期的调度序列，选择时只需要一次原子自增，
+ * 不加锁也不分配对象。周期内节点第k次被选中的虚拟时间为(k-0.5)/权重，按虚拟时间先后排列，权重大的节点穿插在其他节点之间，
+ * 而不是集中在一起被选中，任意一段序列中各节点的次数都接近权重的比例。权重先除以最大公约数，周期仍超过{@link #MAX_PERIOD}时按比例缩小，
+ * 每个节点至少保留1。
+ *
+ * <p>轮询计数按实例独立，每个客户端使用独立的实例。
+ *
+ * @author Zavi
+ */
+public class WeightedRoundRobinLoadBalancer implements LoadBalancer {
+  /** 调度序列的最大长度 */
+  public static final int MAX_PERIOD = 1 << 14;
+
+  private final AtomicInteger counter = new AtomicInteger();
+
+  private volatile Schedule schedule = Schedule.EMPTY;
+
+  @Override
+  public ServerNode select(NodeSnapshot snapshot, Object key) {
+    Schedule schedule = this.schedule;
+    if (schedule.version != snapshot.version()) {
+      schedule = rebuild(snapshot);
+    }
+    ServerNode[] sequence = schedule.sequence;
+    if (sequence.length == 0) {
+      return null;
+    }
+    // 计数溢出后去掉符号位继续轮询
+    return sequence[(counter.getAndIncrement() & Integer.MAX_VALUE) % sequence.length];
+  }
+
+  @Override
+  public void nodesChanged(NodeSnapshot snapshot) {
+    rebuild(snapshot);
+  }
+
+  private synchronized Schedule rebuild(NodeSnapshot snapshot) {
+    Schedule old = this.schedule;
+    if (snapshot.version() <= old.version) {
+      return old;
+    }
+    int[] weights = Weights.of(snapshot);
+    int gcd = 0;
+    long total = 0;
+    for (int weight : weights) {
+      gcd = gcd(gcd, weight);
+      total += weight;
+    }
+    if (gcd > 1) {
+      total /= gcd;
+    }
+    long scaled = 0;
+    for (int i = 0; i < weights.length; i++) {
+      if (weights[i] == 0) {
+        continue;
+      }
+      long weight = weights[i] / gcd;
+      if (total > MAX_PERIOD) {
+        weight = Math.max(weight * MAX_PERIOD / total, 1);
+      }
+      weights[i] = (int) weight;
+      scaled += weight;
+    }
+
+    // 按虚拟时间生成一个周期，(2 * picks[i] + 1) / (2 * weights[i])最小的节点先选，相同时下标小的先选
+    int[] picks = new int[weights.length];
+    PriorityQueue<Integer> queue =
+        new PriorityQueue<>(
+            Math.max(weights.length, 1),
+            (a, b) -> {
+              int c =
+                  Long.compare(
+                      (2L * picks[a] + 1) * weights[b], (2L * picks[b] + 1) * weights[a]);
+              return c != 0 ? c : Integer.compare(a, b);
+            });
+    for (int i = 0; i < weights.length; i++) {
+      if (weights[i] > 0) {
+        queue.add(i);
+      }
+    }
+    ServerNode[] sequence = new ServerNode[(int) scaled];
+    for (int k = 0; k < sequence.length; k++) {
+      int i = queue.poll();
+      sequence[k] = snapshot.get(i);
+      if (++picks[i] < weights[i]) {
+        queue.add(i);
+      }
+    }
+    Schedule schedule = new Schedule(snapshot.version(), sequence);
+    this.schedule = schedule;
+    return schedule;
+  }
+
+  private static int gcd(int a, int b) {
+    while (b != 0) {
+      int t = a % b;
+      a = b;
+      b = t;
+    }
+    return a;
+  }
+
+  /** 不可变的调度序列 */
+  private static final class Schedule {
+    private static final Schedule EMPTY = new Schedule(-1, new ServerNode[0]);
+
+    /** 对应的节点快照版本 */
+    private final long version;
+
+    /** 一个周期内依次选择的节点 */
+    private final ServerNode[] sequence;
+
+    private Schedule(long version, ServerNode[] sequence) {
+      this.version = version;
+      this.sequence = sequence;
+    }
+  }
+}
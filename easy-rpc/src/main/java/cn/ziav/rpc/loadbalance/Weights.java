@@ -0,0 +1,32 @@
+package cn.ziav.rpc.loadbalance;
+
+import java.util.Arrays;
+
+/**
+ * 加权选择共用的权重读取
+ *
+ * @author Zavi
+ */
+final class Weights {
+  private Weights() {}
+
+  /**
+   * 读取快照中各节点的权重
+   *
+   * @param snapshot 节点快照
+   * @return 与快照节点一一对应的权重；所有节点的权重都为0时按相同权重处理，避免没有节点可选
+   */
+  static int[] of(NodeSnapshot snapshot) {
+    int size = snapshot.size();
+    int[] weights = new int[size];
+    boolean positive = false;
+    for (int i = 0; i < size; i++) {
+      weights[i] = snapshot.get(i).weight();
+      positive |= weights[i] > 0;
+    }
+    if (!positive) {
+      Arrays.fill(weights, 1);
+    }
+    return weights;
+  }
+}
@@ -0,0 +1,81 @@
+package cn.ziav.rpc.server;
+
+import cn.ziav.rpc.codec.Serializer;
+import cn.ziav.rpc.utils.NamedThreadFactory;
+import com.google.common.reflect.TypeToken;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息处理接口
+ *
+ * @author Zavi
+ */
+public interface IMsgHandler<T, R> {
+  ExecutorService DEFAULT_THREAD_EXEC =
+      new ThreadPoolExecutor(
+          200,
+          200,
+          1,
+          TimeUnit.MINUTES,
+          new ArrayBlockingQueue<>(200),
+          new NamedThreadFactory("EasyRpcMsgHandler", true));
+
+  /**
+   * 处理业务
+   *
+   * @param t 请求参数
+   * @return 返回参数
+   * @throws Throwable 异常
+   */
+  R process(T t) throws Throwable;
+
+  /**
+   * 业务消息id
+   *
+   * @return
+   */
+  int msgId();
+
+  /**
+   * 请求体的具体类型，绑定后请求体按该类型直接编解码，默认根据泛型参数推断
+   *
+   * @return 无法确定具体类型时返回null
+   */
+  @SuppressWarnings("unchecked")
+  default Class<T> requestType() {
+    return (Class<T>)
+        TypeToken.of(getClass()).resolveType(IMsgHandler.class.getTypeParameters()[0]).getRawType();
+  }
+
+  /**
+   * 响应体的具体类型，绑定后响应体按该类型直接编解码，默认根据泛型参数推断
+   *
+   * @return 无法确定具体类型时返回null
+   */
+  @SuppressWarnings("unchecked")
+  default Class<R> responseType() {
+    return (Class<R>)
+        TypeToken.of(getClass()).resolveType(IMsgHandler.class.getTypeParameters()[1]).getRawType();
+  }
+
+  /**
+   * 编码响应体使用的序列化器
+   *
+   * @return 为null时沿用请求使用的序列化器
+   */
+  default Serializer serializer() {
+    return null;
+  }
+
+  /**
+   * 自定义业务线程池，默认{@code DEFAULT_THREAD_EXEC}
+   *
+   * @return
+   */
+  default ExecutorService threadPool() {
+    return DEFAULT_THREAD_EXEC;
+  }
+}
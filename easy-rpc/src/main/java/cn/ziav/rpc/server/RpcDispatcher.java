@@ -16,9 +16,14 @@
  */
 package cn.ziav.rpc.server;
 
+import static cn.ziav.rpc.common.Constants.HANDSHAKE_MSG_ID;
+import static cn.ziav.rpc.common.MsgResponse.BAD_REQUEST;
 import static cn.ziav.rpc.common.MsgResponse.SERVER_ERROR;
+import static cn.ziav.rpc.common.MsgResponse.SERVER_THREADPOOL_EXHAUSTED_ERROR;
 import static com.google.common.base.Preconditions.checkArgument;
 
+import cn.ziav.rpc.codec.MsgTypeRegistry;
+import cn.ziav.rpc.codec.ProtocolFeatures;
 import cn.ziav.rpc.common.MsgRequest;
 import cn.ziav.rpc.common.MsgResponse;
 import cn.ziav.rpc.exception.ExceptionCode;
@@ -31,6 +36,7 @@ import java.net.InetSocketAddress;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,9 +50,14 @@ public class RpcDispatcher extends ChannelDuplexHandler {
   /** <ip:port,channel> */
   private final Map<String, Channel> channelMap = new ConcurrentHashMap<>();
 
+  /** 消息类型注册表 */
+  private final MsgTypeRegistry typeRegistry = new MsgTypeRegistry();
+
   public void register(IMsgHandler handler) {
     IMsgHandler pre = msgHandlerMap.putIfAbsent(handler.msgId(), handler);
     checkArgument(pre == null, "重复的消息处理器，msgId=%s", handler.msgId());
+    typeRegistry.register(handler.msgId(), handler.requestType(), handler.responseType());
+    typeRegistry.bindSerializer(handler.msgId(), handler.serializer());
     logger.info("消息处理器{}注册成功", handler.msgId());
   }
 
@@ -65,15 +76,30 @@ public class RpcDispatcher extends ChannelDuplexHandler {
     channelMap.remove(key);
   }
 
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    // 客户端读取响应太慢时暂停读取新的请求，出站缓冲区降到低水位以下后恢复
+    Channel channel = ctx.channel();
+    channel.config().setAutoRead(channel.isWritable());
+    super.channelWritabilityChanged(ctx);
+  }
+
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
     if (msg instanceof MsgRequest) {
       MsgRequest msgReq = (MsgRequest) msg;
+      if (msgReq.mId == HANDSHAKE_MSG_ID) {
+        handshake(ctx, msgReq);
+        return;
+      }
       // 根据mId获取Handler
       IMsgHandler msgHandler = msgHandlerMap.get(msgReq.mId);
       MsgResponse<Object> msgResponse = new MsgResponse<>(msgReq.id, msgReq.mId);
+      msgResponse.mTyped = msgReq.mTypedResponse;
+      msgResponse.mSerializer = msgReq.mSerializer;
       if (msgHandler == null) {
         logger.warn("no msg handler found, mid={}", msgReq.mId);
+        msgReq.release();
         msgResponse.mStatus = SERVER_ERROR;
         msgResponse.mData =
             new RemotingException(ExceptionCode.NO_SUCH_HANDLER, "mid=" + msgReq.mId);
@@ -81,22 +107,82 @@ public class RpcDispatcher extends ChannelDuplexHandler {
         return;
       }
 
-      // 在Handler的线程池中，执行process方法
-      msgHandler
-          .threadPool()
-          .submit(
-              () -> {
-                try {
-                  msgResponse.mData = msgHandler.process(msgReq.mData);
-                } catch (Throwable throwable) {
-                  logger.error("", throwable);
-                  msgResponse.mStatus = SERVER_ERROR;
-                  msgResponse.mData = throwable;
-                }
-                // 写入缓冲区
-                ctx.writeAndFlush(msgResponse);
-              });
+      try {
+        // 在Handler的线程池中，反序列化请求体并执行process方法
+        msgHandler.threadPool().execute(() -> process(ctx, msgHandler, msgReq, msgResponse));
+      } catch (RejectedExecutionException e) {
+        // 业务线程池已满，请求体不再需要解析，直接释放并快速返回
+        logger.warn("msg handler thread pool exhausted, mid={}", msgReq.mId);
+        msgReq.release();
+        msgResponse.mStatus = SERVER_THREADPOOL_EXHAUSTED_ERROR;
+        msgResponse.mData =
+            new RemotingException(ExceptionCode.THREADPOOL_EXHAUSTED, "mid=" + msgReq.mId);
+        ctx.writeAndFlush(msgResponse);
+      }
+    }
+  }
+
+  /**
+   * 处理客户端握手：请求体为客户端支持的协议特性，回复双方都支持的特性
+   *
+   * @param ctx
+   * @param msgReq 握手请求
+   */
+  private void handshake(ChannelHandlerContext ctx, MsgRequest msgReq) {
+    Object data;
+    try {
+      // 请求体只有特性位，直接在IO线程中解析
+      data = msgReq.getData();
+    } catch (Throwable throwable) {
+      logger.error("bad handshake", throwable);
+      data = null;
+    }
+    int features = data instanceof Integer ? (Integer) data : 0;
+    features = ProtocolFeatures.negotiate(ctx.channel(), features);
+    // 第一个元素为协商后的特性，其余为本端绑定了请求体类型的消息id
+    int[] typed = new int[0];
+    if ((features & ProtocolFeatures.TYPED_REQUEST) != 0) {
+      typed = typeRegistry.typedRequests();
+    }
+    int[] result = new int[typed.length + 1];
+    result[0] = features;
+    System.arraycopy(typed, 0, result, 1, typed.length);
+    ctx.writeAndFlush(new MsgResponse<>(msgReq.id, msgReq.mId, result));
+  }
+
+  /**
+   * 在业务线程中处理请求
+   *
+   * @param ctx
+   * @param msgHandler 消息处理器
+   * @param msgReq 请求
+   * @param msgResponse 响应
+   */
+  private void process(
+      ChannelHandlerContext ctx,
+      IMsgHandler msgHandler,
+      MsgRequest msgReq,
+      MsgResponse<Object> msgResponse) {
+    Object data;
+    try {
+      data = msgReq.getData();
+    } catch (Throwable throwable) {
+      logger.error("bad request, mid=" + msgReq.mId, throwable);
+      msgResponse.mStatus = BAD_REQUEST;
+      msgResponse.mData = throwable;
+      ctx.writeAndFlush(msgResponse);
+      return;
+    }
+
+    try {
+      msgResponse.mData = msgHandler.process(data);
+    } catch (Throwable throwable) {
+      logger.error("", throwable);
+      msgResponse.mStatus = SERVER_ERROR;
+      msgResponse.mData = throwable;
     }
+    // 写入缓冲区
+    ctx.writeAndFlush(msgResponse);
   }
 
   @Override
@@ -120,4 +206,8 @@ public class RpcDispatcher extends ChannelDuplexHandler {
   public Map<String, Channel> getChannels() {
     return channelMap;
   }
+
+  public MsgTypeRegistry getTypeRegistry() {
+    return typeRegistry;
+  }
 }
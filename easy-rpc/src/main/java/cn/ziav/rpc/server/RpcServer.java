@@ -2,9 +2,12 @@ package cn.ziav.rpc.server;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+import cn.ziav.rpc.codec.Compression;
 import cn.ziav.rpc.codec.RpcDecoder;
 import cn.ziav.rpc.codec.RpcEncoder;
+import cn.ziav.rpc.codec.Serializer;
 import cn.ziav.rpc.common.Constants;
+import cn.ziav.rpc.common.NodeMetadata;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
@@ -12,6 +15,7 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
@@ -20,6 +24,7 @@ import io.netty.util.concurrent.DefaultThreadFactory;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.Watcher.Event.KeeperState;
 import org.apache.zookeeper.ZooDefs;
 import org.apache.zookeeper.ZooKeeper;
@@ -40,6 +45,15 @@ public class RpcServer {
 
   private final String topic;
 
+  /** 处理器核数，随节点元数据发布 */
+  private final int cores = Runtime.getRuntime().availableProcessors();
+
+  /** 路由权重，随节点元数据发布 */
+  private volatile int weight;
+
+  /** 当前的ZooKeeper会话 */
+  private volatile ZooKeeper zk;
+
   /** worker通道 <ip:port,channel> */
   private Map<String, Channel> channels;
   /** Server启动器 */
@@ -53,6 +67,12 @@ public class RpcServer {
   /** Netty Server处理器 */
   private RpcDispatcher rpcDispatcher;
 
+  /** 出站缓冲区水位，超过高水位时暂停读取该连接上的请求 */
+  private volatile WriteBufferWaterMark writeBufferWaterMark =
+      new WriteBufferWaterMark(
+          Constants.DEFAULT_WRITE_BUFFER_LOW_WATER_MARK,
+          Constants.DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK);
+
   /**
    * 初始化一个Server
    *
@@ -63,7 +83,26 @@ public class RpcServer {
    * @throws Throwable
    */
   public RpcServer(String zkAddr, String topic, String host, int port) throws Throwable {
+    this(zkAddr, topic, host, port, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * 初始化一个Server，并指定路由权重
+   *
+   * @param zkAddr 注册中心地址
+   * @param topic 需要注册的topic
+   * @param host 主机地址
+   * @param port 端口
+   * @param weight 路由权重，客户端按权重分配加权选择的请求，默认为处理器核数
+   * @throws Throwable
+   */
+  public RpcServer(String zkAddr, String topic, String host, int port, int weight)
+      throws Throwable {
+    if (weight < 0) {
+      throw new IllegalArgumentException("weight must not be negative: " + weight);
+    }
     this.zkAddr = zkAddr;
+    this.weight = weight;
     this.host = host;
     this.port = port;
     this.topic = topic;
@@ -99,11 +138,12 @@ public class RpcServer {
               protected void initChannel(NioSocketChannel ch) throws Exception {
                 // 心跳检测时间3分钟
                 int idleTimeout = Constants.DEFAULT_HEARTBEAT * 3;
+                ch.config().setWriteBufferWaterMark(writeBufferWaterMark);
                 ch.pipeline()
                     // 解码器
-                    .addLast("decoder", new RpcDecoder())
+                    .addLast("decoder", new RpcDecoder(rpcDispatcher.getTypeRegistry()))
                     // 编码器
-                    .addLast("encoder", new RpcEncoder())
+                    .addLast("encoder", new RpcEncoder(rpcDispatcher.getTypeRegistry()))
                     // 心跳检测
                     .addLast(
                         "server-idle-handler",
@@ -143,6 +183,7 @@ public class RpcServer {
               }
             });
     latch.await();
+    this.zk = zk;
 
     // 创建/easy-rpc节点
     String path = Constants.ZK_REGISTRY_PATH;
@@ -158,14 +199,50 @@ public class RpcServer {
       zk.create(path, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
     }
 
-    // 创建/easy-rpc/{topic}/{ip:port}节点
-    path += "/" + host + ":" + port;
-    s = zk.exists(path, false);
-    if (s == null) {
-      zk.create(path, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL);
+    // 创建/easy-rpc/{topic}/{ip:port}节点，数据为节点元数据
+    publishMetadata(zk, true);
+  }
+
+  /**
+   * 发布节点元数据
+   *
+   * @param zk ZooKeeper会话
+   * @param create 节点不存在时是否创建
+   */
+  private synchronized void publishMetadata(ZooKeeper zk, boolean create)
+      throws KeeperException, InterruptedException {
+    String path = Constants.ZK_REGISTRY_PATH + "/" + topic + "/" + host + ":" + port;
+    byte[] data = new NodeMetadata(weight, cores).encode();
+    if (zk.exists(path, false) != null) {
+      zk.setData(path, data, -1);
+    } else if (create) {
+      zk.create(path, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL);
     }
   }
 
+  /**
+   * 修改路由权重并重新发布节点元数据，客户端收到通知后更新权重，不需要重新连接
+   *
+   * @param weight 路由权重，为0时客户端的加权选择不再选择该节点，已有连接和其他策略不受影响
+   * @throws KeeperException 发布失败
+   * @throws InterruptedException 发布时被中断
+   */
+  public void setWeight(int weight) throws KeeperException, InterruptedException {
+    if (weight < 0) {
+      throw new IllegalArgumentException("weight must not be negative: " + weight);
+    }
+    this.weight = weight;
+    ZooKeeper zk = this.zk;
+    if (zk != null) {
+      publishMetadata(zk, false);
+    }
+  }
+
+  /** @return 路由权重 */
+  public int getWeight() {
+    return weight;
+  }
+
   public void doClose() {
     try {
       if (channel != null) {
@@ -191,4 +268,44 @@ public class RpcServer {
   public void register(IMsgHandler handler) {
     rpcDispatcher.register(handler);
   }
+
+  /**
+   * 指定出站缓冲区的水位，对已建立的连接同样生效。缓冲区超过高水位时暂停读取该连接上的请求，降到低水位以下时恢复
+   *
+   * @param low 低水位（字节）
+   * @param high 高水位（字节）
+   */
+  public void setWriteBufferWaterMark(int low, int high) {
+    WriteBufferWaterMark waterMark = new WriteBufferWaterMark(low, high);
+    this.writeBufferWaterMark = waterMark;
+    channels.values().forEach(ch -> ch.config().setWriteBufferWaterMark(waterMark));
+  }
+
+  /**
+   * 指定响应体默认使用的序列化器，优先级低于{@link IMsgHandler#serializer()}，高于请求方指定的序列化器
+   *
+   * @param serializer 序列化器，为null时沿用请求方指定的序列化器
+   */
+  public void setDefaultSerializer(Serializer serializer) {
+    rpcDispatcher.getTypeRegistry().setDefaultSerializer(serializer);
+  }
+
+  /**
+   * 指定消息id的响应体压缩阈值，只在客户端支持压缩的连接上生效
+   *
+   * @param msgId 业务消息id
+   * @param threshold 阈值（字节），为{@link Compression#DISABLED}时该消息id不压缩
+   */
+  public void registerCompressThreshold(int msgId, int threshold) {
+    rpcDispatcher.getTypeRegistry().bindCompressThreshold(msgId, threshold);
+  }
+
+  /**
+   * 指定所有消息id默认的响应体压缩阈值，只在客户端支持压缩的连接上生效
+   *
+   * @param threshold 阈值（字节），为{@link Compression#DISABLED}时不压缩
+   */
+  public void setDefaultCompressThreshold(int threshold) {
+    rpcDispatcher.getTypeRegistry().setDefaultCompressThreshold(threshold);
+  }
 }
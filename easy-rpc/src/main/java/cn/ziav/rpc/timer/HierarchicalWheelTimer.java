@@ -0,0 +1,707 @@
+package cn.ziav.rpc.timer;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.PlatformDependent;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 多层时间轮
+ *
+ * <p>第0层有256个槽，每槽一个tick；往上每层64个槽，每槽的跨度是下一层一整圈。默认tick为1毫秒时，
+ * 4层分别覆盖256毫秒、16秒、17分钟和18小时，更远的期限先放在最高层，到期前再逐层下沉。 与单层的{@link
+ * HashedWheelTimer}相比，短期限可以精确到一个tick，长期限也不必每圈遍历一次。
+ *
+ * <p>期限按tick向上取整，任务最多延迟一个tick执行。时间轮为空时工作线程会挂起，直接跳到当前时间，不会空转。
+ * 任务在工作线程中执行，必须足够快，耗时的逻辑应提交到其他线程池。
+ *
+ * <p>新增和取消的定时通过无锁的多生产者单消费者队列交给工作线程。通过{@link StampedTimer}接口添加的定时节点在执行或移除后回收复用，
+ * 请求量很高时不必为每个定时分配对象。
+ *
+ * @author Zavi
+ */
+public class HierarchicalWheelTimer implements StampedTimer {
+  private static final Logger logger = LoggerFactory.getLogger(HierarchicalWheelTimer.class);
+
+  /** 第0层的槽位数 */
+  private static final int LEVEL0_BITS = 8;
+
+  /** 其他层的槽位数 */
+  private static final int LEVEL_BITS = 6;
+
+  /** 层数 */
+  private static final int LEVELS = 4;
+
+  /** 时间轮能直接容纳的最大tick数 */
+  private static final long MAX_SPAN = 1L << (LEVEL0_BITS + LEVEL_BITS * (LEVELS - 1));
+
+  /** 工作线程每回收这么多个节点串成一条链，交给添加定时的线程整条取用 */
+  private static final int FREE_CHAIN_SIZE = 64;
+
+  /** 对象池中最多保留的节点链数，超出的节点交给GC */
+  private static final int MAX_FREE_CHAINS = 1024;
+
+  /** 空闲时最长挂起时间，新任务会立即唤醒工作线程 */
+  private static final long MAX_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private static final int STATE_INIT = 0;
+  private static final int STATE_STARTED = 1;
+  private static final int STATE_SHUTDOWN = 2;
+
+  private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimer> STATE_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimer.class, "state");
+
+  private volatile int state;
+
+  /** tick长度（纳秒） */
+  private final long tickNanos;
+
+  /** 各层时间轮，wheels[level][slot] */
+  private final Bucket[][] wheels;
+
+  private final Queue<WheelTimeout> timeouts = PlatformDependent.newMpscQueue();
+
+  private final Queue<WheelTimeout> cancelledTimeouts = PlatformDependent.newMpscQueue();
+
+  /** 已回收的节点链，每个元素是一条链的头节点 */
+  private final Queue<WheelTimeout> freeChains = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger freeChainCount = new AtomicInteger();
+
+  /** 各线程正在取用的节点链 */
+  private final FastThreadLocal<FreeList> freeList =
+      new FastThreadLocal<FreeList>() {
+        @Override
+        protected FreeList initialValue() {
+          return new FreeList();
+        }
+      };
+
+  private final AtomicLong pendingTimeouts = new AtomicLong();
+
+  private final long maxPendingTimeouts;
+
+  private final Worker worker = new Worker();
+
+  private final Thread workerThread;
+
+  /** 所有期限都相对于该时间计算 */
+  private final long startTime = System.nanoTime();
+
+  /** 工作线程是否处于挂起状态 */
+  private volatile boolean sleeping;
+
+  /**
+   * @param threadFactory 创建工作线程
+   * @param tick tick长度，决定定时精度
+   * @param unit tick的单位
+   */
+  public HierarchicalWheelTimer(ThreadFactory threadFactory, long tick, TimeUnit unit) {
+    this(threadFactory, tick, unit, -1);
+  }
+
+  /**
+   * @param threadFactory 创建工作线程
+   * @param tick tick长度，决定定时精度
+   * @param unit tick的单位
+   * @param maxPendingTimeouts 最大待执行任务数，超过后{@link #newTimeout}抛出{@link
+   *     RejectedExecutionException}，不大于0时不限制
+   */
+  public HierarchicalWheelTimer(
+      ThreadFactory threadFactory, long tick, TimeUnit unit, long maxPendingTimeouts) {
+    if (threadFactory == null) {
+      throw new NullPointerException("threadFactory");
+    }
+    if (unit == null) {
+      throw new NullPointerException("unit");
+    }
+    if (tick <= 0) {
+      throw new IllegalArgumentException("tick must be greater than 0: " + tick);
+    }
+    this.tickNanos = unit.toNanos(tick);
+    if (tickNanos <= 0 || tickNanos >= Long.MAX_VALUE / MAX_SPAN) {
+      throw new IllegalArgumentException("illegal tick: " + tick + " " + unit);
+    }
+    this.maxPendingTimeouts = maxPendingTimeouts;
+    wheels = new Bucket[LEVELS][];
+    for (int level = 0; level < LEVELS; level++) {
+      Bucket[] wheel = new Bucket[1 << (level == 0 ? LEVEL0_BITS : LEVEL_BITS)];
+      for (int i = 0; i < wheel.length; i++) {
+        wheel[i] = new Bucket();
+      }
+      wheels[level] = wheel;
+    }
+    workerThread = threadFactory.newThread(worker);
+  }
+
+  /** 启动工作线程，首次添加任务时会自动启动 */
+  public void start() {
+    switch (STATE_UPDATER.get(this)) {
+      case STATE_INIT:
+        if (STATE_UPDATER.compareAndSet(this, STATE_INIT, STATE_STARTED)) {
+          workerThread.start();
+        }
+        break;
+      case STATE_STARTED:
+        break;
+      case STATE_SHUTDOWN:
+        throw new IllegalStateException("cannot be started once stopped");
+      default:
+        throw new Error("Invalid WorkerState");
+    }
+  }
+
+  @Override
+  public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+    if (task == null) {
+      throw new NullPointerException("task");
+    }
+    long deadline = reserve(delay, unit);
+    WheelTimeout timeout = new WheelTimeout(this, false);
+    timeout.init(task, null, 0, deadline);
+    enqueue(timeout);
+    return timeout;
+  }
+
+  @Override
+  public Timeout newTimeout(StampedTimerTask task, long stamp, long delay, TimeUnit unit) {
+    if (task == null) {
+      throw new NullPointerException("task");
+    }
+    long deadline = reserve(delay, unit);
+    WheelTimeout timeout = obtain();
+    timeout.init(null, task, stamp, deadline);
+    enqueue(timeout);
+    return timeout;
+  }
+
+  @Override
+  public boolean cancel(Timeout timeout, long stamp) {
+    if (timeout.timer() != this) {
+      throw new IllegalArgumentException("timeout does not belong to this timer");
+    }
+    return ((WheelTimeout) timeout).cancel(stamp);
+  }
+
+  /**
+   * 占用一个待执行名额并启动工作线程
+   *
+   * @param delay 延迟
+   * @param unit 延迟的单位
+   * @return 期限（相对于startTime的纳秒数）
+   */
+  private long reserve(long delay, TimeUnit unit) {
+    if (unit == null) {
+      throw new NullPointerException("unit");
+    }
+    long pending = pendingTimeouts.incrementAndGet();
+    if (maxPendingTimeouts > 0 && pending > maxPendingTimeouts) {
+      pendingTimeouts.decrementAndGet();
+      throw new RejectedExecutionException(
+          "Number of pending timeouts ("
+              + pending
+              + ") is greater than or equal to maximum allowed pending timeouts ("
+              + maxPendingTimeouts
+              + ")");
+    }
+    start();
+
+    long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+    // 防止溢出
+    if (delay > 0 && deadline < 0) {
+      deadline = Long.MAX_VALUE;
+    }
+    return deadline;
+  }
+
+  /** @return 可复用的节点，优先从当前线程持有的节点链中取 */
+  private WheelTimeout obtain() {
+    FreeList list = freeList.get();
+    WheelTimeout timeout = list.head;
+    if (timeout == null) {
+      timeout = freeChains.poll();
+      if (timeout == null) {
+        return new WheelTimeout(this, true);
+      }
+      freeChainCount.decrementAndGet();
+    }
+    list.head = timeout.nextFree;
+    timeout.nextFree = null;
+    return timeout;
+  }
+
+  private void enqueue(WheelTimeout timeout) {
+    timeouts.add(timeout);
+    if (sleeping) {
+      LockSupport.unpark(workerThread);
+    }
+  }
+
+  @Override
+  public Set<Timeout> stop() {
+    if (Thread.currentThread() == workerThread) {
+      throw new IllegalStateException(
+          HierarchicalWheelTimer.class.getSimpleName()
+              + ".stop() cannot be called from "
+              + TimerTask.class.getSimpleName());
+    }
+    if (!STATE_UPDATER.compareAndSet(this, STATE_STARTED, STATE_SHUTDOWN)) {
+      STATE_UPDATER.set(this, STATE_SHUTDOWN);
+      return Collections.emptySet();
+    }
+    boolean interrupted = false;
+    while (workerThread.isAlive()) {
+      LockSupport.unpark(workerThread);
+      try {
+        workerThread.join(100);
+      } catch (InterruptedException ignored) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return worker.unprocessedTimeouts();
+  }
+
+  @Override
+  public boolean isStop() {
+    return STATE_UPDATER.get(this) == STATE_SHUTDOWN;
+  }
+
+  @Override
+  public long pendingTimeouts() {
+    return pendingTimeouts.get();
+  }
+
+  @Override
+  public long queuedTimeouts() {
+    return timeouts.size();
+  }
+
+  @Override
+  public long queuedCancellations() {
+    return cancelledTimeouts.size();
+  }
+
+  private final class Worker implements Runnable {
+    private final Set<Timeout> unprocessedTimeouts = new HashSet<>();
+
+    /** 已处理到的tick */
+    private long tick;
+
+    /** 已放入时间轮的任务数 */
+    private long scheduled;
+
+    /** 正在串接的已回收节点链 */
+    private WheelTimeout freeHead;
+
+    private int freeSize;
+
+    @Override
+    public void run() {
+      while (STATE_UPDATER.get(HierarchicalWheelTimer.this) == STATE_STARTED) {
+        processCancelledTasks();
+        transferTimeoutsToBuckets();
+        long now = System.nanoTime() - startTime;
+        long target = now / tickNanos;
+        if (scheduled == 0) {
+          // 时间轮为空，直接跳到当前时间
+          tick = Math.max(tick, target);
+        } else {
+          while (tick < target) {
+            advance();
+          }
+        }
+        flushFreeChain();
+        waitForNextTick(now);
+      }
+
+      for (Bucket[] wheel : wheels) {
+        for (Bucket bucket : wheel) {
+          bucket.clearTimeouts(unprocessedTimeouts);
+        }
+      }
+      for (WheelTimeout timeout; (timeout = timeouts.poll()) != null; ) {
+        if (!timeout.isCancelled()) {
+          unprocessedTimeouts.add(timeout);
+        }
+      }
+      processCancelledTasks();
+    }
+
+    /** 前进一个tick：需要时先把上层的槽下沉，再执行第0层当前槽的任务 */
+    private void advance() {
+      long next = ++tick;
+      // 从高层往低层下沉，保证下沉后的任务能正确落到低层
+      for (int level = LEVELS - 1; level > 0; level--) {
+        int shift = shift(level);
+        if ((next & ((1L << shift) - 1)) == 0) {
+          Bucket bucket = wheels[level][(int) (next >>> shift) & mask(level)];
+          for (WheelTimeout timeout; (timeout = bucket.poll()) != null; ) {
+            scheduled--;
+            // 当前tick的槽还未执行，下沉的任务可以落在当前tick
+            schedule(timeout, next);
+          }
+        }
+      }
+      Bucket bucket = wheels[0][(int) next & mask(0)];
+      for (WheelTimeout timeout; (timeout = bucket.poll()) != null; ) {
+        scheduled--;
+        timeout.phase = WheelTimeout.PH_DETACHED;
+        // 已取消但尚未移除的任务在取消队列中处理后再释放
+        if (timeout.expire()) {
+          release(timeout);
+        }
+      }
+    }
+
+    /**
+     * 按期限把任务放入对应层的槽中
+     *
+     * @param timeout 任务
+     * @param earliest 最早可以落入的tick
+     */
+    private void schedule(WheelTimeout timeout, long earliest) {
+      // 期限向上取整到tick，不能先加再除，期限可能接近Long.MAX_VALUE
+      long deadline = timeout.deadline;
+      long expires = deadline / tickNanos + (deadline % tickNanos == 0 ? 0 : 1);
+      expires = Math.max(expires, earliest);
+      long delta = Math.min(expires - tick, MAX_SPAN - 1);
+      int level = 0;
+      while (level < LEVELS - 1 && delta >= 1L << shift(level + 1)) {
+        level++;
+      }
+      // 超出最高层范围的任务先放在最高层最远的槽，下沉时再重新计算
+      long slotTick = delta == expires - tick ? expires : tick + delta;
+      wheels[level][(int) (slotTick >>> shift(level)) & mask(level)].addTimeout(timeout);
+      timeout.phase = WheelTimeout.PH_IN_WHEEL;
+      scheduled++;
+    }
+
+    private void transferTimeoutsToBuckets() {
+      // 每次最多转移10万个，避免工作线程被持续添加的任务拖住
+      for (int i = 0; i < 100000; i++) {
+        WheelTimeout timeout = timeouts.poll();
+        if (timeout == null) {
+          break;
+        }
+        if (timeout.state() == WheelTimeout.ST_CANCELLED) {
+          timeout.phase = WheelTimeout.PH_DETACHED;
+          // 取消队列中的节点已处理过时才能释放，否则由processCancelledTasks释放
+          if (timeout.cancelPolled) {
+            release(timeout);
+          }
+          continue;
+        }
+        // 当前tick已执行过，新任务最早落在下一个tick
+        schedule(timeout, tick + 1);
+      }
+    }
+
+    private void processCancelledTasks() {
+      for (WheelTimeout timeout; (timeout = cancelledTimeouts.poll()) != null; ) {
+        timeout.cancelPolled = true;
+        switch (timeout.phase) {
+          case WheelTimeout.PH_IN_WHEEL:
+            timeout.bucket.remove(timeout);
+            scheduled--;
+            release(timeout);
+            break;
+          case WheelTimeout.PH_DETACHED:
+            release(timeout);
+            break;
+          default:
+            // 还在新增队列中，由transferTimeoutsToBuckets跳过并释放
+            break;
+        }
+      }
+    }
+
+    /**
+     * 节点已离开时间轮和所有队列，释放待执行名额，可复用的节点回收到对象池
+     *
+     * @param timeout 节点
+     */
+    private void release(WheelTimeout timeout) {
+      pendingTimeouts.decrementAndGet();
+      if (!timeout.pooled) {
+        return;
+      }
+      timeout.reset();
+      timeout.nextFree = freeHead;
+      freeHead = timeout;
+      if (++freeSize == FREE_CHAIN_SIZE) {
+        flushFreeChain();
+      }
+    }
+
+    /** 把正在串接的节点链交给添加定时的线程 */
+    private void flushFreeChain() {
+      if (freeHead == null) {
+        return;
+      }
+      if (freeChainCount.get() < MAX_FREE_CHAINS) {
+        freeChainCount.incrementAndGet();
+        freeChains.add(freeHead);
+      }
+      freeHead = null;
+      freeSize = 0;
+    }
+
+    /**
+     * 挂起到下一个tick，时间轮为空时挂起直到有新任务
+     *
+     * @param now 当前时间（相对于startTime）
+     */
+    private void waitForNextTick(long now) {
+      long sleepNanos;
+      if (scheduled == 0) {
+        sleepNanos = MAX_IDLE_NANOS;
+      } else {
+        sleepNanos = (tick + 1) * tickNanos - now;
+      }
+      if (sleepNanos <= 0 || !timeouts.isEmpty() || !cancelledTimeouts.isEmpty()) {
+        return;
+      }
+      sleeping = true;
+      // 再次检查，避免错过挂起前刚加入的任务
+      if (timeouts.isEmpty()) {
+        LockSupport.parkNanos(HierarchicalWheelTimer.this, sleepNanos);
+      }
+      sleeping = false;
+    }
+
+    Set<Timeout> unprocessedTimeouts() {
+      return Collections.unmodifiableSet(unprocessedTimeouts);
+    }
+  }
+
+  /** 层内槽位下标的起始位 */
+  private static int shift(int level) {
+    return level == 0 ? 0 : LEVEL0_BITS + LEVEL_BITS * (level - 1);
+  }
+
+  /** 层内槽位下标掩码 */
+  private static int mask(int level) {
+    return (1 << (level == 0 ? LEVEL0_BITS : LEVEL_BITS)) - 1;
+  }
+
+  private static final class WheelTimeout implements Timeout {
+    private static final int ST_INIT = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+    /** 在新增队列中 */
+    static final int PH_QUEUED = 0;
+    /** 在时间轮的槽中 */
+    static final int PH_IN_WHEEL = 1;
+    /** 已离开时间轮和新增队列 */
+    static final int PH_DETACHED = 2;
+
+    private final HierarchicalWheelTimer timer;
+
+    /** 是否在执行或取消后回收复用 */
+    final boolean pooled;
+
+    private TimerTask task;
+
+    private StampedTimerTask stampedTask;
+
+    /** 定时编号，节点复用后会改变 */
+    private long stamp;
+
+    /** 期限（相对于startTime的纳秒数） */
+    private long deadline;
+
+    private volatile int state = ST_INIT;
+
+    /** 以下字段只由工作线程访问 */
+    WheelTimeout next;
+
+    WheelTimeout prev;
+
+    Bucket bucket;
+
+    int phase;
+
+    /** 是否已从取消队列中取出 */
+    boolean cancelPolled;
+
+    /** 对象池中的下一个节点 */
+    WheelTimeout nextFree;
+
+    WheelTimeout(HierarchicalWheelTimer timer, boolean pooled) {
+      this.timer = timer;
+      this.pooled = pooled;
+    }
+
+    /** 初始化节点，之后通过新增队列发布给工作线程 */
+    void init(TimerTask task, StampedTimerTask stampedTask, long stamp, long deadline) {
+      this.task = task;
+      this.stampedTask = stampedTask;
+      this.deadline = deadline;
+      // 与cancel(long)互斥，保证取消时校验的编号和状态属于同一个定时
+      synchronized (this) {
+        this.stamp = stamp;
+        this.state = ST_INIT;
+      }
+    }
+
+    /** 回收前清理，由工作线程在节点离开时间轮和所有队列后调用 */
+    void reset() {
+      task = null;
+      stampedTask = null;
+      phase = PH_QUEUED;
+      cancelPolled = false;
+    }
+
+    @Override
+    public Timer timer() {
+      return timer;
+    }
+
+    @Override
+    public TimerTask task() {
+      return task;
+    }
+
+    @Override
+    public boolean cancel() {
+      if (pooled) {
+        throw new UnsupportedOperationException("use StampedTimer.cancel(Timeout, long)");
+      }
+      if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+        return false;
+      }
+      // 由工作线程在下一个tick从槽中移除
+      timer.cancelledTimeouts.add(this);
+      return true;
+    }
+
+    /**
+     * 校验编号后取消
+     *
+     * @param stamp 定时编号
+     * @return 是否取消成功
+     */
+    boolean cancel(long stamp) {
+      synchronized (this) {
+        if (this.stamp != stamp || !STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+          return false;
+        }
+      }
+      // 取消队列处理前节点不会被回收，可以在锁外入队
+      timer.cancelledTimeouts.add(this);
+      return true;
+    }
+
+    int state() {
+      return state;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return state == ST_CANCELLED;
+    }
+
+    @Override
+    public boolean isExpired() {
+      return state == ST_EXPIRED;
+    }
+
+    /**
+     * 执行到期的定时
+     *
+     * @return 是否已执行，已取消时返回false
+     */
+    boolean expire() {
+      if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+        return false;
+      }
+      try {
+        if (stampedTask != null) {
+          stampedTask.run(stamp);
+        } else {
+          task.run(this);
+        }
+      } catch (Throwable t) {
+        logger.warn("An exception was thrown by " + TimerTask.class.getSimpleName() + '.', t);
+      }
+      return true;
+    }
+  }
+
+  /** 线程持有的可复用节点链 */
+  private static final class FreeList {
+    private WheelTimeout head;
+  }
+
+  /** 槽，任务按双向链表串联，取消时可以O(1)移除 */
+  private static final class Bucket {
+    private WheelTimeout head;
+
+    private WheelTimeout tail;
+
+    void addTimeout(WheelTimeout timeout) {
+      timeout.bucket = this;
+      if (head == null) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+    void remove(WheelTimeout timeout) {
+      WheelTimeout next = timeout.next;
+      if (timeout.prev != null) {
+        timeout.prev.next = next;
+      }
+      if (next != null) {
+        next.prev = timeout.prev;
+      }
+      if (timeout == head) {
+        head = next;
+      }
+      if (timeout == tail) {
+        tail = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+      timeout.bucket = null;
+    }
+
+    WheelTimeout poll() {
+      WheelTimeout timeout = head;
+      if (timeout != null) {
+        remove(timeout);
+      }
+      return timeout;
+    }
+
+    void clearTimeouts(Set<Timeout> set) {
+      for (WheelTimeout timeout; (timeout = poll()) != null; ) {
+        if (!timeout.isExpired() && !timeout.isCancelled()) {
+          set.add(timeout);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package cn.ziav.rpc.timer;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分片的多层时间轮
+ *
+ * <p>由多个{@link HierarchicalWheelTimer}组成，每个分片有独立的工作线程和无锁队列。添加定时的线程固定映射到一个分片，
+ * 同一个分片的生产者更少，单个工作线程也不再是请求量很高时的瓶颈。定时在各分片之间不保证执行顺序。
+ *
+ * @author Zavi
+ */
+public class ShardedWheelTimer implements StampedTimer {
+  /** 默认分片数，每4个处理器一个分片 */
+  public static final int DEFAULT_SHARDS =
+      Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+
+  private final HierarchicalWheelTimer[] shards;
+
+  /**
+   * @param threadFactory 创建各分片的工作线程
+   * @param tick tick长度，决定定时精度
+   * @param unit tick的单位
+   * @param shards 分片数
+   */
+  public ShardedWheelTimer(ThreadFactory threadFactory, long tick, TimeUnit unit, int shards) {
+    if (shards <= 0) {
+      throw new IllegalArgumentException("shards must be greater than 0: " + shards);
+    }
+    this.shards = new HierarchicalWheelTimer[shards];
+    for (int i = 0; i < shards; i++) {
+      this.shards[i] = new HierarchicalWheelTimer(threadFactory, tick, unit);
+    }
+  }
+
+  /** @return 当前线程对应的分片 */
+  private HierarchicalWheelTimer shard() {
+    if (shards.length == 1) {
+      return shards[0];
+    }
+    return shards[(int) (Thread.currentThread().getId() % shards.length)];
+  }
+
+  @Override
+  public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+    return shard().newTimeout(task, delay, unit);
+  }
+
+  @Override
+  public Timeout newTimeout(StampedTimerTask task, long stamp, long delay, TimeUnit unit) {
+    return shard().newTimeout(task, stamp, delay, unit);
+  }
+
+  @Override
+  public boolean cancel(Timeout timeout, long stamp) {
+    // 节点只在所属的分片中复用
+    return ((StampedTimer) timeout.timer()).cancel(timeout, stamp);
+  }
+
+  @Override
+  public Set<Timeout> stop() {
+    Set<Timeout> unprocessed = new HashSet<>();
+    for (HierarchicalWheelTimer shard : shards) {
+      unprocessed.addAll(shard.stop());
+    }
+    return unprocessed;
+  }
+
+  @Override
+  public boolean isStop() {
+    for (HierarchicalWheelTimer shard : shards) {
+      if (!shard.isStop()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public long pendingTimeouts() {
+    long count = 0;
+    for (HierarchicalWheelTimer shard : shards) {
+      count += shard.pendingTimeouts();
+    }
+    return count;
+  }
+
+  @Override
+  public long queuedTimeouts() {
+    long count = 0;
+    for (HierarchicalWheelTimer shard : shards) {
+      count += shard.queuedTimeouts();
+    }
+    return count;
+  }
+
+  @Override
+  public long queuedCancellations() {
+    long count = 0;
+    for (HierarchicalWheelTimer shard : shards) {
+      count += shard.queuedCancellations();
+    }
+    return count;
+  }
+
+  /** @return 分片数 */
+  public int shards() {
+    return shards.length;
+  }
+}
@@ -0,0 +1,44 @@
+package cn.ziav.rpc.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支持复用定时节点的计时器
+ *
+ * <p>通过{@link #newTimeout(StampedTimerTask, long, long, TimeUnit)}添加的定时节点在执行或取消后由计时器回收复用，
+ * 调用方持有的{@link Timeout}可能已经属于其他定时，因此只能通过{@link #cancel(Timeout, long)}带上编号取消，
+ * 编号不一致时不做任何操作。
+ *
+ * @author Zavi
+ */
+public interface StampedTimer extends Timer {
+
+  /**
+   * 添加节点可复用的定时
+   *
+   * @param task 定时任务
+   * @param stamp 定时编号，在计时器中必须唯一，例如请求编号
+   * @param delay 延迟
+   * @param unit 延迟的单位
+   * @return 定时节点，{@link Timeout#task()}返回null，{@link Timeout#cancel()}不可用
+   */
+  Timeout newTimeout(StampedTimerTask task, long stamp, long delay, TimeUnit unit);
+
+  /**
+   * 取消节点可复用的定时
+   *
+   * @param timeout {@link #newTimeout(StampedTimerTask, long, long, TimeUnit)}返回的节点
+   * @param stamp 添加定时时的编号
+   * @return 是否取消成功，定时已执行、已取消或节点已被复用时返回false
+   */
+  boolean cancel(Timeout timeout, long stamp);
+
+  /** @return 待执行的定时数 */
+  long pendingTimeouts();
+
+  /** @return 已添加但尚未被工作线程放入时间轮的定时数 */
+  long queuedTimeouts();
+
+  /** @return 已取消但尚未被工作线程移除的定时数 */
+  long queuedCancellations();
+}
@@ -0,0 +1,17 @@
+package cn.ziav.rpc.timer;
+
+/**
+ * 通过{@link StampedTimer}添加的定时任务，执行时只传入任务编号，同一个任务对象可以被所有定时共用
+ *
+ * @author Zavi
+ */
+public interface StampedTimerTask {
+
+  /**
+   * 定时到期时执行
+   *
+   * @param stamp 添加定时时传入的编号
+   * @throws Exception
+   */
+  void run(long stamp) throws Exception;
+}
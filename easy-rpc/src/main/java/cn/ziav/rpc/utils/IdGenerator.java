@@ -0,0 +1,40 @@
+package cn.ziav.rpc.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分段的请求编号生成器
+ *
+ * <p>每个线程一次从全局计数器领取一段编号，用完后再领取下一段，大多数调用只访问线程本地的计数，
+ * 避免所有调用线程争用同一个{@link AtomicLong}。编号在进程内唯一，但不同线程之间不保证递增。
+ *
+ * @author Zavi
+ */
+public final class IdGenerator {
+  /** 每次领取的编号数量 */
+  private static final int BLOCK_SIZE = 1024;
+
+  /** 下一段编号的起始值 */
+  private static final AtomicLong NEXT_BLOCK = new AtomicLong(0);
+
+  /** 线程当前持有的编号段 */
+  private static final ThreadLocal<Block> BLOCKS = ThreadLocal.withInitial(Block::new);
+
+  private IdGenerator() {}
+
+  /** @return 下一个编号 */
+  public static long next() {
+    Block block = BLOCKS.get();
+    if (block.next == block.end) {
+      block.next = NEXT_BLOCK.getAndAdd(BLOCK_SIZE);
+      block.end = block.next + BLOCK_SIZE;
+    }
+    return block.next++;
+  }
+
+  /** 编号段[next, end) */
+  private static final class Block {
+    private long next;
+    private long end;
+  }
+}
@@ -3,6 +3,7 @@ package cn.ziav.rpc;
 import static cn.ziav.rpc.Constant.topic;
 import static cn.ziav.rpc.Constant.zkAddr;
 
+import cn.ziav.rpc.bean.Page;
 import cn.ziav.rpc.bean.User;
 import cn.ziav.rpc.client.RpcClient;
 import cn.ziav.rpc.handler.MsgId;
@@ -37,6 +38,9 @@ public class BenchmarkTest {
   @Setup
   public void initClient() throws Throwable {
     client = new RpcClient(zkAddr, topic);
+    client.registerType(MsgId.CREATE_USER, User.class, Boolean.class);
+    client.registerType(MsgId.GET_USER, Integer.class, User.class);
+    client.registerType(MsgId.LIST_USER, Integer.class, Page.class);
   }
 
   @TearDown
@@ -0,0 +1,589 @@
+package cn.ziav.rpc;
+
+import static cn.ziav.rpc.Constant.localIp;
+import static cn.ziav.rpc.Constant.port;
+import static cn.ziav.rpc.Constant.topic;
+import static cn.ziav.rpc.Constant.zkAddr;
+import static cn.ziav.rpc.exception.ExceptionCode.CHANNEL_INACTIVE;
+import static cn.ziav.rpc.exception.ExceptionCode.CHANNEL_UNWRITABLE;
+import static cn.ziav.rpc.exception.ExceptionCode.TIME_OUT;
+
+import cn.ziav.rpc.bean.HelloReq;
+import cn.ziav.rpc.bean.HelloResp;
+import cn.ziav.rpc.client.EasyRpcCallback;
+import cn.ziav.rpc.client.RpcClient;
+import cn.ziav.rpc.client.RpcFutures;
+import cn.ziav.rpc.client.ServerNode;
+import cn.ziav.rpc.client.WritePolicy;
+import cn.ziav.rpc.common.Constants;
+import cn.ziav.rpc.codec.CompressionStats;
+import cn.ziav.rpc.codec.Serializer;
+import cn.ziav.rpc.codec.Serializers;
+import cn.ziav.rpc.exception.RemotingException;
+import cn.ziav.rpc.handler.EchoBytesMsgHandler;
+import cn.ziav.rpc.handler.ExceptionMsgHandler;
+import cn.ziav.rpc.handler.HelloMsgHandler;
+import cn.ziav.rpc.handler.MsgId;
+import cn.ziav.rpc.handler.MultiThreadMsgHandler;
+import cn.ziav.rpc.handler.PlainExceptionMsgHandler;
+import cn.ziav.rpc.handler.TimeoutMsgHandler;
+import cn.ziav.rpc.server.RpcServer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.zookeeper.ZooKeeper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class InvokeTest {
+  private static RpcServer server;
+
+  @BeforeAll
+  static void initServer() throws Throwable {
+    server = new RpcServer(zkAddr, topic, localIp, port);
+    server.register(new HelloMsgHandler());
+    server.register(new TimeoutMsgHandler());
+    server.register(new ExceptionMsgHandler());
+    server.register(new MultiThreadMsgHandler());
+    server.register(new EchoBytesMsgHandler());
+    server.register(new PlainExceptionMsgHandler());
+    server.registerCompressThreshold(MsgId.ECHO_BYTES, 1024);
+  }
+
+  @Test
+  void testSync() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    HelloReq helloReq = new HelloReq();
+    helloReq.msg = "ping";
+    HelloResp resp = client.send(client.randomNode(), MsgId.HELLO, helloReq, 3000);
+    Assertions.assertEquals(resp.msg, "pong");
+  }
+
+  @Test
+  void testTypedSync() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    client.registerType(MsgId.HELLO, HelloReq.class, HelloResp.class);
+    HelloReq helloReq = new HelloReq();
+    helloReq.msg = "ping";
+    HelloResp resp = client.send(client.randomNode(), MsgId.HELLO, helloReq, 3000);
+    Assertions.assertEquals(resp.msg, "pong");
+  }
+
+  @Test
+  void testSerializer() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    client.registerSerializer(MsgId.ECHO_BYTES, Serializers.get(Serializer.BYTES));
+    byte[] bytes = {1, 2, 3, 4};
+    byte[] resp = client.send(client.randomNode(), MsgId.ECHO_BYTES, bytes, 3000);
+    Assertions.assertArrayEquals(bytes, resp);
+  }
+
+  @Test
+  void testCompression() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    client.registerSerializer(MsgId.ECHO_BYTES, Serializers.get(Serializer.BYTES));
+    client.registerCompressThreshold(MsgId.ECHO_BYTES, 1024);
+    byte[] bytes = new byte[64 * 1024];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (i % 16);
+    }
+    for (int i = 0; i < 2; i++) {
+      byte[] resp = client.send(client.randomNode(), MsgId.ECHO_BYTES, bytes, 3000);
+      Assertions.assertArrayEquals(bytes, resp);
+    }
+    CompressionStats stats = CompressionStats.get(MsgId.ECHO_BYTES);
+    Assertions.assertTrue(stats.getDecompressCount() > 0);
+    Assertions.assertTrue(stats.getRatio() < 0.5);
+  }
+
+  @Test
+  void testNonGraph() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    client.setDefaultSerializer(Serializers.get(Serializer.PROTOSTUFF));
+    HelloReq helloReq = new HelloReq();
+    helloReq.msg = "ping";
+    HelloResp resp = client.send(client.randomNode(), MsgId.HELLO, helloReq, 3000);
+    Assertions.assertEquals(resp.msg, "pong");
+  }
+
+  @Test
+  void testAsync() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    HelloReq helloReq = new HelloReq();
+    helloReq.msg = "ping";
+    CountDownLatch latch = new CountDownLatch(1);
+    client.sendAsync(
+        client.randomNode(),
+        MsgId.HELLO,
+        helloReq,
+        3000,
+        new EasyRpcCallback<HelloResp>() {
+          @Override
+          public void success(HelloResp result) {
+            Assertions.assertEquals(result.msg, "pong");
+            latch.countDown();
+          }
+
+          @Override
+          public void fail(Throwable throwable) {}
+        });
+    latch.await();
+  }
+
+  @Test
+  void testCallbackExecutor() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    HelloReq helloReq = new HelloReq();
+    helloReq.msg = "ping";
+    // 在IO线程中执行回调
+    CompletableFuture<String> inline = new CompletableFuture<>();
+    client.sendAsync(
+        client.randomNode(), MsgId.HELLO, helloReq, 3000, threadNameCallback(inline), null);
+    Assertions.assertTrue(inline.get(3, TimeUnit.SECONDS).startsWith("NettyClientWorker"));
+
+    // 在调用方指定的线程池中执行回调
+    ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "caller"));
+    client.setCallbackExecutor(executor);
+    CompletableFuture<String> caller = new CompletableFuture<>();
+    client.sendAsync(client.randomNode(), MsgId.HELLO, helloReq, 3000, threadNameCallback(caller));
+    Assertions.assertEquals("caller", caller.get(3, TimeUnit.SECONDS));
+    executor.shutdown();
+  }
+
+  private static EasyRpcCallback<HelloResp> threadNameCallback(CompletableFuture<String> future) {
+    return new EasyRpcCallback<HelloResp>() {
+      @Override
+      public void success(HelloResp result) {
+        future.complete(Thread.currentThread().getName());
+      }
+
+      @Override
+      public void fail(Throwable throwable) {
+        future.completeExceptionally(throwable);
+      }
+    };
+  }
+
+  @Test
+  void testCall() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    String addr = client.randomNode();
+    HelloReq helloReq = new HelloReq();
+    helloReq.msg = "ping";
+    // 首次调用时异步建立连接，连接建立前的调用共用同一个连接过程
+    List<CompletionStage<HelloResp>> first = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      first.add(client.call(addr, MsgId.HELLO, helloReq, 3000));
+    }
+    for (HelloResp resp : RpcFutures.allOf(first).get(3, TimeUnit.SECONDS)) {
+      Assertions.assertEquals("pong", resp.msg);
+    }
+
+    List<CompletionStage<HelloResp>> all =
+        Arrays.asList(
+            client.call(addr, MsgId.HELLO, helloReq, 3000),
+            client.call(addr, MsgId.HELLO, helloReq, 3000));
+    Assertions.assertEquals(2, RpcFutures.allOf(all, 3, TimeUnit.SECONDS).get().size());
+
+    List<CompletionStage<String>> any =
+        Arrays.asList(
+            client.call(addr, MsgId.TIMEOUT, "ping", 100),
+            client.call(addr, MsgId.TIMEOUT, "ping", 3000));
+    Assertions.assertEquals("pong", RpcFutures.anyOf(any).get(3, TimeUnit.SECONDS));
+
+    // 整体期限先于单个调用的超时时间到达
+    List<CompletionStage<String>> slow =
+        Arrays.asList(client.call(addr, MsgId.TIMEOUT, "ping", 3000));
+    ExecutionException e =
+        Assertions.assertThrows(
+            ExecutionException.class,
+            () -> RpcFutures.allOf(slow, 100, TimeUnit.MILLISECONDS).get());
+    Assertions.assertEquals(TIME_OUT, ((RemotingException) e.getCause()).code);
+
+    // 取消调用按CompletableFuture的语义结束，后续阶段同样看到取消
+    CompletableFuture<String> cancelled =
+        client.<String, String>call(addr, MsgId.TIMEOUT, "ping", 3000).toCompletableFuture();
+    CompletableFuture<String> dependent = cancelled.thenApply(s -> s);
+    Assertions.assertTrue(cancelled.cancel(true));
+    Assertions.assertTrue(cancelled.isCancelled());
+    e = Assertions.assertThrows(ExecutionException.class, () -> dependent.get(1, TimeUnit.SECONDS));
+    Assertions.assertTrue(e.getCause() instanceof CancellationException);
+  }
+
+  @Test
+  void testCallTimeoutWhileConnecting() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    List<Socket> sockets = new ArrayList<>();
+    // 占满监听端口的连接队列，之后的连接一直处于建立中
+    try (ServerSocket backlog = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      while (true) {
+        Socket socket = new Socket();
+        sockets.add(socket);
+        try {
+          socket.connect(backlog.getLocalSocketAddress(), 100);
+        } catch (SocketTimeoutException full) {
+          break;
+        }
+      }
+      String addr = "127.0.0.1:" + backlog.getLocalPort();
+      HelloReq helloReq = new HelloReq();
+      helloReq.msg = "ping";
+
+      long start = System.currentTimeMillis();
+      CompletableFuture<HelloResp> call =
+          client.<HelloReq, HelloResp>call(addr, MsgId.HELLO, helloReq, 200).toCompletableFuture();
+      ExecutionException e = Assertions.assertThrows(ExecutionException.class, call::get);
+      Assertions.assertEquals(TIME_OUT, ((RemotingException) e.getCause()).code);
+
+      CountDownLatch latch = new CountDownLatch(1);
+      client.sendAsync(
+          addr,
+          MsgId.HELLO,
+          helloReq,
+          200,
+          new EasyRpcCallback<HelloResp>() {
+            @Override
+            public void success(HelloResp result) {}
+
+            @Override
+            public void fail(Throwable throwable) {
+              Assertions.assertEquals(TIME_OUT, ((RemotingException) throwable).code);
+              latch.countDown();
+            }
+          });
+      Assertions.assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+      // 同步调用同样按各自的超时时间等待共用的连接过程
+      RemotingException timeout =
+          Assertions.assertThrows(
+              RemotingException.class, () -> client.send(addr, MsgId.HELLO, helloReq, 200));
+      Assertions.assertEquals(TIME_OUT, timeout.code);
+      // 按调用的超时时间结束，不必等到连接超时
+      Assertions.assertTrue(System.currentTimeMillis() - start < 2000);
+    } finally {
+      for (Socket socket : sockets) {
+        socket.close();
+      }
+    }
+  }
+
+  @Test
+  void testConnectionPool() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    client.setConnectionsPerNode(4);
+    String addr = client.randomNode();
+    HelloReq helloReq = new HelloReq();
+    helloReq.msg = "ping";
+    List<CompletionStage<HelloResp>> calls = new ArrayList<>();
+    for (int i = 0; i < 64; i++) {
+      calls.add(client.call(addr, MsgId.HELLO, helloReq, 3000));
+    }
+    for (HelloResp resp : RpcFutures.allOf(calls).get(3, TimeUnit.SECONDS)) {
+      Assertions.assertEquals("pong", resp.msg);
+    }
+    // 连接池在后台补足
+    long deadline = System.currentTimeMillis() + 3000;
+    while (client.getConnectionCount(addr) < 4 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assertions.assertEquals(4, client.getConnectionCount(addr));
+    HelloResp resp = client.send(addr, MsgId.HELLO, helloReq, 3000);
+    Assertions.assertEquals("pong", resp.msg);
+
+    // 调小连接数后回收多余的连接
+    client.setConnectionsPerNode(1);
+    deadline = System.currentTimeMillis() + 5000;
+    while (client.getConnectionCount(addr) > 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assertions.assertEquals(1, client.getConnectionCount(addr));
+    client.doClose();
+  }
+
+  @Test
+  void testNodeRemoved() throws Throwable {
+    String shrinkTopic = topic + "-shrink";
+    RpcServer kept = new RpcServer(zkAddr, shrinkTopic, localIp, port + 2);
+    kept.register(new HelloMsgHandler());
+    RpcServer removed = new RpcServer(zkAddr, shrinkTopic, localIp, port + 3);
+    removed.register(new HelloMsgHandler());
+    String keptAddr = localIp + ":" + (port + 2);
+    String removedAddr = localIp + ":" + (port + 3);
+    RpcClient client = new RpcClient(zkAddr, shrinkTopic);
+    ZooKeeper zk = new ZooKeeper(zkAddr, Constants.ZK_SESSION_TIMEOUT, event -> {});
+    try {
+      Assertions.assertEquals(2, client.getNodeSnapshot().size());
+      HelloReq helloReq = new HelloReq();
+      helloReq.msg = "ping";
+      for (String addr : Arrays.asList(keptAddr, removedAddr)) {
+        HelloResp resp = client.send(addr, MsgId.HELLO, helloReq, 3000);
+        Assertions.assertEquals("pong", resp.msg);
+      }
+      Assertions.assertEquals(1, client.getConnectionCount(removedAddr));
+
+      // 新列表是老列表的子集，下线的节点从快照中移除，连接被回收且不再重连
+      zk.delete(Constants.ZK_REGISTRY_PATH + "/" + shrinkTopic + "/" + removedAddr, -1);
+      long deadline = System.currentTimeMillis() + 3000;
+      while ((client.getNodeSnapshot().size() != 1 || client.getConnectionCount(removedAddr) != 0)
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Assertions.assertEquals(1, client.getNodeSnapshot().size());
+      Assertions.assertEquals(keptAddr, client.getNodeSnapshot().get(0).addr);
+      Assertions.assertEquals(0, client.getConnectionCount(removedAddr));
+      Thread.sleep(500);
+      Assertions.assertEquals(0, client.getConnectionCount(removedAddr));
+      Assertions.assertEquals(1, client.getConnectionCount(keptAddr));
+    } finally {
+      zk.close();
+      client.doClose();
+      kept.doClose();
+      removed.doClose();
+    }
+  }
+
+  @Test
+  void testBusinessExceptionLatency() throws Throwable {
+    String latencyTopic = topic + "-latency";
+    RpcServer failing = new RpcServer(zkAddr, latencyTopic, localIp, port + 4);
+    failing.register(new ExceptionMsgHandler());
+    RpcServer slow = new RpcServer(zkAddr, latencyTopic, localIp, port + 5);
+    slow.register(new TimeoutMsgHandler());
+    String failingAddr = localIp + ":" + (port + 4);
+    String slowAddr = localIp + ":" + (port + 5);
+    RpcClient client = new RpcClient(zkAddr, latencyTopic);
+    try {
+      // 业务异常按正常耗时计入延迟估计，不按超时惩罚
+      for (int i = 0; i < 5; i++) {
+        Assertions.assertThrows(
+            IllegalStateException.class,
+            () -> client.send(failingAddr, MsgId.EXCEPTION, "", 3000));
+      }
+      // 超时按超时时间惩罚，惩罚低于业务异常调用的超时时间
+      RemotingException remotingException =
+          Assertions.assertThrows(
+              RemotingException.class, () -> client.send(slowAddr, MsgId.TIMEOUT, "ping", 1000));
+      Assertions.assertEquals(TIME_OUT, remotingException.code);
+      // 抛出业务异常的节点仍然是延迟最低的节点
+      for (int i = 0; i < 10; i++) {
+        Assertions.assertEquals(failingAddr, client.lowLatencyNode());
+      }
+    } finally {
+      client.doClose();
+      failing.doClose();
+      slow.doClose();
+    }
+  }
+
+  @Test
+  void testCloseWhileConnecting() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    String addr = client.randomNode();
+    HelloReq helloReq = new HelloReq();
+    helloReq.msg = "ping";
+    // 按需连接尚未建立时关闭客户端
+    CompletableFuture<HelloResp> call =
+        client.<HelloReq, HelloResp>call(addr, MsgId.HELLO, helloReq, 3000).toCompletableFuture();
+    client.doClose();
+    try {
+      call.get(1, TimeUnit.SECONDS);
+    } catch (ExecutionException ignored) {
+      // 连接在关闭前已建立时调用可能成功，否则以异常结束，但不会等到超时
+    }
+    // 关闭之后才建立的连接（按需连接、预连接）不会留在连接池中
+    Thread.sleep(500);
+    Assertions.assertEquals(0, client.getConnectionCount(addr));
+  }
+
+  @Test
+  void testNodeWeight() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    ServerNode node = client.getNodeSnapshot().get(0);
+    Assertions.assertEquals(Runtime.getRuntime().availableProcessors(), node.metadata().cores());
+    Assertions.assertEquals(server.getWeight(), node.weight());
+    String addr = client.weightedRoundNode();
+    HelloReq helloReq = new HelloReq();
+    helloReq.msg = "ping";
+    HelloResp resp = client.send(addr, MsgId.HELLO, helloReq, 3000);
+    Assertions.assertEquals("pong", resp.msg);
+
+    // 修改权重后客户端发布新的快照，节点和连接保持不变
+    int weight = server.getWeight();
+    long version = client.getNodeSnapshot().version();
+    try {
+      server.setWeight(weight + 5);
+      long deadline = System.currentTimeMillis() + 3000;
+      while (node.weight() != weight + 5 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Assertions.assertEquals(weight + 5, node.weight());
+      Assertions.assertTrue(client.getNodeSnapshot().version() > version);
+      Assertions.assertSame(node, client.getNodeSnapshot().get(0));
+      Assertions.assertEquals(1, client.getConnectionCount(addr));
+      Assertions.assertEquals(addr, client.weightedRandomNode());
+    } finally {
+      server.setWeight(weight);
+    }
+    client.doClose();
+  }
+
+  @Test
+  void testWritePolicy() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    String addr = client.randomNode();
+    HelloReq helloReq = new HelloReq();
+    helloReq.msg = "ping";
+    HelloResp resp = client.send(addr, MsgId.HELLO, helloReq, 3000);
+    Assertions.assertEquals("pong", resp.msg);
+    // 极低的水位，连续发送时连接很快不可写
+    client.setWriteBufferWaterMark(8, 16);
+
+    client.setWritePolicy(WritePolicy.FAIL_FAST);
+    List<CompletableFuture<HelloResp>> calls = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      calls.add(
+          client.<HelloReq, HelloResp>call(addr, MsgId.HELLO, helloReq, 3000).toCompletableFuture());
+    }
+    int unwritable = 0;
+    for (CompletableFuture<HelloResp> call : calls) {
+      try {
+        Assertions.assertEquals("pong", call.get(3, TimeUnit.SECONDS).msg);
+      } catch (ExecutionException e) {
+        Assertions.assertEquals(CHANNEL_UNWRITABLE, ((RemotingException) e.getCause()).code);
+        unwritable++;
+      }
+    }
+    Assertions.assertTrue(unwritable > 0);
+
+    // 暂存的请求在连接恢复可写后全部发送
+    client.setWritePolicy(WritePolicy.QUEUE);
+    client.setWriteQueueSize(2000);
+    calls.clear();
+    for (int i = 0; i < 1000; i++) {
+      calls.add(
+          client.<HelloReq, HelloResp>call(addr, MsgId.HELLO, helloReq, 3000).toCompletableFuture());
+    }
+    for (CompletableFuture<HelloResp> call : calls) {
+      Assertions.assertEquals("pong", call.get(3, TimeUnit.SECONDS).msg);
+    }
+
+    client.setWritePolicy(WritePolicy.BLOCK);
+    for (int i = 0; i < 100; i++) {
+      resp = client.send(addr, MsgId.HELLO, helloReq, 3000);
+      Assertions.assertEquals("pong", resp.msg);
+    }
+    client.doClose();
+  }
+
+  @Test
+  void testTimeout() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    RemotingException remotingException =
+        Assertions.assertThrows(
+            RemotingException.class,
+            () -> client.send(client.randomNode(), MsgId.TIMEOUT, "ping", 1));
+    Assertions.assertEquals(TIME_OUT, remotingException.code);
+  }
+
+  @Test
+  void testChannelInactive() throws Throwable {
+    // 单独启动一个服务器，在请求处理期间关闭
+    String inactiveTopic = topic + "-inactive";
+    RpcServer server = new RpcServer(zkAddr, inactiveTopic, localIp, port + 1);
+    server.register(new TimeoutMsgHandler());
+    RpcClient client = new RpcClient(zkAddr, inactiveTopic);
+    new Thread(
+            () -> {
+              try {
+                Thread.sleep(300);
+              } catch (InterruptedException ignored) {
+              }
+              server.doClose();
+            })
+        .start();
+    long start = System.currentTimeMillis();
+    RemotingException remotingException =
+        Assertions.assertThrows(
+            RemotingException.class,
+            () -> client.send(localIp + ":" + (port + 1), MsgId.TIMEOUT, "ping", 10000));
+    Assertions.assertEquals(CHANNEL_INACTIVE, remotingException.code);
+    Assertions.assertTrue(System.currentTimeMillis() - start < 2000);
+  }
+
+  @Test
+  void testException() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    CountDownLatch latch = new CountDownLatch(1);
+    client.sendAsync(
+        client.randomNode(),
+        MsgId.EXCEPTION,
+        "",
+        3000,
+        new EasyRpcCallback<HelloResp>() {
+          @Override
+          public void success(HelloResp result) {}
+
+          @Override
+          public void fail(Throwable throwable) {
+            Assertions.assertTrue(throwable instanceof IllegalStateException);
+            latch.countDown();
+          }
+        });
+    latch.await();
+  }
+
+  @Test
+  void testNonGraphException() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    client.registerSerializer(MsgId.PLAIN_EXCEPTION, Serializers.get(Serializer.PROTOSTUFF));
+    // 异常对象之间有环，非图模式无法编码，退回图模式
+    IllegalStateException exception =
+        Assertions.assertThrows(
+            IllegalStateException.class,
+            () -> client.send(client.randomNode(), MsgId.PLAIN_EXCEPTION, "", 3000));
+    Assertions.assertEquals("plain", exception.getMessage());
+  }
+
+  @Test
+  void multiThreadTest() throws Throwable {
+    CountDownLatch latch = new CountDownLatch(5);
+    RpcClient client = new RpcClient(zkAddr, topic);
+
+    for (int i = 0; i < 5; i++) {
+      int threadId = i;
+      new Thread(
+              () -> {
+                try {
+                  String result =
+                      client.send(client.lowLatencyNode(), MsgId.MULTI_THREAD, threadId + "", 3000);
+                  Assertions.assertEquals(result, "thread-" + threadId);
+                  latch.countDown();
+                } catch (Throwable throwable) {
+                  System.err.println(throwable);
+                }
+              })
+          .start();
+    }
+    latch.await();
+  }
+
+  @Test
+  public void testDiscovery() throws Throwable {
+    RpcClient client = new RpcClient(zkAddr, topic);
+    String node = client.randomNode();
+    Assertions.assertEquals("127.0.0.1:8812", node);
+  }
+}
@@ -1,6 +1,9 @@
 package cn.ziav.rpc.bean;
 
+import cn.ziav.rpc.codec.RpcMessage;
+
 /** @author Zavi */
+@RpcMessage
 public class HelloResp {
   public String msg;
 }
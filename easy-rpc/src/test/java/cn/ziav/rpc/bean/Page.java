@@ -1,9 +1,11 @@
 package cn.ziav.rpc.bean;
 
+import cn.ziav.rpc.codec.RpcMessage;
 import java.io.Serializable;
 import java.util.List;
 
 /** @author Zavi */
+@RpcMessage
 public class Page<T> implements Serializable {
 
   private int pageNo;
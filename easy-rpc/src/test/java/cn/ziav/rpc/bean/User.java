@@ -1,11 +1,13 @@
 package cn.ziav.rpc.bean;
 
+import cn.ziav.rpc.codec.RpcMessage;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
 /** @author Zavi */
+@RpcMessage
 public class User implements Serializable {
 
   private long id;
@@ -0,0 +1,83 @@
+package cn.ziav.rpc.client;
+
+import cn.ziav.rpc.utils.IdGenerator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * 在途请求表争用压测：全局AtomicLong + ConcurrentHashMap vs 分段编号 + {@link InFlightTable}
+ *
+ * <p>每次操作模拟一次调用的生命周期：生成编号、放入、查找、移除，分别在32~256个调用线程下运行。
+ *
+ * @author Zavi
+ */
+@State(Scope.Benchmark)
+public class InFlightBenchmark {
+  /** 预先放入的在途请求数 */
+  private static final int IN_FLIGHT = 10_000;
+
+  private static final Object VALUE = new Object();
+
+  private final AtomicLong counter = new AtomicLong();
+
+  private final Map<Long, Object> map = new ConcurrentHashMap<>();
+
+  private final InFlightTable<Object> table = new InFlightTable<>();
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < IN_FLIGHT; i++) {
+      map.put(counter.getAndIncrement(), VALUE);
+      table.put(IdGenerator.next(), VALUE);
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public Object concurrentHashMap() {
+    long id = counter.getAndIncrement();
+    map.put(id, VALUE);
+    map.get(id);
+    return map.remove(id);
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public Object inFlightTable() {
+    long id = IdGenerator.next();
+    table.put(id, VALUE);
+    table.get(id);
+    return table.remove(id);
+  }
+
+  public static void main(String[] args) throws Throwable {
+    for (int threads : new int[] {32, 64, 128, 256}) {
+      Options opt =
+          new OptionsBuilder()
+              .timeUnit(TimeUnit.MICROSECONDS)
+              .include(InFlightBenchmark.class.getSimpleName())
+              .addProfiler(GCProfiler.class)
+              .warmupIterations(3) //
+              .warmupTime(TimeValue.seconds(3)) //
+              .measurementIterations(5) //
+              .measurementTime(TimeValue.seconds(5)) //
+              .threads(threads)
+              .forks(1)
+              .build();
+      new Runner(opt).run();
+    }
+  }
+}
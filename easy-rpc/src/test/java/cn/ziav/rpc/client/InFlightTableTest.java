@@ -0,0 +1,130 @@
+package cn.ziav.rpc.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link InFlightTable}与HashMap的对照测试，覆盖哈希冲突、删除时的后移补位（包括跨过表尾）以及扩容
+ *
+ * @author Zavi
+ */
+class InFlightTableTest {
+  /** 每段的初始容量，与{@link InFlightTable}一致 */
+  private static final int CAPACITY = 16;
+
+  @Test
+  void testRandomOperations() {
+    // 单个分段时所有键都在同一张表中冲突，多个分段时同时覆盖分段下标和段内寻址的哈希位划分
+    for (int concurrency : new int[] {1, 4, 64}) {
+      Random random = new Random(concurrency);
+      // 键的范围小，放入、删除频繁命中同一批键
+      long[] keys = new long[512];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = i < keys.length / 2 ? i : random.nextLong();
+      }
+      InFlightTable<Long> table = new InFlightTable<>(concurrency);
+      Map<Long, Long> oracle = new HashMap<>();
+      for (int i = 0; i < 200_000; i++) {
+        long key = keys[random.nextInt(keys.length)];
+        switch (random.nextInt(3)) {
+          case 0:
+            Long value = random.nextLong();
+            Assertions.assertEquals(oracle.put(key, value), table.put(key, value));
+            break;
+          case 1:
+            Assertions.assertEquals(oracle.remove(key), table.remove(key));
+            break;
+          default:
+            Assertions.assertEquals(oracle.get(key), table.get(key));
+        }
+        if (i % 10_000 == 0) {
+          assertSame(oracle, table, keys);
+        }
+      }
+      assertSame(oracle, table, keys);
+    }
+  }
+
+  @Test
+  void testWrapAround() {
+    InFlightTable<Long> table = new InFlightTable<>(1);
+    // 三个键的起始位置都是最后一个槽，依次占用最后一个槽和开头的两个槽，另外两个键的起始位置是第一个槽
+    List<Long> tail = keysAt(CAPACITY - 1, 3);
+    List<Long> head = keysAt(0, 2);
+    Map<Long, Long> oracle = new HashMap<>();
+    List<Long> keys = new ArrayList<>(tail);
+    keys.addAll(head);
+    for (long key : keys) {
+      Assertions.assertNull(table.put(key, key));
+      oracle.put(key, key);
+    }
+    long[] all = keys.stream().mapToLong(Long::longValue).toArray();
+    assertSame(oracle, table, all);
+
+    // 删除最后一个槽的键，后续的键跨过表尾依次前移
+    Assertions.assertEquals(tail.get(0), table.remove(tail.get(0)));
+    oracle.remove(tail.get(0));
+    assertSame(oracle, table, all);
+
+    // 删除开头的键，起始位置在表尾的键不能移到起始位置之前
+    Assertions.assertEquals(tail.get(2), table.remove(tail.get(2)));
+    oracle.remove(tail.get(2));
+    assertSame(oracle, table, all);
+
+    Assertions.assertEquals(head.get(0), table.remove(head.get(0)));
+    oracle.remove(head.get(0));
+    assertSame(oracle, table, all);
+    Assertions.assertNull(table.remove(head.get(0)));
+
+    // 重新放入后仍能找到
+    for (long key : keys) {
+      table.put(key, key + 1);
+      oracle.put(key, key + 1);
+    }
+    assertSame(oracle, table, all);
+  }
+
+  @Test
+  void testWrapAroundKeepsHomeSlot() {
+    InFlightTable<Long> table = new InFlightTable<>(1);
+    List<Long> tail = keysAt(CAPACITY - 1, 2);
+    long head = keysAt(0, 1).get(0);
+    // 依次占用最后一个槽、第一个槽（起始位置）和第二个槽
+    long[] keys = {tail.get(0), head, tail.get(1)};
+    Map<Long, Long> oracle = new HashMap<>();
+    for (long key : keys) {
+      table.put(key, key);
+      oracle.put(key, key);
+    }
+    // 删除最后一个槽的键，第一个槽的键已在起始位置不能移动，第二个槽的键跨过表尾移到最后一个槽
+    table.remove(tail.get(0));
+    oracle.remove(tail.get(0));
+    assertSame(oracle, table, keys);
+  }
+
+  /** 查找一段表中起始位置为指定槽的键 */
+  private static List<Long> keysAt(int slot, int count) {
+    List<Long> keys = new ArrayList<>();
+    for (long key = 1; keys.size() < count; key++) {
+      if ((InFlightTable.hash(key) & (CAPACITY - 1)) == slot) {
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+
+  private static void assertSame(Map<Long, Long> oracle, InFlightTable<Long> table, long[] keys) {
+    for (long key : keys) {
+      Assertions.assertEquals(oracle.get(key), table.get(key), "key=" + key);
+    }
+    Assertions.assertEquals(oracle.size(), table.size());
+    Assertions.assertEquals(new HashSet<>(oracle.values()), new HashSet<>(table.values()));
+    Assertions.assertEquals(oracle.size(), table.values().size());
+  }
+}
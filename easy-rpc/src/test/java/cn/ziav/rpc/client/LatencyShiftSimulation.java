@@ -0,0 +1,137 @@
+package cn.ziav.rpc.client;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点变慢后流量转移的模拟（虚拟时钟）
+ *
+ * <p>5个节点，每个节点4个工作线程，第一个节点的服务时间约0.8ms，其余约1.5ms；第30秒起第一个节点的服务时间变为2.5ms。
+ * 以每秒2000次的速率发起请求，每100ms统计一次发往变慢节点的请求比例，对比峰值EWMA评分和原先的累计平均响应时间。
+ * 后者按毫秒取整，无法区分亚毫秒的差异，所有请求都集中到同一个节点上，节点变慢后要等请求在该节点上排队、
+ * 累计平均值超过其他节点才整体切换。
+ *
+ * @author Zavi
+ */
+public class LatencyShiftSimulation {
+  private static final int NODES = 5;
+
+  private static final int WORKERS = 4;
+
+  private static final long INTERVAL = TimeUnit.MICROSECONDS.toNanos(500);
+
+  private static final int SECONDS = 60;
+
+  private static final int SLOW_AT = 30;
+
+  /** 统计窗口 */
+  private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private static final int WINDOWS = (int) (TimeUnit.SECONDS.toNanos(SECONDS) / WINDOW);
+
+  /** 选择节点的策略 */
+  private interface Policy {
+    ServerNode select(ServerNode[] nodes, long now);
+  }
+
+  /** 峰值EWMA评分，与{@link cn.ziav.rpc.loadbalance.LowLatencyLoadBalancer}相同，只是使用虚拟时钟 */
+  private static ServerNode peakEwma(ServerNode[] nodes, long now) {
+    ServerNode best = null;
+    double bestScore = Double.MAX_VALUE;
+    for (ServerNode node : nodes) {
+      double score = node.score(now);
+      if (score < bestScore) {
+        best = node;
+        bestScore = score;
+      }
+    }
+    return best;
+  }
+
+  /** 原先的累计平均响应时间（毫秒） */
+  private static ServerNode lifetimeAverage(ServerNode[] nodes, long now) {
+    ServerNode best = null;
+    double bestTime = Double.MAX_VALUE;
+    for (ServerNode node : nodes) {
+      double time = node.calAvgRespTime();
+      if (time < bestTime) {
+        best = node;
+        bestTime = time;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * @param policy 选择节点的策略
+   * @return 每个窗口发往第一个节点的请求比例
+   */
+  private static double[] run(Policy policy) {
+    Random random = new Random(1);
+    long start = System.nanoTime();
+    ServerNode[] nodes = new ServerNode[NODES];
+    long[][] workers = new long[NODES][WORKERS];
+    for (int i = 0; i < NODES; i++) {
+      nodes[i] = new ServerNode("10.0.0." + i + ":9000");
+      for (int j = 0; j < WORKERS; j++) {
+        workers[i][j] = start;
+      }
+    }
+    // 待完成的请求：完成时间、节点下标、发起时间
+    PriorityQueue<long[]> completions = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+    int[] total = new int[WINDOWS];
+    int[] slow = new int[WINDOWS];
+    long end = start + TimeUnit.SECONDS.toNanos(SECONDS);
+    for (long now = start; now < end; now += INTERVAL) {
+      while (!completions.isEmpty() && completions.peek()[0] <= now) {
+        long[] c = completions.poll();
+        nodes[(int) c[1]].requestFinished(c[0] - c[2], c[0]);
+      }
+      ServerNode node = policy.select(nodes, now);
+      int index = Integer.parseInt(node.addr.substring(7, 8));
+      int second = (int) TimeUnit.NANOSECONDS.toSeconds(now - start);
+      long service;
+      if (index == 0) {
+        service = second >= SLOW_AT ? 2_500_000 : 800_000;
+      } else {
+        service = 1_500_000;
+      }
+      service += (long) (random.nextGaussian() * service / 10);
+      // 选择最早空闲的工作线程
+      long[] free = workers[index];
+      int worker = 0;
+      for (int j = 1; j < WORKERS; j++) {
+        if (free[j] < free[worker]) {
+          worker = j;
+        }
+      }
+      long finish = Math.max(now, free[worker]) + Math.max(service, 0);
+      free[worker] = finish;
+      node.requestStarted();
+      completions.add(new long[] {finish, index, now});
+      int window = (int) ((now - start) / WINDOW);
+      total[window]++;
+      if (index == 0) {
+        slow[window]++;
+      }
+    }
+    double[] share = new double[WINDOWS];
+    for (int i = 0; i < WINDOWS; i++) {
+      share[i] = slow[i] * 1.0 / total[i];
+    }
+    return share;
+  }
+
+  public static void main(String[] args) {
+    double[] ewma = run(LatencyShiftSimulation::peakEwma);
+    double[] average = run(LatencyShiftSimulation::lifetimeAverage);
+    System.out.println("  time(ms)  peak-ewma  lifetime-average");
+    int from = (int) (TimeUnit.SECONDS.toNanos(SLOW_AT) / WINDOW) - 5;
+    for (int i = from; i < from + 30; i++) {
+      System.out.printf(
+          "%10d  %9.3f  %16.3f%n",
+          TimeUnit.NANOSECONDS.toMillis(i * WINDOW), ewma[i], average[i]);
+    }
+  }
+}
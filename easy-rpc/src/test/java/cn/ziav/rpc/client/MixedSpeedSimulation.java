@@ -0,0 +1,128 @@
+package cn.ziav.rpc.client;
+
+import cn.ziav.rpc.common.NodeMetadata;
+import cn.ziav.rpc.loadbalance.LeastActiveLoadBalancer;
+import cn.ziav.rpc.loadbalance.LoadBalancer;
+import cn.ziav.rpc.loadbalance.NodeSnapshot;
+import cn.ziav.rpc.loadbalance.RandomLoadBalancer;
+import cn.ziav.rpc.loadbalance.RoundRobinLoadBalancer;
+import cn.ziav.rpc.loadbalance.WeightedRandomLoadBalancer;
+import cn.ziav.rpc.loadbalance.WeightedRoundRobinLoadBalancer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 新旧机型混合部署时各负载均衡策略的模拟（虚拟时钟）
+ *
+ * <p>8个节点，每个节点4个工作线程，其中4个新机型节点的服务时间约1ms，4个旧机型节点约3ms。请求按泊松过程到达，
+ * 分别以总处理能力的30%~90%发起请求，对比随机、轮询、二选一最少在途请求以及按处理能力发布权重（3:1）的加权随机和平滑加权轮询的
+ * 平均延迟、P99延迟和旧机型节点分到的请求比例。随机和轮询平均分配请求，负载超过旧机型的处理能力后请求在旧机型节点上排队；
+ * 二选一按在途请求数把多出的请求转到新机型节点上，加权策略按权重预先分配。
+ *
+ * @author Zavi
+ */
+public class MixedSpeedSimulation {
+  private static final int NODES = 8;
+
+  /** 前一半为新机型节点 */
+  private static final int FAST_NODES = NODES / 2;
+
+  private static final int WORKERS = 4;
+
+  private static final long FAST_SERVICE = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private static final long SLOW_SERVICE = TimeUnit.MILLISECONDS.toNanos(3);
+
+  private static final int SECONDS = 20;
+
+  /** 所有节点每纳秒能处理的请求数 */
+  private static final double CAPACITY =
+      WORKERS * (FAST_NODES * 1.0 / FAST_SERVICE + (NODES - FAST_NODES) * 1.0 / SLOW_SERVICE);
+
+  /**
+   * @param balancer 负载均衡策略
+   * @param load 发起请求的速率占总处理能力的比例
+   * @return 平均延迟（毫秒）、P99延迟（毫秒）、旧机型节点分到的请求比例
+   */
+  private static double[] run(LoadBalancer balancer, double load) {
+    Random random = new Random(1);
+    List<ServerNode> list = new ArrayList<>();
+    for (int i = 0; i < NODES; i++) {
+      ServerNode node = new ServerNode("10.0.0." + i + ":9000");
+      // 权重与处理能力成正比
+      node.updateMetadata(new NodeMetadata(i < FAST_NODES ? 3 : 1, WORKERS));
+      list.add(node);
+    }
+    NodeSnapshot snapshot = new NodeSnapshot(1, list);
+    long[][] workers = new long[NODES][WORKERS];
+    // 待完成的请求：完成时间、节点下标
+    PriorityQueue<long[]> completions = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+    double interval = 1 / (CAPACITY * load);
+    long end = TimeUnit.SECONDS.toNanos(SECONDS);
+    long[] latencies = new long[(int) (end / interval * 1.1)];
+    int count = 0;
+    int slow = 0;
+    for (long now = 0; now < end && count < latencies.length; ) {
+      now += (long) (-Math.log(1 - random.nextDouble()) * interval);
+      while (!completions.isEmpty() && completions.peek()[0] <= now) {
+        long[] c = completions.poll();
+        snapshot.get((int) c[1]).requestFinished(0, c[0]);
+      }
+      ServerNode node = balancer.select(snapshot, null);
+      int index = Integer.parseInt(node.addr.substring(7, 8));
+      long service = index < FAST_NODES ? FAST_SERVICE : SLOW_SERVICE;
+      service = (long) (-Math.log(1 - random.nextDouble()) * service);
+      // 选择最早空闲的工作线程
+      long[] free = workers[index];
+      int worker = 0;
+      for (int j = 1; j < WORKERS; j++) {
+        if (free[j] < free[worker]) {
+          worker = j;
+        }
+      }
+      long finish = Math.max(now, free[worker]) + service;
+      free[worker] = finish;
+      node.requestStarted();
+      completions.add(new long[] {finish, index});
+      latencies[count++] = finish - now;
+      if (index >= FAST_NODES) {
+        slow++;
+      }
+    }
+    long[] sorted = Arrays.copyOf(latencies, count);
+    Arrays.sort(sorted);
+    double sum = 0;
+    for (long latency : sorted) {
+      sum += latency;
+    }
+    return new double[] {
+      sum / count / 1e6, sorted[(int) (count * 0.99)] / 1e6, slow * 1.0 / count
+    };
+  }
+
+  public static void main(String[] args) {
+    String[] names = {
+      "random", "round-robin", "least-active", "weighted-random", "weighted-round"
+    };
+    System.out.println("load  balancer         avg(ms)  p99(ms)  slow-share");
+    for (double load : new double[] {0.3, 0.5, 0.7, 0.9}) {
+      LoadBalancer[] balancers = {
+        new RandomLoadBalancer(),
+        new RoundRobinLoadBalancer(),
+        new LeastActiveLoadBalancer(),
+        new WeightedRandomLoadBalancer(),
+        new WeightedRoundRobinLoadBalancer()
+      };
+      for (int i = 0; i < balancers.length; i++) {
+        double[] result = run(balancers[i], load);
+        System.out.printf(
+            "%4.1f  %-15s  %7.2f  %7.2f  %10.3f%n",
+            load, names[i], result[0], result[1], result[2]);
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package cn.ziav.rpc.codec;
+
+import static cn.ziav.rpc.common.Constants.FLAG_REQUEST;
+import static cn.ziav.rpc.common.Constants.FLAG_TWOWAY;
+import static cn.ziav.rpc.common.Constants.HEADER_LENGTH;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import cn.ziav.rpc.common.Constants;
+import cn.ziav.rpc.common.MsgRequest;
+import cn.ziav.rpc.utils.Bytes;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.protostuff.GraphIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * 解码器对比压测：基于字节数组拷贝的旧解码器 vs 直接在ByteBuf上解析的{@link RpcDecoder}
+ *
+ * @author Zavi
+ */
+@State(Scope.Thread)
+public class DecoderBenchmark {
+
+  /** 消息体大小：100B、4KB、1MB */
+  @Param({"100", "4096", "1048576"})
+  public int size;
+
+  private ByteBuf frame;
+
+  private final RpcDecoder decoder = new RpcDecoder(false);
+
+  private final LegacyDecoder legacyDecoder = new LegacyDecoder();
+
+  @Setup
+  public void encode() {
+    MsgRequest<String> request = new MsgRequest<>();
+    request.mId = 1;
+    request.mData = RandomStringUtils.randomAlphanumeric(size);
+    // 通过编码器生成一个完整的数据包
+    EmbeddedChannel channel = new EmbeddedChannel(new RpcEncoder());
+    channel.writeOutbound(request);
+    frame = channel.readOutbound();
+  }
+
+  @TearDown
+  public void release() {
+    frame.release();
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public Object decode() throws Exception {
+    ByteBuf input = frame.retainedDuplicate();
+    try {
+      return decoder.decode(null, input);
+    } finally {
+      input.release();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public Object legacyDecode() throws Exception {
+    ByteBuf input = frame.retainedDuplicate();
+    try {
+      return legacyDecoder.decode(null, input);
+    } finally {
+      input.release();
+    }
+  }
+
+  /** 改造前的解码器：协议头和消息体都先拷贝到字节数组再解析 */
+  private static class LegacyDecoder extends LengthFieldBasedFrameDecoder {
+
+    LegacyDecoder() {
+      super(LITTLE_ENDIAN, Constants.DEFAULT_PAYLOAD, 0, 4, 0, 4, true);
+    }
+
+    @Override
+    public Object decode(ChannelHandlerContext ctx, ByteBuf input) throws Exception {
+      ByteBuf frame = (ByteBuf) super.decode(ctx, input);
+      try {
+        byte[] header = new byte[HEADER_LENGTH];
+        frame.readBytes(header);
+
+        int len = Bytes.bytes2int(header, 16);
+        byte flag = header[2];
+        MsgRequest req = new MsgRequest(Bytes.bytes2long(header, 4), Bytes.bytes2int(header, 12));
+        req.mTwoWay = (flag & FLAG_TWOWAY) != 0;
+        if ((flag & FLAG_REQUEST) != 0) {
+          Schema<Wrapper> schema = RuntimeSchema.getSchema(Wrapper.class);
+          Wrapper wrapper = schema.newMessage();
+          byte[] bytes = new byte[len];
+          frame.readBytes(bytes);
+          GraphIOUtil.mergeFrom(bytes, wrapper, schema);
+          req.mData = wrapper.getData();
+        }
+        return req;
+      } finally {
+        frame.release();
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Throwable {
+    Options opt =
+        new OptionsBuilder()
+            .timeUnit(TimeUnit.MICROSECONDS)
+            .include(DecoderBenchmark.class.getSimpleName())
+            .warmupIterations(3) //
+            .warmupTime(TimeValue.seconds(3)) //
+            .measurementIterations(5) //
+            .measurementTime(TimeValue.seconds(5)) //
+            .forks(1)
+            .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,100 @@
+package cn.ziav.rpc.codec;
+
+import cn.ziav.rpc.bean.Page;
+import cn.ziav.rpc.bean.Page_RpcSchema;
+import cn.ziav.rpc.bean.User;
+import cn.ziav.rpc.bean.User_RpcSchema;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 编译期生成的Schema与RuntimeSchema的编码一致性：两者编码的字节相同，并且能互相解码
+ *
+ * @author Zavi
+ */
+class GeneratedSchemaTest {
+
+  @Test
+  void testUser() throws IOException {
+    Schema<User> generated = Schemas.getSchema(User.class);
+    Assertions.assertTrue(generated instanceof User_RpcSchema);
+    assertSameEncoding(newUser(1), generated, RuntimeSchema.createFrom(User.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testPage() throws IOException {
+    Schema<Page> generated = Schemas.getSchema(Page.class);
+    Assertions.assertTrue(generated instanceof Page_RpcSchema);
+    Page<User> page = new Page<>();
+    page.setPageNo(2);
+    page.setTotal(30);
+    // 集合中的null元素与RuntimeSchema一样被跳过
+    page.setResult(new ArrayList<>(Arrays.asList(newUser(1), null, newUser(2))));
+    byte[] bytes = assertSameEncoding(page, generated, RuntimeSchema.createFrom(Page.class));
+
+    Page<User> copy = decode(bytes, generated);
+    Assertions.assertEquals(2, copy.getResult().size());
+    Assertions.assertEquals(newUser(2).toString(), copy.getResult().get(1).toString());
+  }
+
+  /**
+   * 断言两个Schema编码的字节相同，并且各自能解码对方编码的字节
+   *
+   * @return 编码后的字节
+   */
+  private static <T> byte[] assertSameEncoding(T message, Schema<T> generated, Schema<T> runtime)
+      throws IOException {
+    byte[] bytes = encode(message, generated);
+    Assertions.assertArrayEquals(encode(message, runtime), bytes);
+    Assertions.assertArrayEquals(bytes, encode(decode(bytes, runtime), generated));
+    Assertions.assertArrayEquals(bytes, encode(decode(bytes, generated), runtime));
+    return bytes;
+  }
+
+  private static <T> byte[] encode(T message, Schema<T> schema) throws IOException {
+    ByteBuf buf = Unpooled.buffer();
+    try {
+      ProtostuffCodec.writeTo(buf, message, schema, false);
+      return ByteBufUtil.getBytes(buf);
+    } finally {
+      buf.release();
+    }
+  }
+
+  private static <T> T decode(byte[] bytes, Schema<T> schema) throws IOException {
+    return ProtostuffCodec.readFrom(Unpooled.wrappedBuffer(bytes), 0, bytes.length, schema, false);
+  }
+
+  private static User newUser(long id) {
+    User user = new User();
+    user.setId(id);
+    user.setName("user" + id);
+    user.setSex(1);
+    user.setBirthday(LocalDate.of(1990, 5, 17));
+    user.setEmail("user" + id + "@ziav.cn");
+    user.setMobile("13800000000");
+    user.setAddress("杭州市西湖区");
+    user.setIcon("https://ziav.cn/icon/" + id);
+    List<Integer> permissions = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      permissions.add(i);
+    }
+    user.setPermissions(permissions);
+    user.setStatus(1);
+    user.setCreateTime(LocalDateTime.of(2019, 12, 1, 8, 30, 15));
+    user.setUpdateTime(LocalDateTime.of(2019, 12, 2, 9, 45, 0, 500));
+    return user;
+  }
+}
@@ -0,0 +1,93 @@
+package cn.ziav.rpc.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * 标量消息体编解码对比压测：{@link ScalarCodec} vs {@link Wrapper}+ProtoStuff，附带GC分配统计
+ *
+ * @author Zavi
+ */
+@State(Scope.Thread)
+public class ScalarBenchmark {
+
+  /** 消息体类型 */
+  @Param({"int", "long", "boolean", "string"})
+  public String type;
+
+  private Object data;
+
+  private byte tag;
+
+  private ByteBuf buf;
+
+  @Setup
+  public void setup() {
+    switch (type) {
+      case "int":
+        data = 1234567;
+        break;
+      case "long":
+        data = System.currentTimeMillis();
+        break;
+      case "boolean":
+        data = Boolean.TRUE;
+        break;
+      default:
+        data = RandomStringUtils.randomAlphanumeric(32);
+    }
+    tag = ScalarCodec.tagOf(data);
+    buf = PooledByteBufAllocator.DEFAULT.directBuffer(256);
+  }
+
+  @TearDown
+  public void release() {
+    buf.release();
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public Object scalar() throws Exception {
+    buf.clear();
+    ScalarCodec.writeTo(buf, data, tag);
+    return ScalarCodec.readFrom(buf, 0, buf.readableBytes(), tag);
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public Object wrapper() throws Exception {
+    buf.clear();
+    ProtostuffCodec.writeTo(buf, data, true);
+    return ProtostuffCodec.readFrom(buf, 0, buf.readableBytes(), true);
+  }
+
+  public static void main(String[] args) throws Throwable {
+    Options opt =
+        new OptionsBuilder()
+            .timeUnit(TimeUnit.NANOSECONDS)
+            .include(ScalarBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .warmupIterations(3) //
+            .warmupTime(TimeValue.seconds(3)) //
+            .measurementIterations(5) //
+            .measurementTime(TimeValue.seconds(5)) //
+            .forks(1)
+            .build();
+    new Runner(opt).run();
+  }
+}
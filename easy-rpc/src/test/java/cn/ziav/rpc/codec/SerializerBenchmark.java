@@ -0,0 +1,102 @@
+package cn.ziav.rpc.codec;
+
+import cn.ziav.rpc.bean.Page;
+import cn.ziav.rpc.bean.User;
+import cn.ziav.rpc.handler.GetUserMsgHandler;
+import cn.ziav.rpc.handler.ListUserMsgHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * ProtoStuff图模式 vs 非图模式压测，消息体分别为{@link User}和{@code Page<User>}
+ *
+ * @author Zavi
+ */
+@State(Scope.Thread)
+public class SerializerBenchmark {
+
+  /** 消息体 */
+  @Param({"user", "page"})
+  public String payload;
+
+  /** 序列化器编号：0为图模式，9为非图模式 */
+  @Param({"0", "9"})
+  public int serializerId;
+
+  /** 消息体是否绑定具体类型 */
+  @Param({"true", "false"})
+  public boolean typed;
+
+  private Object data;
+
+  private Class<?> type;
+
+  private Serializer serializer;
+
+  private ByteBuf out;
+
+  private ByteBuf in;
+
+  @Setup
+  public void setup() throws Throwable {
+    if ("user".equals(payload)) {
+      data = new GetUserMsgHandler().process(1);
+    } else {
+      data = new ListUserMsgHandler().process(1);
+    }
+    type = typed ? data.getClass() : null;
+    serializer = Serializers.get(serializerId);
+    out = PooledByteBufAllocator.DEFAULT.directBuffer(64 * 1024);
+    in = PooledByteBufAllocator.DEFAULT.directBuffer(64 * 1024);
+    serializer.writeTo(in, data, type);
+  }
+
+  @TearDown
+  public void release() {
+    out.release();
+    in.release();
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public ByteBuf serialize() throws Exception {
+    out.clear();
+    serializer.writeTo(out, data, type);
+    return out;
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public Object deserialize() throws Exception {
+    return serializer.readFrom(in, in.readerIndex(), in.readableBytes(), type);
+  }
+
+  public static void main(String[] args) throws Throwable {
+    Options opt =
+        new OptionsBuilder()
+            .timeUnit(TimeUnit.MICROSECONDS)
+            .include(SerializerBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .warmupIterations(3) //
+            .warmupTime(TimeValue.seconds(3)) //
+            .measurementIterations(5) //
+            .measurementTime(TimeValue.seconds(5)) //
+            .forks(1)
+            .build();
+    new Runner(opt).run();
+  }
+}
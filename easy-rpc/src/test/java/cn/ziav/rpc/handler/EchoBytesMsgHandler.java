@@ -0,0 +1,17 @@
+package cn.ziav.rpc.handler;
+
+import cn.ziav.rpc.server.IMsgHandler;
+
+/** @author Zavi */
+public class EchoBytesMsgHandler implements IMsgHandler<byte[], byte[]> {
+
+  @Override
+  public byte[] process(byte[] bytes) {
+    return bytes;
+  }
+
+  @Override
+  public int msgId() {
+    return MsgId.ECHO_BYTES;
+  }
+}
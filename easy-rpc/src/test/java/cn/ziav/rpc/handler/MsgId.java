@@ -10,4 +10,6 @@ public interface MsgId {
   int LIST_USER = 6;
   int CREATE_USER = 7;
   int EXIST_USER = 8;
+  int ECHO_BYTES = 9;
+  int PLAIN_EXCEPTION = 10;
 }
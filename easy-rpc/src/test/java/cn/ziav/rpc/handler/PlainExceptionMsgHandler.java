@@ -0,0 +1,29 @@
+package cn.ziav.rpc.handler;
+
+import cn.ziav.rpc.codec.Serializer;
+import cn.ziav.rpc.codec.Serializers;
+import cn.ziav.rpc.server.IMsgHandler;
+
+/** @author Zavi */
+public class PlainExceptionMsgHandler implements IMsgHandler<String, String> {
+
+  @Override
+  public String process(String s) throws Throwable {
+    // 异常与cause互相引用
+    IllegalStateException exception = new IllegalStateException("plain");
+    RuntimeException cause = new RuntimeException("cause");
+    exception.initCause(cause);
+    cause.initCause(exception);
+    throw exception;
+  }
+
+  @Override
+  public int msgId() {
+    return MsgId.PLAIN_EXCEPTION;
+  }
+
+  @Override
+  public Serializer serializer() {
+    return Serializers.get(Serializer.PROTOSTUFF);
+  }
+}
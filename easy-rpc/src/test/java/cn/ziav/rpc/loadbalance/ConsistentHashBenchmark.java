@@ -0,0 +1,136 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * 一致性哈希压测：查找耗时、节点增减时的重建耗时，以及节点增减时路由键的移动比例（与取模对比）
+ *
+ * @author Zavi
+ */
+@State(Scope.Thread)
+public class ConsistentHashBenchmark {
+  /** 统计移动比例的路由键数量 */
+  private static final int KEYS = 100_000;
+
+  @Param({"10", "100", "1000"})
+  private int nodes;
+
+  private final ConsistentHashLoadBalancer ring = new ConsistentHashLoadBalancer();
+
+  private final ConsistentHashLoadBalancer rebuildRing = new ConsistentHashLoadBalancer();
+
+  private NodeSnapshot snapshot;
+
+  /** 节点列表 */
+  private List<ServerNode> nodeList;
+
+  /** 多一个节点的节点列表 */
+  private List<ServerNode> grownList;
+
+  private long version;
+
+  private Integer[] keys;
+
+  private int index;
+
+  @Setup
+  public void setup() {
+    nodeList = nodes(nodes);
+    grownList = nodes(nodes + 1);
+    snapshot = new NodeSnapshot(1, nodeList);
+    ring.nodesChanged(snapshot);
+    keys = new Integer[1024];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = i * 7919;
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public ServerNode ringLookup() {
+    return ring.select(snapshot, keys[index++ & (keys.length - 1)]);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public ServerNode moduloLookup() {
+    Integer key = keys[index++ & (keys.length - 1)];
+    return snapshot.get(Math.floorMod(key.hashCode(), snapshot.size()));
+  }
+
+  /** 交替增加、移除一个节点，只为变化的节点计算虚拟节点 */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void rebuild() {
+    version++;
+    rebuildRing.nodesChanged(new NodeSnapshot(version, (version & 1) == 0 ? nodeList : grownList));
+  }
+
+  private static List<ServerNode> nodes(int count) {
+    List<ServerNode> nodes = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      nodes.add(new ServerNode("10.0." + (i >> 8) + "." + (i & 0xFF) + ":9000"));
+    }
+    return nodes;
+  }
+
+  /** 打印增加一个节点后路由键的移动比例，理想值为1/(n+1) */
+  private static void printKeyMovement() {
+    for (int n : new int[] {10, 100, 1000}) {
+      NodeSnapshot before = new NodeSnapshot(1, nodes(n));
+      NodeSnapshot after = new NodeSnapshot(2, nodes(n + 1));
+      ConsistentHashLoadBalancer beforeRing = new ConsistentHashLoadBalancer();
+      ConsistentHashLoadBalancer afterRing = new ConsistentHashLoadBalancer();
+      int ringMoved = 0;
+      int moduloMoved = 0;
+      for (int i = 0; i < KEYS; i++) {
+        Integer key = i;
+        if (!beforeRing.select(before, key).addr.equals(afterRing.select(after, key).addr)) {
+          ringMoved++;
+        }
+        String moduloBefore = before.get(Math.floorMod(key.hashCode(), n)).addr;
+        String moduloAfter = after.get(Math.floorMod(key.hashCode(), n + 1)).addr;
+        if (!moduloBefore.equals(moduloAfter)) {
+          moduloMoved++;
+        }
+      }
+      System.out.printf(
+          "nodes=%d ideal=%.4f ring=%.4f modulo=%.4f%n",
+          n, 1.0 / (n + 1), ringMoved * 1.0 / KEYS, moduloMoved * 1.0 / KEYS);
+    }
+  }
+
+  public static void main(String[] args) throws Throwable {
+    printKeyMovement();
+    Options opt =
+        new OptionsBuilder()
+            .include(ConsistentHashBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .warmupIterations(3) //
+            .warmupTime(TimeValue.seconds(3)) //
+            .measurementIterations(5) //
+            .measurementTime(TimeValue.seconds(5)) //
+            .forks(1)
+            .build();
+    new Runner(opt).run();
+  }
+}
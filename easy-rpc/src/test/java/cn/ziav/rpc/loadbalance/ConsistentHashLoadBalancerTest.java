@@ -0,0 +1,122 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link ConsistentHashLoadBalancer}增量重建的正确性：与按同一快照全量构建的哈希环路由一致，节点上下线时只有相关的键移动
+ *
+ * @author Zavi
+ */
+class ConsistentHashLoadBalancerTest {
+  private static final int KEYS = 100_000;
+
+  @Test
+  void testIncrementalEqualsFullRebuild() {
+    ConsistentHashLoadBalancer balancer = new ConsistentHashLoadBalancer();
+    Random random = new Random(1);
+    long version = 0;
+    List<String> addrs = new ArrayList<>();
+    int next = 0;
+    for (int round = 0; round < 30; round++) {
+      // 每轮随机下线一部分节点、上线若干新节点，并打乱快照中的顺序，节点下标随之改变
+      addrs.removeIf(addr -> random.nextInt(4) == 0);
+      int added = random.nextInt(4);
+      for (int i = 0; i < added; i++) {
+        addrs.add("10.0.0." + next++ + ":9000");
+      }
+      Collections.shuffle(addrs, random);
+      NodeSnapshot snapshot = snapshot(++version, addrs);
+      balancer.nodesChanged(snapshot);
+      // 新实例从空环开始，所有节点都按新增处理，即全量构建
+      ConsistentHashLoadBalancer full = new ConsistentHashLoadBalancer();
+      for (int key = 0; key < KEYS; key++) {
+        Assertions.assertEquals(
+            addr(full.select(snapshot, key)), addr(balancer.select(snapshot, key)), "key=" + key);
+      }
+    }
+  }
+
+  @Test
+  void testOnlyRemovedNodeKeysMove() {
+    List<String> addrs = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      addrs.add("10.0.0." + i + ":9000");
+    }
+    ConsistentHashLoadBalancer balancer = new ConsistentHashLoadBalancer();
+    NodeSnapshot before = snapshot(1, addrs);
+    String[] owners = route(balancer, before);
+
+    String removed = addrs.remove(3);
+    NodeSnapshot after = snapshot(2, addrs);
+    String[] moved = route(balancer, after);
+    int movedKeys = 0;
+    for (int key = 0; key < KEYS; key++) {
+      Assertions.assertNotEquals(removed, moved[key]);
+      if (!owners[key].equals(removed)) {
+        Assertions.assertEquals(owners[key], moved[key], "key=" + key);
+      } else {
+        movedKeys++;
+      }
+    }
+    Assertions.assertTrue(movedKeys > 0);
+  }
+
+  @Test
+  void testOnlyKeysToAddedNodeMove() {
+    List<String> addrs = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      addrs.add("10.0.0." + i + ":9000");
+    }
+    ConsistentHashLoadBalancer balancer = new ConsistentHashLoadBalancer();
+    String[] owners = route(balancer, snapshot(1, addrs));
+
+    String added = "10.0.0.100:9000";
+    // 新节点插在快照中间，其后节点的下标都会改变
+    addrs.add(4, added);
+    String[] moved = route(balancer, snapshot(2, addrs));
+    int movedKeys = 0;
+    for (int key = 0; key < KEYS; key++) {
+      if (!moved[key].equals(owners[key])) {
+        Assertions.assertEquals(added, moved[key], "key=" + key);
+        movedKeys++;
+      }
+    }
+    Assertions.assertTrue(movedKeys > 0);
+  }
+
+  @Test
+  void testEmptySnapshot() {
+    ConsistentHashLoadBalancer balancer = new ConsistentHashLoadBalancer();
+    List<String> addrs = new ArrayList<>();
+    addrs.add("10.0.0.1:9000");
+    Assertions.assertEquals("10.0.0.1:9000", addr(balancer.select(snapshot(1, addrs), 1)));
+    Assertions.assertNull(balancer.select(snapshot(2, new ArrayList<>()), 1));
+    Assertions.assertEquals("10.0.0.1:9000", addr(balancer.select(snapshot(3, addrs), 1)));
+  }
+
+  private static String[] route(ConsistentHashLoadBalancer balancer, NodeSnapshot snapshot) {
+    String[] owners = new String[KEYS];
+    for (int key = 0; key < KEYS; key++) {
+      owners[key] = addr(balancer.select(snapshot, key));
+    }
+    return owners;
+  }
+
+  private static NodeSnapshot snapshot(long version, List<String> addrs) {
+    List<ServerNode> nodes = new ArrayList<>();
+    for (String addr : addrs) {
+      nodes.add(new ServerNode(addr));
+    }
+    return new NodeSnapshot(version, nodes);
+  }
+
+  private static String addr(ServerNode node) {
+    return node == null ? null : node.addr;
+  }
+}
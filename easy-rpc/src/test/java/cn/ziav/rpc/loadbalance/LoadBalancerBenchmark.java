@@ -0,0 +1,138 @@
+package cn.ziav.rpc.loadbalance;
+
+import cn.ziav.rpc.client.ServerNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * 负载均衡选择节点的争用压测：全局锁保护的节点列表 vs 不可变快照
+ *
+ * @author Zavi
+ */
+@State(Scope.Benchmark)
+public class LoadBalancerBenchmark {
+  private static final int NODES = 16;
+
+  private final List<String> nodeList = new ArrayList<>();
+
+  private final Lock lock = new ReentrantLock();
+
+  private int roundIdx = 0;
+
+  private NodeSnapshot snapshot;
+
+  private final LoadBalancer random = new RandomLoadBalancer();
+
+  private final LoadBalancer roundRobin = new RoundRobinLoadBalancer();
+
+  private final LoadBalancer lowLatency = new LowLatencyLoadBalancer();
+
+  private final LoadBalancer leastActive = new LeastActiveLoadBalancer();
+
+  private final LoadBalancer weightedRandom = new WeightedRandomLoadBalancer();
+
+  private final LoadBalancer weightedRoundRobin = new WeightedRoundRobinLoadBalancer();
+
+  @Setup
+  public void setup() {
+    List<ServerNode> nodes = new ArrayList<>();
+    for (int i = 0; i < NODES; i++) {
+      String addr = "10.0.0." + i + ":9000";
+      nodeList.add(addr);
+      nodes.add(new ServerNode(addr));
+    }
+    snapshot = new NodeSnapshot(1, nodes);
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public String lockedRandom() {
+    lock.lock();
+    try {
+      return nodeList.get(ThreadLocalRandom.current().nextInt(nodeList.size()));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public String lockedRound() {
+    lock.lock();
+    try {
+      if (roundIdx > nodeList.size() - 1) {
+        roundIdx = 0;
+      }
+      return nodeList.get(roundIdx++);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public ServerNode snapshotRandom() {
+    return random.select(snapshot, null);
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public ServerNode snapshotRound() {
+    return roundRobin.select(snapshot, null);
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public ServerNode snapshotLowLatency() {
+    return lowLatency.select(snapshot, null);
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public ServerNode snapshotLeastActive() {
+    return leastActive.select(snapshot, null);
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public ServerNode snapshotWeightedRandom() {
+    return weightedRandom.select(snapshot, null);
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public ServerNode snapshotWeightedRound() {
+    return weightedRoundRobin.select(snapshot, null);
+  }
+
+  public static void main(String[] args) throws Throwable {
+    Options opt =
+        new OptionsBuilder()
+            .timeUnit(TimeUnit.MICROSECONDS)
+            .include(LoadBalancerBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .warmupIterations(3) //
+            .warmupTime(TimeValue.seconds(3)) //
+            .measurementIterations(5) //
+            .measurementTime(TimeValue.seconds(5)) //
+            .threads(32)
+            .forks(1)
+            .build();
+    new Runner(opt).run();
+  }
+}
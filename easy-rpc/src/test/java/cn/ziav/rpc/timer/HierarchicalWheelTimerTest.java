@@ -0,0 +1,161 @@
+package cn.ziav.rpc.timer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link HierarchicalWheelTimer}的到期时间、逐层下沉、取消与到期的竞争，以及回收节点的编号校验
+ *
+ * @author Zavi
+ */
+class HierarchicalWheelTimerTest {
+  /** 到期时间允许晚于期限的范围，包括一个tick和线程调度的延迟 */
+  private static final long TOLERANCE = TimeUnit.MILLISECONDS.toNanos(50);
+
+  @Test
+  void testExpiryAcrossLevels() throws InterruptedException {
+    // tick为100微秒时，第1层从25.6毫秒开始，第2层从1638.4毫秒开始
+    HierarchicalWheelTimer timer =
+        new HierarchicalWheelTimer(Executors.defaultThreadFactory(), 100, TimeUnit.MICROSECONDS);
+    long[] delays = {
+      TimeUnit.MICROSECONDS.toNanos(30),
+      TimeUnit.MICROSECONDS.toNanos(150),
+      TimeUnit.MILLISECONDS.toNanos(1),
+      TimeUnit.MICROSECONDS.toNanos(25_500),
+      TimeUnit.MICROSECONDS.toNanos(25_600),
+      TimeUnit.MICROSECONDS.toNanos(25_700),
+      TimeUnit.MILLISECONDS.toNanos(300),
+      TimeUnit.MICROSECONDS.toNanos(1_638_300),
+      TimeUnit.MICROSECONDS.toNanos(1_638_400),
+      TimeUnit.MICROSECONDS.toNanos(1_638_500),
+      TimeUnit.MILLISECONDS.toNanos(1_700)
+    };
+    try {
+      AtomicLongArray elapsed = new AtomicLongArray(delays.length);
+      CountDownLatch latch = new CountDownLatch(delays.length);
+      for (int i = 0; i < delays.length; i++) {
+        int index = i;
+        long start = System.nanoTime();
+        timer.newTimeout(
+            timeout -> {
+              elapsed.set(index, System.nanoTime() - start);
+              latch.countDown();
+            },
+            delays[i],
+            TimeUnit.NANOSECONDS);
+      }
+      Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+      for (int i = 0; i < delays.length; i++) {
+        // 不会提前执行，最多晚一个tick加上调度延迟
+        Assertions.assertTrue(elapsed.get(i) >= delays[i], "early: " + i);
+        Assertions.assertTrue(elapsed.get(i) < delays[i] + TOLERANCE, "late: " + i);
+      }
+    } finally {
+      timer.stop();
+    }
+  }
+
+  @Test
+  void testCancelInUpperLevel() throws InterruptedException {
+    HierarchicalWheelTimer timer =
+        new HierarchicalWheelTimer(Executors.defaultThreadFactory(), 1, TimeUnit.MILLISECONDS);
+    try {
+      AtomicLong runs = new AtomicLong();
+      // 放在第1层，下沉前取消
+      Timeout timeout = timer.newTimeout(t -> runs.incrementAndGet(), 300, TimeUnit.MILLISECONDS);
+      Thread.sleep(50);
+      Assertions.assertTrue(timeout.cancel());
+      Assertions.assertFalse(timeout.cancel());
+      Thread.sleep(400);
+      Assertions.assertEquals(0, runs.get());
+      Assertions.assertEquals(0, timer.pendingTimeouts());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  @Test
+  void testCancelRacingExpiry() throws InterruptedException {
+    HierarchicalWheelTimer timer =
+        new HierarchicalWheelTimer(Executors.defaultThreadFactory(), 1, TimeUnit.MILLISECONDS);
+    int count = 20_000;
+    AtomicIntegerArray runs = new AtomicIntegerArray(count);
+    StampedTimerTask task = stamp -> runs.incrementAndGet((int) stamp);
+    try {
+      Timeout[] timeouts = new Timeout[count];
+      boolean[] cancelled = new boolean[count];
+      for (int i = 0; i < count; i++) {
+        timeouts[i] =
+            timer.newTimeout(task, i, ThreadLocalRandom.current().nextInt(3), TimeUnit.MILLISECONDS);
+        // 取消之前的定时，与工作线程的到期处理竞争
+        int j = i - ThreadLocalRandom.current().nextInt(Math.min(i, 64) + 1);
+        if (!cancelled[j]) {
+          cancelled[j] = timer.cancel(timeouts[j], j);
+        }
+      }
+      long deadline = System.currentTimeMillis() + 3000;
+      while (timer.pendingTimeouts() > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      // 所有节点都已释放，每个定时要么执行一次，要么取消成功，不会两者都有
+      Assertions.assertEquals(0, timer.pendingTimeouts());
+      for (int i = 0; i < count; i++) {
+        Assertions.assertEquals(1, runs.get(i) + (cancelled[i] ? 1 : 0), "stamp=" + i);
+      }
+    } finally {
+      timer.stop();
+    }
+  }
+
+  @Test
+  void testStaleStampOnRecycledTimeout() throws InterruptedException {
+    HierarchicalWheelTimer timer =
+        new HierarchicalWheelTimer(Executors.defaultThreadFactory(), 1, TimeUnit.MILLISECONDS);
+    try {
+      AtomicLong lastStamp = new AtomicLong();
+      CountDownLatch first = new CountDownLatch(1);
+      CountDownLatch second = new CountDownLatch(1);
+      StampedTimerTask task =
+          stamp -> {
+            lastStamp.set(stamp);
+            (stamp == 1 ? first : second).countDown();
+          };
+      Timeout old = timer.newTimeout(task, 1, 1, TimeUnit.MILLISECONDS);
+      Assertions.assertTrue(first.await(1, TimeUnit.SECONDS));
+      // 等工作线程回收节点并交给添加定时的线程
+      long deadline = System.currentTimeMillis() + 1000;
+      while (timer.pendingTimeouts() > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+      Thread.sleep(20);
+
+      Timeout recycled = timer.newTimeout(task, 2, 50, TimeUnit.MILLISECONDS);
+      Assertions.assertSame(old, recycled);
+      // 持有旧编号的取消不会取消复用后的定时
+      Assertions.assertFalse(timer.cancel(old, 1));
+      Assertions.assertTrue(second.await(1, TimeUnit.SECONDS));
+      Assertions.assertEquals(2, lastStamp.get());
+
+      // 编号正确时可以取消
+      deadline = System.currentTimeMillis() + 1000;
+      while (timer.pendingTimeouts() > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+      Thread.sleep(20);
+      Timeout third = timer.newTimeout(task, 3, 50, TimeUnit.MILLISECONDS);
+      Assertions.assertFalse(timer.cancel(third, 2));
+      Assertions.assertTrue(timer.cancel(third, 3));
+      Thread.sleep(100);
+      Assertions.assertEquals(2, lastStamp.get());
+    } finally {
+      timer.stop();
+    }
+  }
+}
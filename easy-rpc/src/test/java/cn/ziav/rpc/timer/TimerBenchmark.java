@@ -0,0 +1,104 @@
+package cn.ziav.rpc.timer;
+
+import cn.ziav.rpc.utils.IdGenerator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * 超时计时器压测：{@link HashedWheelTimer} vs 单分片/多分片的{@link HierarchicalWheelTimer}
+ *
+ * <p>每次操作模拟一次正常返回的调用：添加3秒的超时定时，随后取消。
+ *
+ * @author Zavi
+ */
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+  private static final TimerTask TASK = timeout -> {};
+
+  private static final StampedTimerTask STAMPED_TASK = stamp -> {};
+
+  private HashedWheelTimer hashedWheelTimer;
+
+  private HierarchicalWheelTimer hierarchicalWheelTimer;
+
+  private ShardedWheelTimer shardedWheelTimer;
+
+  @Setup
+  public void setup() {
+    hashedWheelTimer =
+        new HashedWheelTimer(Executors.defaultThreadFactory(), 30, TimeUnit.MILLISECONDS);
+    hierarchicalWheelTimer =
+        new HierarchicalWheelTimer(Executors.defaultThreadFactory(), 1, TimeUnit.MILLISECONDS);
+    shardedWheelTimer =
+        new ShardedWheelTimer(
+            Executors.defaultThreadFactory(),
+            1,
+            TimeUnit.MILLISECONDS,
+            Math.max(2, ShardedWheelTimer.DEFAULT_SHARDS));
+  }
+
+  @TearDown
+  public void tearDown() {
+    hashedWheelTimer.stop();
+    hierarchicalWheelTimer.stop();
+    shardedWheelTimer.stop();
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public boolean hashedWheel() {
+    return hashedWheelTimer.newTimeout(TASK, 3, TimeUnit.SECONDS).cancel();
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public boolean hierarchicalWheel() {
+    return hierarchicalWheelTimer.newTimeout(TASK, 3, TimeUnit.SECONDS).cancel();
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public boolean hierarchicalWheelStamped() {
+    long stamp = IdGenerator.next();
+    Timeout timeout = hierarchicalWheelTimer.newTimeout(STAMPED_TASK, stamp, 3, TimeUnit.SECONDS);
+    return hierarchicalWheelTimer.cancel(timeout, stamp);
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+  public boolean shardedWheelStamped() {
+    long stamp = IdGenerator.next();
+    Timeout timeout = shardedWheelTimer.newTimeout(STAMPED_TASK, stamp, 3, TimeUnit.SECONDS);
+    return shardedWheelTimer.cancel(timeout, stamp);
+  }
+
+  public static void main(String[] args) throws Throwable {
+    for (int threads : new int[] {8, 32, 128}) {
+      Options opt =
+          new OptionsBuilder()
+              .timeUnit(TimeUnit.MICROSECONDS)
+              .include(TimerBenchmark.class.getSimpleName())
+              .addProfiler(GCProfiler.class)
+              .warmupIterations(3) //
+              .warmupTime(TimeValue.seconds(3)) //
+              .measurementIterations(5) //
+              .measurementTime(TimeValue.seconds(5)) //
+              .threads(threads)
+              .forks(1)
+              .build();
+      new Runner(opt).run();
+    }
+  }
+}